@@ -3,9 +3,13 @@ package project_package;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 import project_package.network.Node;
+import project_package.network.RingScan;
+import project_package.network.ScanPage;
+import project_package.storage.BoundedStorage;
 import project_package.tests.AutomatedTests;
 
 /**
@@ -109,13 +113,156 @@ public class ConsoleApplicationRunner {
                         //do
                         AutomatedTests.testConcurrency(n2);
                         break;
-                    case "list":
+                    case "hash_test":
+                        //read
+                        int n3 = Integer.parseInt(inputs[1]);
+                        //do
+                        AutomatedTests.testHashing(n3);
+                        break;
+                    case "hops_test":
+                        //read
+                        int nodes4 = Integer.parseInt(inputs[1]);
+                        int n4 = Integer.parseInt(inputs[2]);
+                        //do
+                        AutomatedTests.testLookupHops(nodes4, n4);
+                        break;
+                    case "storage_test":
+                        //read
+                        int n5 = Integer.parseInt(inputs[1]);
+                        //do
+                        AutomatedTests.testStorageContention(n5);
+                        break;
+                    case "durable_test":
+                        //read
+                        int ops6 = Integer.parseInt(inputs[1]);
+                        int n6 = Integer.parseInt(inputs[2]);
+                        //do
+                        AutomatedTests.testDurableStorage(ops6, n6);
+                        break;
+                    case "batch_test":
+                        //read
+                        int nodes8 = Integer.parseInt(inputs[1]);
+                        int n8 = Integer.parseInt(inputs[2]);
+                        //do
+                        AutomatedTests.testBatch(nodes8, n8);
+                        break;
+                    case "async_test":
+                        //read
+                        int nodes9 = Integer.parseInt(inputs[1]);
+                        int n9 = Integer.parseInt(inputs[2]);
+                        //do
+                        AutomatedTests.testAsync(nodes9, n9);
+                        break;
+                    case "codec_test":
+                        //read
+                        int n7 = Integer.parseInt(inputs[1]);
                         //do
-                        List<String> valueList = myComputerNode.listAllValues();
+                        AutomatedTests.testCodec(n7);
+                        break;
+                    case "stats":
                         //write
+                        System.out.println("Forwarded lookups: " + myComputerNode.getForwardedLookups());
+                        System.out.println("Location cache: " + myComputerNode.getLocationCache().getHits() + " hits, "
+                                + myComputerNode.getLocationCache().getMisses() + " misses");
+                        System.out.println("Stored pairs: " + myComputerNode.getStorage().size()
+                                + ", replicas: " + myComputerNode.getReplicas().size()
+                                + ", served reads: " + myComputerNode.getServedReads());
+                        System.out.println("Hot keys: " + myComputerNode.getHotKeys().getHotKeys());
+                        System.out.println("Path cache: " + myComputerNode.getPathCache().getHits() + " hits, "
+                                + myComputerNode.getPathCache().getMisses() + " misses ("
+                                + (int) (100 * myComputerNode.getPathCache().getHitRate()) + "%), "
+                                + myComputerNode.getPathCache().getInvalidations() + " invalidations");
+                        System.out.println("Coalesced: " + myComputerNode.getOwnerLookups().getCoalesced() + " lookups, "
+                                + myComputerNode.getOwnerReads().getCoalesced() + " reads");
+                        if(myComputerNode.getStorage() instanceof BoundedStorage) {
+                            BoundedStorage<String> bounded = (BoundedStorage<String>) myComputerNode.getStorage();
+                            System.out.println("Storage: ~" + bounded.getUsedBytes() + " bytes, "
+                                    + bounded.getEvictions() + " evictions, " + bounded.getExpirations() + " expirations");
+                        }
+                        break;
+                    case "list":
+                        //do & write (vrijednosti se ispisuju kako stižu, bez jedne velike liste)
                         System.out.println("Items:");
-                        for(String s : valueList)
-                            System.out.println(s);
+                        try (RingScan<String> ringScan = myComputerNode.scan()) {
+                            while(ringScan.hasNext())
+                                System.out.println(ringScan.next().getValue());
+                        }
+                        break;
+                    case "range":
+                        //read
+                        long fromId = Long.parseLong(inputs[1]);
+                        long toId = Long.parseLong(inputs[2]);
+                        //do & write (stranicu po stranicu)
+                        ScanPage<String> page = myComputerNode.scan(fromId, toId, 100);
+                        while(true) {
+                            for(Map.Entry<Long, String> entry : page.getEntries())
+                                System.out.println(entry.getKey() + " -> " + entry.getValue());
+                            if(!page.hasMore())
+                                break;
+                            page = myComputerNode.scan(page.getContinuationToken(), 100);
+                        }
+                        break;
+                    case "scan_test":
+                        //read
+                        int nodes10 = Integer.parseInt(inputs[1]);
+                        int n10 = Integer.parseInt(inputs[2]);
+                        //do
+                        AutomatedTests.testScan(nodes10, n10);
+                        break;
+                    case "replication_test":
+                        //read
+                        int nodes11 = Integer.parseInt(inputs[1]);
+                        int n11 = Integer.parseInt(inputs[2]);
+                        //do
+                        AutomatedTests.testReplication(nodes11, n11);
+                        break;
+                    case "hot_test":
+                        //read
+                        int nodes12 = Integer.parseInt(inputs[1]);
+                        int n12 = Integer.parseInt(inputs[2]);
+                        //do
+                        AutomatedTests.testHotKeys(nodes12, n12);
+                        break;
+                    case "transfer_test":
+                        //read
+                        int n13 = Integer.parseInt(inputs[1]);
+                        //do
+                        AutomatedTests.testTransfer(n13);
+                        break;
+                    case "atomic_test":
+                        //read
+                        int nodes14 = Integer.parseInt(inputs[1]);
+                        int n14 = Integer.parseInt(inputs[2]);
+                        //do
+                        AutomatedTests.testAtomic(nodes14, n14);
+                        break;
+                    case "transport_test":
+                        //read
+                        int nodes15 = Integer.parseInt(inputs[1]);
+                        int n15 = Integer.parseInt(inputs[2]);
+                        //do
+                        AutomatedTests.testTransport(nodes15, n15);
+                        break;
+                    case "simulation_test":
+                        //read
+                        int nodes16 = Integer.parseInt(inputs[1]);
+                        int n16 = Integer.parseInt(inputs[2]);
+                        //do
+                        AutomatedTests.testSimulation(nodes16, n16);
+                        break;
+                    case "execution_test":
+                        //read
+                        int nodes17 = Integer.parseInt(inputs[1]);
+                        int n17 = Integer.parseInt(inputs[2]);
+                        //do
+                        AutomatedTests.testRequestExecution(nodes17, n17);
+                        break;
+                    case "coalescing_test":
+                        //read
+                        int nodes18 = Integer.parseInt(inputs[1]);
+                        int n18 = Integer.parseInt(inputs[2]);
+                        //do
+                        AutomatedTests.testCoalescing(nodes18, n18);
                         break;
                     default:
                         System.out.println("You can use the following commands:");
@@ -124,6 +271,24 @@ public class ConsoleApplicationRunner {
                         System.out.println("remove 'key'            -> deletes the value mapped to the key");
                         System.out.println("test 'n' 'v'            -> benchmark operations on n nodes with v values");
                         System.out.println("concurrency_test 'n'    -> benchmark concurrent operations on n nodes");
+                        System.out.println("hash_test 'n'           -> benchmark key hashing with n keys");
+                        System.out.println("hops_test 'n' 'l'       -> average lookup hops for l lookups on n nodes");
+                        System.out.println("storage_test 'n'        -> storage throughput with 1-64 threads, n ops each");
+                        System.out.println("durable_test 'o' 'n'    -> log write throughput (o writes), restart time with n keys");
+                        System.out.println("batch_test 'n' 'v'      -> single vs batch put/get/delete of v values on n nodes");
+                        System.out.println("async_test 'n' 'v'      -> sync vs async put/get of v values on n nodes");
+                        System.out.println("scan_test 'n' 'v'       -> listAllValues vs parallel streaming scan of v values on n nodes");
+                        System.out.println("replication_test 'n' 'v'-> skewed reads of v values on n nodes with 1-3 copies per pair");
+                        System.out.println("hot_test 'n' 'v'        -> Zipf reads (v) on n nodes, with and without hot key caching");
+                        System.out.println("transfer_test 'v'       -> join/leave transfer of v values in one message vs chunks");
+                        System.out.println("atomic_test 'n' 'v'     -> v concurrent counter updates on n nodes, get + put vs atomic increment/CAS");
+                        System.out.println("transport_test 'n' 'v'  -> ops/s and p99 latency of v gets on n nodes, direct vs RMI vs NIO");
+                        System.out.println("simulation_test 'n' 'l' -> l lookups on n simulated nodes (no RMI): stable, churn, partition, loss");
+                        System.out.println("execution_test 'n' 'v'  -> v gets from 512 threads on n nodes, unbounded vs bounded pool with load shedding");
+                        System.out.println("coalescing_test 'n' 'v' -> v reads of 8 hot keys from 32 threads on n nodes, with and without coalescing");
+                        System.out.println("codec_test 'n'          -> value size and encode/decode time, java serialization vs codecs");
+                        System.out.println("stats                   -> prints counters of this node");
+                        System.out.println("range 'from' 'to'       -> lists values with identifiers in [from, to], in ring order");
                         System.out.println("list                    -> lists all values in project_package.storage");
                         System.out.println("exit                    -> exits the program");
                 }
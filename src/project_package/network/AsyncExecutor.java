@@ -0,0 +1,158 @@
+package project_package.network;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Izvršava asinkrone zahtjeve jednog čvora preko ograničenog broja "konekcija" (dretvi koje rade RMI pozive).
+ * Zahtjevi u tijeku su ograničeni (back-pressure): kad je limit dosegnut, submit čeka najviše
+ * timeout milisekundi na slobodno mjesto, a onda zahtjev odbije.
+ * Svaki zahtjev ima timeout; zahtjev koji istekne i dalje drži mjesto dok se RMI poziv stvarno ne vrati,
+ * pa limit odgovara stvarnom opterećenju mreže.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class AsyncExecutor {
+
+    public static final int DEFAULT_CONNECTIONS = 8;
+    public static final int DEFAULT_MAX_OUTSTANDING = 256;
+    public static final long DEFAULT_TIMEOUT = 5000;
+
+    private final int connections;
+    private final int maxOutstanding;
+    private final long timeoutMillis;
+
+    private final ExecutorService workers;
+    private final Semaphore outstanding;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AsyncExecutor() {
+        this(DEFAULT_CONNECTIONS, DEFAULT_MAX_OUTSTANDING, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param connections - broj dretvi koje istovremeno rade pozive
+     * @param maxOutstanding - maksimalan broj zahtjeva u tijeku (u redu čekanja i u izvršavanju)
+     * @param timeoutMillis - timeout zahtjeva (ujedno najduže čekanje na mjesto)
+     */
+    public AsyncExecutor(int connections, int maxOutstanding, long timeoutMillis) {
+        this.connections = connections;
+        this.maxOutstanding = maxOutstanding;
+        this.timeoutMillis = timeoutMillis;
+        this.outstanding = new Semaphore(maxOutstanding);
+        this.workers = Executors.newFixedThreadPool(connections, r -> {
+            Thread thread = new Thread(r, "dht-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Pošalji zahtjev
+     *
+     * @param <R>
+     * @param request
+     * @return future koji završava rezultatom, greškom zahtjeva, TimeoutException ili RejectedExecutionException
+     */
+    public <R> CompletableFuture<R> submit(Callable<R> request) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        try {
+            if(!outstanding.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                future.completeExceptionally(new RejectedExecutionException(maxOutstanding + " requests are already outstanding"));
+                return future;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        try {
+            workers.execute(() -> {
+                try {
+                    //zahtjev koji je istekao dok je čekao u redu se ne šalje
+                    if(!future.isDone())
+                        future.complete(request.call());
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    outstanding.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            outstanding.release();
+            rejected.incrementAndGet();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        return future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((result, error) -> {
+            if(error == null)
+                completed.incrementAndGet();
+            else if(unwrap(error) instanceof TimeoutException)
+                timedOut.incrementAndGet();
+            else
+                failed.incrementAndGet();
+        });
+    }
+
+    /**
+     * Zaustavi dretve (zahtjevi u redu se ne izvršavaju)
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public int getMaxOutstanding() {
+        return maxOutstanding;
+    }
+
+    public long getTimeout() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @return broj zahtjeva u tijeku
+     */
+    public int getOutstanding() {
+        return maxOutstanding - outstanding.availablePermits();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
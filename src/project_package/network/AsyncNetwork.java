@@ -0,0 +1,67 @@
+package project_package.network;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asinkrona varijanta sučelja Network: metode odmah vraćaju CompletableFuture,
+ * pa jedna dretva klijenta može imati puno zahtjeva u tijeku.
+ * Future završava s greškom ako zahtjev ne uspije, istekne (TimeoutException)
+ * ili ga odbije limit zahtjeva u tijeku (RejectedExecutionException).
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti koja se posprema u DHT
+ *
+ */
+public interface AsyncNetwork<T> {
+
+    /**
+     * GET objekt mapiran na ključ
+     *
+     * @param key
+     * @return future s vrijednošću (null ako je nema)
+     */
+    public CompletableFuture<T> getValueAsync(String key);
+
+    /**
+     * PUT objekt u DHT
+     *
+     * @param newKey
+     * @param newValue
+     * @return future koji završava kad je vrijednost spremljena
+     */
+    public CompletableFuture<Void> addKeyValuePairAsync(String newKey, T newValue);
+
+    /**
+     * DELETE objekt ključa k
+     *
+     * @param key
+     * @return future koji završava kad je vrijednost obrisana
+     */
+    public CompletableFuture<Void> deleteValueAsync(String key);
+
+    /**
+     * GET više objekata odjednom
+     *
+     * @param keys
+     * @return future s rezultatom po ključu
+     */
+    public CompletableFuture<BatchResult<T>> getValuesAsync(Collection<String> keys);
+
+    /**
+     * PUT više objekata odjednom
+     *
+     * @param pairs
+     * @return future s greškama po ključu
+     */
+    public CompletableFuture<BatchResult<T>> addKeyValuePairsAsync(Map<String, T> pairs);
+
+    /**
+     * DELETE više objekata odjednom
+     *
+     * @param keys
+     * @return future s greškama po ključu
+     */
+    public CompletableFuture<BatchResult<T>> deleteValuesAsync(Collection<String> keys);
+}
@@ -0,0 +1,20 @@
+package project_package.network;
+
+import java.io.Serializable;
+
+/**
+ * Operacija koju vlasnik ključa izvršava atomarno nad trenutnom vrijednošću
+ * (šalje se vlasniku kao objekt, pa izmjena vrijednosti treba jedan zahtjev)
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti
+ *
+ */
+public interface AtomicOperation<T> extends Serializable {
+
+    /**
+     * @param current - trenutna vrijednost (null ako para nema)
+     * @return nova vrijednost (null briše par, a vraćanje current ne mijenja ništa)
+     */
+    T apply(T current);
+}
@@ -0,0 +1,189 @@
+package project_package.network;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
+
+/**
+ * Atomarne operacije (compare-and-set, putIfAbsent, increment, merge) i registar merge funkcija.
+ * Merge funkcija se šalje samo imenom, pa mora biti registrirana pod istim imenom na svim čvorovima.
+ *
+ * Ugrađene merge funkcije: "append" (spajanje Stringova), "sum", "max" i "min" (brojevi).
+ *
+ * @author Iva Tutiš
+ *
+ */
+public final class AtomicOperations {
+
+    private static final Map<String, BinaryOperator<Object>> mergeFunctions = new ConcurrentHashMap<>();
+
+    static {
+        registerMergeFunction("append", (String current, String value) -> current + value);
+        registerMergeFunction("sum", AtomicOperations::sum);
+        registerMergeFunction("max", (Number current, Number value) -> compare(current, value) >= 0 ? current : value);
+        registerMergeFunction("min", (Number current, Number value) -> compare(current, value) <= 0 ? current : value);
+    }
+
+    private AtomicOperations() {
+    }
+
+    /**
+     * Registriraj merge funkciju (trenutna vrijednost, nova vrijednost) -> spojena vrijednost.
+     * Ako para nema, merge spremi novu vrijednost bez poziva funkcije.
+     *
+     * @param name
+     * @param function
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> void registerMergeFunction(String name, BinaryOperator<V> function) {
+        mergeFunctions.put(name, (BinaryOperator<Object>) function);
+    }
+
+    /**
+     * @param expected - očekivana trenutna vrijednost (null: para nema)
+     * @param update - nova vrijednost (null briše par)
+     * @return operacija koja postavlja update samo ako je trenutna vrijednost jednaka expected
+     */
+    public static <T> AtomicOperation<T> compareAndSet(T expected, T update) {
+        return new CompareAndSet<>(expected, update);
+    }
+
+    /**
+     * @param value
+     * @return operacija koja sprema value samo ako para nema
+     */
+    public static <T> AtomicOperation<T> putIfAbsent(T value) {
+        return new PutIfAbsent<>(value);
+    }
+
+    /**
+     * Vrijednost mora biti Long, Integer ili String s cijelim brojem i ostaje istog tipa.
+     * Par mora postojati, jer se za par kojeg nema ne zna tip vrijednosti u mreži.
+     *
+     * @param delta
+     * @return operacija koja vrijednost poveća za delta
+     */
+    public static <T> AtomicOperation<T> increment(long delta) {
+        return increment(delta, null);
+    }
+
+    /**
+     * Kao increment(delta), ali par kojeg nema počinje od initial (pa ima tip vrijednosti initial)
+     *
+     * @param delta
+     * @param initial - početna vrijednost (null: par mora postojati)
+     * @return operacija koja vrijednost poveća za delta
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> AtomicOperation<T> increment(long delta, T initial) {
+        return (AtomicOperation<T>) new Increment(delta, initial);
+    }
+
+    /**
+     * @param function - ime registrirane merge funkcije
+     * @param value
+     * @return operacija koja trenutnu vrijednost spoji s value
+     */
+    public static <T> AtomicOperation<T> merge(String function, T value) {
+        return new Merge<>(function, value);
+    }
+
+    //-------------------------------------------------OPERACIJE-------------------------------------------
+
+    private static final class CompareAndSet<T> implements AtomicOperation<T> {
+        private static final long serialVersionUID = 1L;
+        private final T expected;
+        private final T update;
+
+        private CompareAndSet(T expected, T update) {
+            this.expected = expected;
+            this.update = update;
+        }
+
+        @Override
+        public T apply(T current) {
+            //deepEquals uspoređuje i byte[] vrijednosti po sadržaju
+            return Objects.deepEquals(current, expected) ? update : current;
+        }
+    }
+
+    private static final class PutIfAbsent<T> implements AtomicOperation<T> {
+        private static final long serialVersionUID = 1L;
+        private final T value;
+
+        private PutIfAbsent(T value) {
+            this.value = value;
+        }
+
+        @Override
+        public T apply(T current) {
+            return current != null ? current : value;
+        }
+    }
+
+    private static final class Increment implements AtomicOperation<Object> {
+        private static final long serialVersionUID = 1L;
+        private final long delta;
+        private final Object initial;
+
+        private Increment(long delta, Object initial) {
+            this.delta = delta;
+            this.initial = initial;
+        }
+
+        @Override
+        public Object apply(Object current) {
+            if(current == null)
+                current = initial;
+            if(current == null)
+                throw new IllegalArgumentException("Can't increment a missing value");
+            if(current instanceof Long)
+                return (Long) current + delta;
+            if(current instanceof Integer)
+                return Math.toIntExact((Integer) current + delta);
+            if(current instanceof String) {
+                try {
+                    return String.valueOf(Long.parseLong((String) current) + delta);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Value '" + current + "' is not an integer");
+                }
+            }
+            throw new IllegalArgumentException("Can't increment a value of " + current.getClass());
+        }
+    }
+
+    private static final class Merge<T> implements AtomicOperation<T> {
+        private static final long serialVersionUID = 1L;
+        private final String function;
+        private final T value;
+
+        private Merge(String function, T value) {
+            this.function = function;
+            this.value = value;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T apply(T current) {
+            BinaryOperator<Object> merge = mergeFunctions.get(function);
+            if(merge == null)
+                throw new IllegalArgumentException("Unknown merge function: " + function);
+            return current == null ? value : (T) merge.apply(current, value);
+        }
+    }
+
+    private static Number sum(Number current, Number value) {
+        if(current instanceof Double || current instanceof Float || value instanceof Double || value instanceof Float)
+            return current.doubleValue() + value.doubleValue();
+        if(current instanceof Integer && value instanceof Integer)
+            return Math.addExact((Integer) current, (Integer) value);
+        return Math.addExact(current.longValue(), value.longValue());
+    }
+
+    private static int compare(Number first, Number second) {
+        if(first instanceof Double || first instanceof Float || second instanceof Double || second instanceof Float)
+            return Double.compare(first.doubleValue(), second.doubleValue());
+        return Long.compare(first.longValue(), second.longValue());
+    }
+}
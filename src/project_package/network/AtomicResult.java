@@ -0,0 +1,32 @@
+package project_package.network;
+
+import java.io.Serializable;
+
+/**
+ * Odgovor vlasnika na atomarnu operaciju: vrijednost prije i nakon operacije
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti
+ *
+ */
+public class AtomicResult<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final T previous;
+
+    private final T current;
+
+    public AtomicResult(T previous, T current) {
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public T getPrevious() {
+        return previous;
+    }
+
+    public T getCurrent() {
+        return current;
+    }
+}
@@ -0,0 +1,33 @@
+package project_package.network;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Odgovor vlasnika na batch zahtjev: pronađene vrijednosti i ključevi za koje vlasnik (više) nije odgovoran
+ *
+ * @author Iva Tutiš
+ * @param <V> tip vrijednosti (T ili kodirani byte[])
+ *
+ */
+public class BatchReply<V> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<Long, V> values;
+
+    private final long[] rejected;
+
+    public BatchReply(Map<Long, V> values, long[] rejected) {
+        this.values = values;
+        this.rejected = rejected;
+    }
+
+    public Map<Long, V> getValues() {
+        return values;
+    }
+
+    public long[] getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,63 @@
+package project_package.network;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Rezultat batch operacije po ključevima: pronađene vrijednosti (samo za get) i greške.
+ * Ključ koji nije ni u vrijednostima ni u greškama je uspješno obrađen (ili nije pronađen kod get-a).
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti koja se posprema u DHT
+ *
+ */
+public class BatchResult<T> {
+
+    private final Map<String, T> values;
+
+    private final Map<String, Exception> errors;
+
+    /**
+     * Broj zahtjeva poslanih vlasnicima
+     */
+    private final int requests;
+
+    public BatchResult(Map<String, T> values, Map<String, Exception> errors, int requests) {
+        this.values = Collections.unmodifiableMap(values);
+        this.errors = Collections.unmodifiableMap(errors);
+        this.requests = requests;
+    }
+
+    public T get(String key) {
+        return values.get(key);
+    }
+
+    public Map<String, T> getValues() {
+        return values;
+    }
+
+    public boolean isFailed(String key) {
+        return errors.containsKey(key);
+    }
+
+    public Exception getError(String key) {
+        return errors.get(key);
+    }
+
+    public Map<String, Exception> getErrors() {
+        return errors;
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    @Override
+    public String toString() {
+        return values.size() + " values, " + errors.size() + " errors, " + requests + " requests";
+    }
+}
@@ -0,0 +1,18 @@
+package project_package.network;
+
+import java.rmi.RemoteException;
+
+/**
+ * Čvor je preopterećen i odbio je zahtjev bez izvršavanja (red zahtjeva je pun); zahtjev se može ponoviti kasnije
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class BusyException extends RemoteException {
+
+    private static final long serialVersionUID = 1L;
+
+    public BusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package project_package.network;
+
+/**
+ * Na kojim dretvama čvor izvršava dolazne zahtjeve
+ *
+ * @author Iva Tutiš
+ *
+ */
+public enum ExecutionMode {
+
+    /**
+     * Zahtjev se izvršava na dretvi koja ga je predala (RMI dretva, event-loop transporta ili pozivatelj u istom procesu),
+     * bez ograničenja broja zahtjeva
+     */
+    DIRECT,
+
+    /**
+     * Zahtjev se izvršava na jednoj od ograničenog broja dretvi; zahtjevi koji ih čekaju stoje u ograničenom redu,
+     * a kad je red pun (ili je zahtjev predugo čekao) čvor odmah odgovara s BusyException
+     */
+    BOUNDED
+}
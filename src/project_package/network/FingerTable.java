@@ -0,0 +1,116 @@
+package project_package.network;
+
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
+
+import project_package.service.KeyService;
+
+/**
+ * Chord routing tablica jednog čvora.
+ * Fingeri su spremljeni kao sortirano polje udaljenosti (u smjeru kazaljke na satu) od vlasnika tablice,
+ * pa je traženje najbližeg prethodnog fingera binarno pretraživanje.
+ * Tablica je nepromjenjiva - pri osvježavanju se stvara nova.
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti koja se posprema u DHT
+ *
+ */
+public class FingerTable<T> {
+
+    /**
+     * Indeks čvora čija je ovo tablica
+     */
+    private final long ownerIndex;
+
+    /**
+     * Veličina prstena
+     */
+    private final int maxNumberOfNodesInNetwork;
+
+    /**
+     * Rastuće (unikatne) udaljenosti fingera od vlasnika
+     */
+    private final long[] distances;
+
+    /**
+     * Fingeri, poredani kao i distances
+     */
+    private final Node<T>[] nodes;
+
+    /**
+     * Prazna tablica
+     *
+     * @param ownerIndex
+     * @param maxNumberOfNodesInNetwork
+     */
+    public FingerTable(long ownerIndex, int maxNumberOfNodesInNetwork) {
+        this.ownerIndex = ownerIndex;
+        this.maxNumberOfNodesInNetwork = maxNumberOfNodesInNetwork;
+        this.distances = new long[0];
+        this.nodes = newArray(0);
+    }
+
+    /**
+     * Tablica iz liste fingera finger[i] = successor(ownerIndex + 2^i).
+     * Prazni (null) fingeri i duplikati se preskaču.
+     *
+     * @param ownerIndex
+     * @param maxNumberOfNodesInNetwork
+     * @param fingers
+     * @throws RemoteException
+     */
+    public FingerTable(long ownerIndex, int maxNumberOfNodesInNetwork, List<Node<T>> fingers) throws RemoteException {
+        this.ownerIndex = ownerIndex;
+        this.maxNumberOfNodesInNetwork = maxNumberOfNodesInNetwork;
+
+        long[] newDistances = new long[fingers.size()];
+        Node<T>[] newNodes = newArray(fingers.size());
+        int size = 0;
+        for(Node<T> finger : fingers) {
+            if(finger == null)
+                continue;
+            long distance = KeyService.distance(ownerIndex, finger.getIndex(), maxNumberOfNodesInNetwork);
+            int position = Arrays.binarySearch(newDistances, 0, size, distance);
+            if(position >= 0)
+                continue;
+            //umetni na svoje mjesto da polje ostane sortirano
+            position = -position - 1;
+            System.arraycopy(newDistances, position, newDistances, position + 1, size - position);
+            System.arraycopy(newNodes, position, newNodes, position + 1, size - position);
+            newDistances[position] = distance;
+            newNodes[position] = finger;
+            size++;
+        }
+        this.distances = Arrays.copyOf(newDistances, size);
+        this.nodes = Arrays.copyOf(newNodes, size);
+    }
+
+    /**
+     * Nađi finger koji je najbliži ključu, a nalazi se strogo između vlasnika i ključa
+     *
+     * @param key
+     * @return najbliži prethodni finger ili null ako takvog nema
+     */
+    public Node<T> closestPrecedingNode(long key) {
+        long keyDistance = KeyService.distance(ownerIndex, key, maxNumberOfNodesInNetwork);
+        int position = Arrays.binarySearch(distances, keyDistance);
+        int candidate = (position >= 0 ? position : -position - 1) - 1;
+        if(candidate >= 0 && distances[candidate] > 0)
+            return nodes[candidate];
+        return null;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public Node<T> get(int i) {
+        return nodes[i];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] newArray(int size) {
+        return (Node<T>[]) new Node<?>[size];
+    }
+}
@@ -0,0 +1,188 @@
+package project_package.network;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detekcija popularnih ključeva na jednom čvoru.
+ * Bilježi se svaki sampleRate-ti zahtjev u count-min sketch (depth redaka po width brojača),
+ * a top-k ključeva s najvećom procjenom se drži posebno. Ključ je popularan ako mu procjena
+ * u trenutnom prozoru prelazi hotFraction uzorkovanih zahtjeva. Nakon svakog prozora se svi
+ * brojači prepolove, pa ključ koji je prestao biti popularan s vremenom ispadne.
+ * Popularni ključevi se nakon svakog uzorka objave kao nepromjenjiv skup, pa neuzorkovani
+ * zahtjevi (većina) ne čekaju na lock.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class HotKeyDetector {
+
+    public static final int DEFAULT_WIDTH = 1024;
+    public static final int DEFAULT_DEPTH = 4;
+    public static final int DEFAULT_SAMPLE_RATE = 8;
+    public static final int DEFAULT_TOP_K = 16;
+    public static final int DEFAULT_WINDOW = 4096;
+    public static final double DEFAULT_HOT_FRACTION = 0.01;
+
+    /**
+     * Ključ nije popularan dok nema barem ovoliko uzoraka u prozoru (da prvi zahtjevi ne budu "popularni")
+     */
+    private static final int MIN_HOT_COUNT = 8;
+
+    /**
+     * Sketch se alocira kod prvog uzorka (čvor koji ne poslužuje čitanja ga ne treba)
+     */
+    private int[][] counters;
+    private final int width;
+    private final int depth;
+    private final long[] seeds;
+    private final int sampleRate;
+    private final int topK;
+    private final int window;
+    private final double hotFraction;
+
+    /**
+     * Kandidati za top-k s procjenom broja uzoraka
+     */
+    private final Map<Long, Integer> top = new HashMap<>();
+
+    /**
+     * Trenutno popularni ključevi (zamjenjuje se pod lockom, čita bez njega)
+     */
+    private volatile Set<Long> hot = Set.of();
+
+    private int samplesInWindow = 0;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+
+    public HotKeyDetector() {
+        this(DEFAULT_WIDTH, DEFAULT_DEPTH, DEFAULT_SAMPLE_RATE, DEFAULT_TOP_K, DEFAULT_WINDOW, DEFAULT_HOT_FRACTION);
+    }
+
+    /**
+     * @param width - broj brojača u retku sketcha
+     * @param depth - broj redaka (neovisnih hash funkcija)
+     * @param sampleRate - bilježi se prosječno jedan od sampleRate zahtjeva (1 za sve)
+     * @param topK - koliko najpopularnijih ključeva se prati
+     * @param window - broj uzoraka nakon kojeg se brojači prepolove
+     * @param hotFraction - udio uzoraka u prozoru iznad kojeg je ključ popularan
+     */
+    public HotKeyDetector(int width, int depth, int sampleRate, int topK, int window, double hotFraction) {
+        this.width = width;
+        this.depth = depth;
+        this.seeds = new long[depth];
+        for(int i=0; i<depth; i++)
+            seeds[i] = 0x9E3779B97F4A7C15L * (i + 1);
+        this.sampleRate = sampleRate;
+        this.topK = topK;
+        this.window = window;
+        this.hotFraction = hotFraction;
+    }
+
+    /**
+     * Zabilježi zahtjev za ključ (uzorkovano)
+     *
+     * @param key
+     * @return true ako je ključ trenutno popularan
+     */
+    public boolean record(long key) {
+        requests.incrementAndGet();
+        if(sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)
+            return isHot(key);
+        samples.incrementAndGet();
+        synchronized (this) {
+            if(counters == null)
+                counters = new int[depth][width];
+            int estimate = Integer.MAX_VALUE;
+            for(int i=0; i<counters.length; i++) {
+                int slot = slot(i, key);
+                estimate = Math.min(estimate, ++counters[i][slot]);
+            }
+            offer(key, estimate);
+            if(++samplesInWindow >= window)
+                decay();
+            publishHot();
+            return isHot(estimate);
+        }
+    }
+
+    /**
+     * @param key
+     * @return true ako je ključ među praćenim najpopularnijim i prelazi prag
+     */
+    public boolean isHot(long key) {
+        return hot.contains(key);
+    }
+
+    /**
+     * @return trenutno popularni ključevi s procjenom broja uzoraka, od najpopularnijeg
+     */
+    public synchronized List<Map.Entry<Long, Integer>> getHotKeys() {
+        List<Map.Entry<Long, Integer>> hot = new ArrayList<>();
+        for(Map.Entry<Long, Integer> entry : top.entrySet())
+            if(isHot(entry.getValue()))
+                hot.add(Map.entry(entry.getKey(), entry.getValue()));
+        hot.sort((first, second) -> Integer.compare(second.getValue(), first.getValue()));
+        return hot;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getSamples() {
+        return samples.get();
+    }
+
+    //procjena je gornja granica, pa prag gleda uzorke u trenutnom prozoru
+    private boolean isHot(int estimate) {
+        return estimate >= MIN_HOT_COUNT && estimate >= hotFraction * Math.max(samplesInWindow, window / 2);
+    }
+
+    //prag ovisi i o broju uzoraka u prozoru, pa se skup računa iznova nakon svakog uzorka (top-k je mali)
+    private void publishHot() {
+        Set<Long> current = new HashSet<>();
+        for(Map.Entry<Long, Integer> entry : top.entrySet())
+            if(isHot(entry.getValue()))
+                current.add(entry.getKey());
+        if(!current.equals(hot))
+            hot = Set.copyOf(current);
+    }
+
+    //ključ ulazi u top-k ako ima veću procjenu od najslabijeg kandidata
+    private void offer(long key, int estimate) {
+        if(top.containsKey(key) || top.size() < topK) {
+            top.put(key, estimate);
+            return;
+        }
+        Map.Entry<Long, Integer> weakest = null;
+        for(Map.Entry<Long, Integer> entry : top.entrySet())
+            if(weakest == null || entry.getValue() < weakest.getValue())
+                weakest = entry;
+        if(weakest.getValue() < estimate) {
+            top.remove(weakest.getKey());
+            top.put(key, estimate);
+        }
+    }
+
+    private void decay() {
+        samplesInWindow /= 2;
+        for(int[] row : counters)
+            for(int i=0; i<row.length; i++)
+                row[i] >>= 1;
+        top.replaceAll((key, estimate) -> estimate >> 1);
+        top.values().removeIf(estimate -> estimate == 0);
+    }
+
+    private int slot(int row, long key) {
+        long hash = (key ^ seeds[row]) * 0xBF58476D1CE4E5B9L;
+        hash ^= hash >>> 31;
+        return (int) ((hash & Long.MAX_VALUE) % width);
+    }
+}
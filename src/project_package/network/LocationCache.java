@@ -0,0 +1,166 @@
+package project_package.network;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import project_package.service.KeyService;
+
+/**
+ * Ograničeni (LRU) cache lokacija ključeva na jednom čvoru.
+ * Svaki zapis pamti handle vlasnika (s adresom transporta) i granicu njegovog intervala (predecessor, owner],
+ * pa ponovljeni upiti za ključeve iz tog intervala ne trebaju lookup.
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti koja se posprema u DHT
+ *
+ */
+public class LocationCache<T> {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * Zapis u cacheu: vlasnik je odgovoran za ključeve iz (rangeStart, ownerIndex]
+     */
+    private static final class Entry<T> {
+        private final long rangeStart;
+        private final long ownerIndex;
+        private final NodeHandle<T> owner;
+
+        private Entry(long rangeStart, long ownerIndex, NodeHandle<T> owner) {
+            this.rangeStart = rangeStart;
+            this.ownerIndex = ownerIndex;
+            this.owner = owner;
+        }
+    }
+
+    private final int capacity;
+
+    /**
+     * Zapisi po indeksu vlasnika (za traženje intervala koji sadrži ključ)
+     */
+    private final TreeMap<Long, Entry<T>> byOwnerIndex = new TreeMap<>();
+
+    /**
+     * Isti zapisi u LRU poretku (za izbacivanje)
+     */
+    private final LinkedHashMap<Long, Entry<T>> lru = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public LocationCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity - maksimalan broj intervala u cacheu
+     */
+    public LocationCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Nađi vlasnika ključa u cacheu
+     *
+     * @param key
+     * @return handle vlasnika ili null ako interval ključa nije u cacheu
+     */
+    public synchronized NodeHandle<T> get(long key) {
+        Entry<T> entry = find(key);
+        if(entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        lru.get(entry.ownerIndex);
+        hits.incrementAndGet();
+        return entry.owner;
+    }
+
+    /**
+     * Zapamti da je owner odgovoran za ključeve iz (rangeStart, owner.getIndex()].
+     * Stariji zapisi čiji vlasnik upada u taj interval se brišu.
+     *
+     * @param rangeStart
+     * @param owner
+     */
+    public synchronized void put(long rangeStart, NodeHandle<T> owner) {
+        if(capacity <= 0)
+            return;
+        long ownerIndex = owner.getIndex();
+        invalidateRange(rangeStart, ownerIndex);
+        Entry<T> entry = new Entry<>(rangeStart, ownerIndex, owner);
+        byOwnerIndex.put(ownerIndex, entry);
+        lru.put(ownerIndex, entry);
+        if(lru.size() > capacity) {
+            Iterator<Map.Entry<Long, Entry<T>>> eldest = lru.entrySet().iterator();
+            byOwnerIndex.remove(eldest.next().getKey());
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Zaboravi interval koji sadrži ključ (npr. kad vlasnik odbije upit)
+     *
+     * @param key
+     */
+    public synchronized void invalidate(long key) {
+        Entry<T> entry = find(key);
+        if(entry != null)
+            remove(entry.ownerIndex);
+    }
+
+    /**
+     * Zaboravi sve intervale koji se preklapaju s (from, to]
+     *
+     * @param from
+     * @param to
+     */
+    public synchronized void invalidateRange(long from, long to) {
+        Iterator<Entry<T>> entries = byOwnerIndex.values().iterator();
+        while(entries.hasNext()) {
+            Entry<T> entry = entries.next();
+            if(KeyService.isKeyInbetween(entry.ownerIndex, from, to) || KeyService.isKeyInbetween(to, entry.rangeStart, entry.ownerIndex)) {
+                entries.remove();
+                lru.remove(entry.ownerIndex);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        byOwnerIndex.clear();
+        lru.clear();
+    }
+
+    public synchronized int size() {
+        return byOwnerIndex.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Zapis s najmanjim indeksom vlasnika >= key (u prstenu), ako sadrži key
+     */
+    private Entry<T> find(long key) {
+        Map.Entry<Long, Entry<T>> candidate = byOwnerIndex.ceilingEntry(key);
+        if(candidate == null)
+            candidate = byOwnerIndex.firstEntry();
+        if(candidate == null)
+            return null;
+        Entry<T> entry = candidate.getValue();
+        return KeyService.isKeyInbetween(key, entry.rangeStart, entry.ownerIndex) ? entry : null;
+    }
+
+    private void remove(long ownerIndex) {
+        byOwnerIndex.remove(ownerIndex);
+        lru.remove(ownerIndex);
+    }
+}
@@ -0,0 +1,20 @@
+package project_package.network;
+
+/**
+ * Način na koji čvor traži čvor odgovoran za ključ
+ *
+ * @author Iva Tutiš
+ *
+ */
+public enum LookupMode {
+
+    /**
+     * Svaki čvor prosljeđuje upit sljedećem i čeka odgovor (dretva je zauzeta na svakom čvoru na putu)
+     */
+    RECURSIVE,
+
+    /**
+     * Čvor iz kojeg lookup kreće sam pita svaki čvor na putu za sljedeći korak
+     */
+    ITERATIVE
+}
@@ -0,0 +1,71 @@
+package project_package.network;
+
+import java.io.Serializable;
+
+/**
+ * Rezultat lookupa: čvor odgovoran za ključ, broj skokova i trajanje svakog koraka.
+ * Korak 0 je upit čvoru iz kojeg je lookup krenuo, korak i je upit čvoru nakon i skokova.
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti koja se posprema u DHT
+ *
+ */
+public class LookupResult<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Node<T> owner;
+
+    /**
+     * Vlasnik je odgovoran za ključeve iz (rangeStart, owner.getIndex()]
+     */
+    private final long rangeStart;
+
+    /**
+     * Trajanje svakog koraka u nanosekundama
+     */
+    private final long[] stepLatencies;
+
+    public LookupResult(Node<T> owner, long rangeStart, long[] stepLatencies) {
+        this.owner = owner;
+        this.rangeStart = rangeStart;
+        this.stepLatencies = stepLatencies;
+    }
+
+    public Node<T> getOwner() {
+        return owner;
+    }
+
+    public long getRangeStart() {
+        return rangeStart;
+    }
+
+    /**
+     * @return broj prelazaka na drugi čvor
+     */
+    public int getHops() {
+        return stepLatencies.length - 1;
+    }
+
+    /**
+     * @return trajanje svakog koraka u nanosekundama
+     */
+    public long[] getStepLatencies() {
+        return stepLatencies.clone();
+    }
+
+    /**
+     * @return ukupno trajanje lookupa u nanosekundama
+     */
+    public long getTotalLatency() {
+        long total = 0;
+        for(long latency : stepLatencies)
+            total += latency;
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return owner + " (" + getHops() + " hops, " + getTotalLatency() / 1000 + " us)";
+    }
+}
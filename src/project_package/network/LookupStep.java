@@ -0,0 +1,60 @@
+package project_package.network;
+
+import java.io.Serializable;
+
+/**
+ * Odgovor jednog čvora u iterativnom lookupu:
+ * ili je node odgovoran za ključ (final), ili je node sljedeći čvor kojeg treba pitati.
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti koja se posprema u DHT
+ *
+ */
+public class LookupStep<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Node<T> node;
+
+    private final boolean isFinal;
+
+    /**
+     * Za final korak: node je odgovoran za ključeve iz (rangeStart, node.getIndex()]
+     */
+    private final long rangeStart;
+
+    /**
+     * Korak koji upućuje na sljedeći čvor
+     *
+     * @param node
+     */
+    public LookupStep(Node<T> node) {
+        this.node = node;
+        this.isFinal = false;
+        this.rangeStart = 0;
+    }
+
+    /**
+     * Konačan korak
+     *
+     * @param node - odgovorni čvor
+     * @param rangeStart - indeks prethodnika odgovornog čvora
+     */
+    public LookupStep(Node<T> node, long rangeStart) {
+        this.node = node;
+        this.isFinal = true;
+        this.rangeStart = rangeStart;
+    }
+
+    public Node<T> getNode() {
+        return node;
+    }
+
+    public boolean isFinal() {
+        return isFinal;
+    }
+
+    public long getRangeStart() {
+        return rangeStart;
+    }
+}
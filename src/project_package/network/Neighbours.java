@@ -0,0 +1,45 @@
+package project_package.network;
+
+import java.io.Serializable;
+
+/**
+ * Odgovor čvora na getNeighbours(): njegov nasljednik i prethodnik te je li još član mreže, u jednom pozivu
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti koja se posprema u DHT
+ *
+ */
+public class Neighbours<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final NodeHandle<T> successor;
+
+    private final NodeHandle<T> predecessor;
+
+    private final boolean alive;
+
+    public Neighbours(NodeHandle<T> successor, NodeHandle<T> predecessor, boolean alive) {
+        this.successor = successor;
+        this.predecessor = predecessor;
+        this.alive = alive;
+    }
+
+    public NodeHandle<T> getSuccessor() {
+        return successor;
+    }
+
+    /**
+     * @return prethodnik ili null ako ga čvor ne zna
+     */
+    public NodeHandle<T> getPredecessor() {
+        return predecessor;
+    }
+
+    /**
+     * @return false ako je čvor napustio mrežu
+     */
+    public boolean isAlive() {
+        return alive;
+    }
+}
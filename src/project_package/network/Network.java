@@ -1,7 +1,9 @@
 package project_package.network;
 
 import java.rmi.RemoteException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Sučelje za hash-table-like mrežu
@@ -35,6 +37,112 @@ public interface Network<T> {
     public void deleteValue(String key);
 
 
+    /**
+     * GET više objekata odjednom.
+     * Ključevi se grupiraju po odgovornom čvoru i svakom se šalje jedan zahtjev.
+     *
+     * @param keys
+     * @return pronađene vrijednosti i greške po ključu
+     */
+    public BatchResult<T> getValues(Collection<String> keys);
+
+    /**
+     * PUT više objekata odjednom (jedan zahtjev po odgovornom čvoru)
+     *
+     * @param pairs - parovi ključ -> value
+     * @return greške po ključu
+     */
+    public BatchResult<T> addKeyValuePairs(Map<String, T> pairs);
+
+    /**
+     * DELETE više objekata odjednom (jedan zahtjev po odgovornom čvoru)
+     *
+     * @param keys
+     * @return greške po ključu
+     */
+    public BatchResult<T> deleteValues(Collection<String> keys);
+
+    /**
+     * Compare-and-set kod vlasnika ključa (jedan lookup i jedan zahtjev; atomarno s ostalim pisanjima na isti ključ)
+     *
+     * @param key
+     * @param expected - očekivana vrijednost (null: para nema)
+     * @param newValue - nova vrijednost (null briše par)
+     * @return true ako je vrijednost bila expected i postavljena je na newValue
+     */
+    public boolean compareAndSet(String key, T expected, T newValue) throws RemoteException;
+
+    /**
+     * Spremi vrijednost samo ako para nema (atomarno kod vlasnika)
+     *
+     * @param key
+     * @param value
+     * @return postojeća vrijednost, ili null ako je value spremljena
+     */
+    public T putIfAbsent(String key, T value) throws RemoteException;
+
+    /**
+     * Atomarno povećaj brojčanu vrijednost (Long, Integer ili String s cijelim brojem)
+     *
+     * @param key
+     * @param delta
+     * @return nova vrijednost
+     * @throws RemoteException i ako para nema ili vrijednost nije cijeli broj
+     */
+    public long increment(String key, long delta) throws RemoteException;
+
+    /**
+     * Atomarno povećaj brojčanu vrijednost; ako para nema, povećava se initial (i zadržava njegov tip)
+     *
+     * @param key
+     * @param delta
+     * @param initial - vrijednost brojača kojeg još nema, npr. "0" ili 0L
+     * @return nova vrijednost
+     * @throws RemoteException i ako vrijednost nije cijeli broj
+     */
+    public long increment(String key, long delta, T initial) throws RemoteException;
+
+    /**
+     * Atomarno spoji vrijednost s postojećom merge funkcijom registriranom na svim čvorovima
+     * (AtomicOperations.registerMergeFunction); ako para nema, sprema se value
+     *
+     * @param key
+     * @param value
+     * @param function - ime merge funkcije
+     * @return nova vrijednost
+     */
+    public T merge(String key, T value, String function) throws RemoteException;
+
+    /**
+     * Parovi s identifikatorom u [fromId, toId] u redoslijedu prstena (ako je fromId > toId, interval prelazi preko nule).
+     * Pitaju se samo čvorovi čiji se interval (predecessor, index] preklapa s traženim.
+     *
+     * @param fromId
+     * @param toId
+     * @param limit - najviše parova na stranici
+     * @return stranica s tokenom za nastavak
+     */
+    public ScanPage<T> scan(long fromId, long toId, int limit) throws RemoteException;
+
+    /**
+     * Nastavi range scan od tokena prethodne stranice
+     *
+     * @param continuationToken
+     * @param limit - najviše parova na stranici
+     * @return sljedeća stranica
+     */
+    public ScanPage<T> scan(String continuationToken, int limit) throws RemoteException;
+
+    /**
+     * Parovi čiji identifikator počinje s prefixBits bitova prefix (prefiks je interval prstena)
+     *
+     * @param prefix
+     * @param prefixBits
+     * @param limit - najviše parova na stranici
+     * @return stranica s tokenom za nastavak
+     */
+    public ScanPage<T> scanPrefix(long prefix, int prefixBits, int limit) throws RemoteException;
+
     /**
      * Lista String reprezentacija svih vrijednosti u mapi
      *
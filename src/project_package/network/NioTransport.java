@@ -0,0 +1,526 @@
+package project_package.network;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Neblokirajući transport preko NIO kanala.
+ * Čvor drži jednu trajnu TCP konekciju prema svakom čvoru kojem šalje zahtjeve. Zahtjevi se na konekciji
+ * multipleksiraju po ID-u, pa ih može biti više u tijeku odjednom, a odgovori stižu bilo kojim redom.
+ * Sve konekcije poslužuje mali fiksni broj event-loop dretvi (svaka sa svojim selectorom).
+ *
+ * Okvir (big-endian): int duljina ostatka okvira, long ID zahtjeva, byte operacija (zahtjev) ili status (odgovor),
+ * long ključ (samo zahtjev), pa bajtovi vrijednosti.
+ *
+ * Event-loop dretve samo čitaju i pišu okvire; handler se izvršava na zasebnim dretvama,
+ * a odgovor se zapiše kad zahtjev završi.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class NioTransport implements Transport {
+
+    public static final String SCHEME = "nio://";
+    public static final int DEFAULT_EVENT_LOOPS = 2;
+    public static final int DEFAULT_HANDLER_THREADS = 8;
+
+    private static final int MAX_FRAME = 64 << 20;
+    private static final int REQUEST_HEADER = 8 + 1 + 8;
+    private static final int RESPONSE_HEADER = 8 + 1;
+    private static final int READ_BUFFER = 64 << 10;
+    private static final int MAX_GATHER = 64;
+
+    private static final byte OK = 0;
+    private static final byte NULL = 1;
+    private static final byte NOT_RESPONSIBLE = 2;
+    private static final byte ERROR = 3;
+    private static final byte BUSY = 4;
+
+    private final String host;
+    private final int port;
+    private final EventLoop[] loops;
+    private final ExecutorService handlers;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final AtomicLong nextRequestId = new AtomicLong();
+
+    /**
+     * Odlazne konekcije po adresi
+     */
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+
+    /**
+     * Sve otvorene konekcije (odlazne i dolazne), da ih close() zatvori
+     */
+    private final Set<Connection> openConnections = ConcurrentHashMap.newKeySet();
+
+    private volatile Handler handler;
+    private ServerSocketChannel server;
+    private volatile boolean closed = false;
+
+    public NioTransport() throws IOException {
+        this("localhost", 0, DEFAULT_EVENT_LOOPS);
+    }
+
+    /**
+     * @param host - host na kojem se primaju zahtjevi (i koji se objavljuje u adresi)
+     * @param port - port (0 za bilo koji slobodan)
+     * @param eventLoops - broj event-loop dretvi
+     * @throws IOException
+     */
+    public NioTransport(String host, int port, int eventLoops) throws IOException {
+        this(host, port, eventLoops, DEFAULT_HANDLER_THREADS);
+    }
+
+    /**
+     * @param host - host na kojem se primaju zahtjevi (i koji se objavljuje u adresi)
+     * @param port - port (0 za bilo koji slobodan)
+     * @param eventLoops - broj event-loop dretvi
+     * @param handlerThreads - broj dretvi koje izvršavaju primljene zahtjeve
+     * @throws IOException
+     */
+    public NioTransport(String host, int port, int eventLoops, int handlerThreads) throws IOException {
+        if(eventLoops < 1 || handlerThreads < 1)
+            throw new IllegalArgumentException("At least one event loop and one handler thread are needed");
+        this.host = host;
+        this.port = port;
+        this.handlers = Executors.newFixedThreadPool(handlerThreads, r -> {
+            Thread thread = new Thread(r, "dht-nio-handler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.loops = new EventLoop[eventLoops];
+        for(int i=0; i<eventLoops; i++)
+            loops[i] = new EventLoop(i);
+    }
+
+    @Override
+    public synchronized String start(String name, Handler handler) throws IOException {
+        if(server != null)
+            throw new IllegalStateException("Transport is already started");
+        this.handler = handler;
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(host, port));
+        server.configureBlocking(false);
+        EventLoop acceptor = loops[0];
+        acceptor.execute(() -> {
+            try {
+                server.register(acceptor.selector, SelectionKey.OP_ACCEPT);
+            } catch (ClosedChannelException e) {
+                //transport je zatvoren prije registracije
+            }
+        });
+        return SCHEME + host + ":" + ((InetSocketAddress) server.getLocalAddress()).getPort();
+    }
+
+    @Override
+    public boolean supports(String address) {
+        return address != null && address.startsWith(SCHEME);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> send(String address, byte operation, long key, byte[] payload) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        if(closed || !supports(address)) {
+            future.completeExceptionally(new RemoteException(closed ? "Transport is closed" : "Not an NIO address: " + address));
+            return future;
+        }
+        Connection connection;
+        try {
+            connection = connections.computeIfAbsent(address, this::connect);
+        } catch (UncheckedIOException e) {
+            future.completeExceptionally(new RemoteException("Can't connect to " + address, e.getCause()));
+            return future;
+        }
+        long id = nextRequestId.incrementAndGet();
+        connection.pending.put(id, future);
+        //future koji pozivatelj otkaže (timeout) se ne čuva dok se konekcija ne zatvori
+        future.whenComplete((reply, error) -> connection.pending.remove(id, future));
+        int length = payload == null ? 0 : payload.length;
+        ByteBuffer frame = ByteBuffer.allocate(4 + REQUEST_HEADER + length);
+        frame.putInt(REQUEST_HEADER + length).putLong(id).put(operation).putLong(key);
+        if(payload != null)
+            frame.put(payload);
+        frame.flip();
+        connection.write(frame);
+        //konekcija se zatvorila prije nego je zahtjev zapamćen
+        if(!connection.open && connection.pending.remove(id) != null)
+            future.completeExceptionally(new RemoteException("Connection to " + address + " is closed"));
+        return future;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if(closed)
+                return;
+            closed = true;
+        }
+        try {
+            if(server != null)
+                server.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        handlers.shutdownNow();
+        for(Connection connection : openConnections)
+            connection.close(new ClosedChannelException());
+        for(EventLoop loop : loops) {
+            loop.selector.wakeup();
+            try {
+                loop.thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public int getEventLoops() {
+        return loops.length;
+    }
+
+    //adresa: nio://host:port
+    private Connection connect(String address) {
+        String rest = address.substring(SCHEME.length());
+        int colon = rest.lastIndexOf(':');
+        try {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(rest.substring(0, colon), Integer.parseInt(rest.substring(colon + 1))));
+            return new Connection(channel, nextLoop(), address);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            throw new UncheckedIOException(new IOException("Bad address " + address, e));
+        }
+    }
+
+    private EventLoop nextLoop() {
+        return loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+    }
+
+    //zahtjev na dolaznoj konekciji: pročitaj ga na event-loop dretvi, a obradi i odgovori na dretvi handlera
+    private void handleRequest(Connection connection, ByteBuffer frame) {
+        long id = frame.getLong();
+        byte operation = frame.get();
+        long key = frame.getLong();
+        byte[] payload = new byte[frame.remaining()];
+        frame.get(payload);
+        try {
+            handlers.execute(() -> respond(connection, id, operation, key, payload));
+        } catch (RejectedExecutionException e) {
+            //transport se zatvara
+            reply(connection, id, BUSY, "Transport is closed".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void respond(Connection connection, long id, byte operation, long key, byte[] payload) {
+        byte status;
+        byte[] reply;
+        try {
+            reply = handler.handle(operation, key, payload);
+            status = reply == null ? NULL : OK;
+        } catch (NotResponsibleException e) {
+            status = NOT_RESPONSIBLE;
+            reply = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+        } catch (BusyException e) {
+            status = BUSY;
+            reply = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            status = ERROR;
+            reply = String.valueOf(e).getBytes(StandardCharsets.UTF_8);
+        }
+        reply(connection, id, status, reply);
+    }
+
+    private void reply(Connection connection, long id, byte status, byte[] reply) {
+        int length = reply == null ? 0 : reply.length;
+        ByteBuffer response = ByteBuffer.allocate(4 + RESPONSE_HEADER + length);
+        response.putInt(RESPONSE_HEADER + length).putLong(id).put(status);
+        if(reply != null)
+            response.put(reply);
+        response.flip();
+        connection.write(response);
+    }
+
+    //odgovor na odlaznoj konekciji: završi future zahtjeva
+    private void handleResponse(Connection connection, ByteBuffer frame) {
+        long id = frame.getLong();
+        byte status = frame.get();
+        byte[] payload = new byte[frame.remaining()];
+        frame.get(payload);
+        CompletableFuture<byte[]> future = connection.pending.remove(id);
+        if(future == null)
+            return;
+        if(status == OK)
+            future.complete(payload);
+        else if(status == NULL)
+            future.complete(null);
+        else if(status == NOT_RESPONSIBLE)
+            future.completeExceptionally(new NotResponsibleException(new String(payload, StandardCharsets.UTF_8)));
+        else if(status == BUSY)
+            future.completeExceptionally(new BusyException(connection.address + ": " + new String(payload, StandardCharsets.UTF_8)));
+        else
+            future.completeExceptionally(new RemoteException(connection.address + ": " + new String(payload, StandardCharsets.UTF_8)));
+    }
+
+    //-------------------------------------------------EVENT LOOP------------------------------------------
+
+    /**
+     * Dretva sa selectorom koja čita i piše na svojim konekcijama
+     */
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+
+        private EventLoop(int number) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "dht-nio-" + number);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        //izvrši zadatak na ovoj dretvi (prije sljedećeg čekanja na selectoru)
+        private void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while(!closed) {
+                try {
+                    selector.select();
+                } catch (IOException e) {
+                    if(!closed)
+                        e.printStackTrace();
+                    continue;
+                }
+                Runnable task;
+                while((task = tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while(selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    if(!key.isValid())
+                        continue;
+                    //greška na jednoj konekciji zatvara samo tu konekciju
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if(key.isAcceptable()) {
+                            accept();
+                            continue;
+                        }
+                        if(key.isReadable())
+                            connection.read();
+                        if(key.isValid() && key.isWritable())
+                            connection.flush();
+                    } catch (IOException | RuntimeException e) {
+                        if(connection != null)
+                            connection.close(e);
+                        else if(!closed)
+                            e.printStackTrace();
+                    }
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel = server.accept();
+            if(channel != null)
+                new Connection(channel, nextLoop(), null);
+        }
+    }
+
+    //-------------------------------------------------CONNECTION------------------------------------------
+
+    /**
+     * Jedna TCP konekcija; odlazna (address != null) nosi zahtjeve ovog čvora, a dolazna zahtjeve drugog čvora
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final EventLoop loop;
+        private final String address;
+        private volatile SelectionKey key;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER);
+        private final Queue<ByteBuffer> writes = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private final ReentrantLock writeLock = new ReentrantLock();
+        private final Map<Long, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<>();
+        private volatile boolean open = true;
+
+        private Connection(SocketChannel channel, EventLoop loop, String address) throws IOException {
+            this.channel = channel;
+            this.loop = loop;
+            this.address = address;
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            openConnections.add(this);
+            loop.execute(() -> {
+                try {
+                    key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+                    flush();
+                } catch (ClosedChannelException e) {
+                    close(e);
+                }
+            });
+        }
+
+        /**
+         * Okvir ide u red. Ako nitko drugi ne piše, dretva koja šalje ga odmah zapiše (bez prelaska na event-loop dretvu);
+         * inače, ili ako socket ne primi sve, ostatak šalje event-loop dretva (više okvira odjednom).
+         */
+        private void write(ByteBuffer frame) {
+            writes.add(frame);
+            if(Thread.currentThread() == loop.thread)
+                flush();
+            else if(!flushScheduled.get() && writeLock.tryLock()) {
+                try {
+                    if(key != null && open && drain())
+                        return;
+                } catch (IOException e) {
+                    close(e);
+                    return;
+                } finally {
+                    writeLock.unlock();
+                }
+                scheduleFlush();
+            } else
+                scheduleFlush();
+        }
+
+        private void scheduleFlush() {
+            if(flushScheduled.compareAndSet(false, true))
+                loop.execute(() -> {
+                    flushScheduled.set(false);
+                    flush();
+                });
+        }
+
+        //zapiši okvire iz reda dok socket prima; true ako je red prazan
+        private boolean drain() throws IOException {
+            List<ByteBuffer> batch = new ArrayList<>(MAX_GATHER);
+            while(!writes.isEmpty()) {
+                batch.clear();
+                for(ByteBuffer buffer : writes) {
+                    batch.add(buffer);
+                    if(batch.size() == MAX_GATHER)
+                        break;
+                }
+                channel.write(batch.toArray(new ByteBuffer[0]));
+                for(ByteBuffer buffer : batch) {
+                    if(buffer.hasRemaining())
+                        return false;
+                    writes.poll();
+                }
+            }
+            return true;
+        }
+
+        //na event-loop dretvi: ako socket ne primi sve, nastavlja se kad bude spreman za pisanje
+        private void flush() {
+            if(key == null || !open)
+                return;
+            writeLock.lock();
+            try {
+                key.interestOps(drain() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } catch (IOException e) {
+                close(e);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private void read() {
+            try {
+                if(channel.read(readBuffer) < 0) {
+                    close(new EOFException("Connection closed by peer"));
+                    return;
+                }
+                readBuffer.flip();
+                int needed = 0;
+                while(readBuffer.remaining() >= 4) {
+                    int length = readBuffer.getInt(readBuffer.position());
+                    if(length < (address == null ? REQUEST_HEADER : RESPONSE_HEADER) || length > MAX_FRAME)
+                        throw new IOException("Bad frame length " + length);
+                    if(readBuffer.remaining() < 4 + length) {
+                        needed = 4 + length;
+                        break;
+                    }
+                    ByteBuffer frame = readBuffer.slice(readBuffer.position() + 4, length);
+                    readBuffer.position(readBuffer.position() + 4 + length);
+                    if(address == null)
+                        handleRequest(this, frame);
+                    else
+                        handleResponse(this, frame);
+                }
+                readBuffer.compact();
+                if(needed > readBuffer.capacity()) {
+                    ByteBuffer bigger = ByteBuffer.allocate(needed);
+                    readBuffer.flip();
+                    bigger.put(readBuffer);
+                    readBuffer = bigger;
+                }
+            } catch (IOException e) {
+                close(e);
+            }
+        }
+
+        private void close(Exception cause) {
+            if(!open)
+                return;
+            open = false;
+            openConnections.remove(this);
+            if(address != null)
+                connections.remove(address, this);
+            if(key != null)
+                key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //već je zatvorena
+            }
+            for(Long id : pending.keySet()) {
+                CompletableFuture<byte[]> future = pending.remove(id);
+                if(future != null)
+                    future.completeExceptionally(new RemoteException("Connection to " + address + " is closed", cause));
+            }
+        }
+    }
+}
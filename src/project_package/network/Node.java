@@ -1,20 +1,50 @@
 package project_package.network;
 
 import project_package.service.KeyService;
+import project_package.storage.EncodedEntries;
+import project_package.storage.EncodedStorage;
 import project_package.storage.Storage;
+import project_package.storage.ValueCodec;
 
+import java.io.IOException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.rmi.server.RemoteServer;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Implementacija čvora u project_package.network.DHT-u.
@@ -24,7 +54,7 @@ import java.util.Map;
  * @param <T> tip vrijednosti koja se posprema u DHT
  *
  */
-public class Node<T> extends UnicastRemoteObject implements Network<T> {
+public class Node<T> extends RemoteServer implements Network<T>, AsyncNetwork<T> {
 
     private static final long serialVersionUID = 7837010474371220959L;
 
@@ -33,6 +63,11 @@ public class Node<T> extends UnicastRemoteObject implements Network<T> {
      */
     private static final int N = 1048576;
 
+    /**
+     * Broj bitova identifikatora, ujedno broj fingera (N = 2^M)
+     */
+    private static final int M = Integer.numberOfTrailingZeros(N);
+
     /**
      * Defaultni port za RMI-connection.
      */
@@ -43,29 +78,269 @@ public class Node<T> extends UnicastRemoteObject implements Network<T> {
     private String name;
 
     /**
-     * Indeks cvora, ujedno minimalna vrijednost kljuca da bi se ovaj nasao u njemu
+     * Indeks cvora, ujedno maksimalna vrijednost kljuca da bi se ovaj nasao u njemu
+     */
+    private long index;
+
+    /**
+     * Nasljednik u prstenu (mreži), s indeksom, da korak lookupa ne mora pitati nasljednika za indeks
+     */
+    private volatile NodeHandle<T> successor;
+
+    /**
+     * Prethodnik u prstenu (mreži), null ako ga checkPredecessor() proglasi nedostupnim
      */
-    private String index;
+    private volatile NodeHandle<T> predecessor;
 
     /**
-     * Nasljednik u prstenu (mreži)
+     * Handle ovog čvora (stvara se kod prvog getHandle(), a briše kad se promijeni ime, indeks ili adresa transporta)
      */
-    private Node<T> successor;
+    private volatile NodeHandle<T> handle;
 
     /**
-     * Prethodnik u prstenu (mreži)
+     * Je li čvor aktivan član mreže (false nakon leaveCurrentNetwork)
      */
-    private Node<T> predecessor;
+    private volatile boolean active = true;
 
     /**
      * Spremište za koje je ovaj čvor odgovoran
      */
-    private Storage<T> storage = new Storage();
+    private volatile Storage<T> storage = new Storage<>(true);
+
+    /**
+     * Codec kojim se vrijednosti prenose između čvorova (null: prenose se objekti Java serijalizacijom)
+     */
+    private volatile ValueCodec<T> codec = null;
 
     /**
      * Routing tablica
      */
-    private Map<String, Node<T>> fingers = new LinkedHashMap<>();
+    private volatile FingerTable<T> fingers;
+
+    /**
+     * Fingeri po pozicijama: fingerSlots[i] = successor(index + 2^i), iz njih se gradi routing tablica
+     */
+    private final Node<T>[] fingerSlots = newNodeArray(M);
+
+    /**
+     * Sljedeći finger kojeg će fixFingers() osvježiti
+     */
+    private int nextFingerToFix = 0;
+
+    /**
+     * Defaultni način održavanja routing tablica za nove čvorove
+     */
+    private static volatile RoutingMode defaultRoutingMode = RoutingMode.STABILIZED;
+
+    /**
+     * Način održavanja routing tablica ovog čvora
+     */
+    private volatile RoutingMode routingMode = defaultRoutingMode;
+
+    /**
+     * Cache lokacija ključeva za CRUD operacije ovog čvora
+     */
+    private final LocationCache<T> locationCache = new LocationCache<>();
+
+    /**
+     * Koliko puta se CRUD operacija pokušava s provjerom vlasništva prije nego se izvrši bez nje
+     */
+    private static final int MAX_OWNER_ATTEMPTS = 3;
+
+    /**
+     * Defaultni način lookupa za nove čvorove
+     */
+    private static volatile LookupMode defaultLookupMode = LookupMode.ITERATIVE;
+
+    /**
+     * Način lookupa ovog čvora
+     */
+    private volatile LookupMode lookupMode = defaultLookupMode;
+
+    /**
+     * Defaultni broj kopija svakog para (vlasnik + R-1 nasljednika) za nove čvorove
+     */
+    private static volatile int defaultReplicationFactor = 1;
+
+    /**
+     * Broj kopija parova ovog čvora (svi čvorovi u mreži moraju imati isti)
+     */
+    private volatile int replicationFactor = defaultReplicationFactor;
+
+    /**
+     * Defaultni način čitanja za nove čvorove
+     */
+    private static volatile ReadMode defaultReadMode = ReadMode.PRIMARY;
+
+    /**
+     * Način čitanja ovog čvora
+     */
+    private volatile ReadMode readMode = defaultReadMode;
+
+    /**
+     * Replike parova za koje su odgovorni prethodnici (kodirane codecom spremišta)
+     */
+    private volatile Storage<T> replicas = new EncodedStorage<>(storage.getCodec());
+
+    /**
+     * Cache skupova kopija po indeksu vlasnika (vlasnik + nasljednici koji drže replike), za čitanje s replika
+     */
+    private final Map<Long, List<Node<T>>> replicaSets = new ConcurrentHashMap<>();
+
+    /**
+     * Broj zahtjeva ovog čvora u tijeku po kopiji (za LEAST_LOADED čitanje)
+     */
+    private final Map<Node<T>, AtomicInteger> replicaLoad = new ConcurrentHashMap<>();
+
+    /**
+     * Broj čitanja koje je ovaj čvor poslužio (iz svojeg spremišta ili replika)
+     */
+    private final AtomicLong servedReads = new AtomicLong();
+
+    /**
+     * Detekcija popularnih ključeva među čitanjima koja ovaj čvor poslužuje kao vlasnik
+     */
+    private final HotKeyDetector hotKeys = new HotKeyDetector();
+
+    /**
+     * Sat verzija kopija popularnih vrijednosti. Svaka invalidacija dobije novu vrijednost sata, a kopija
+     * trenutnu, pa je invalidacija uvijek novija od svake ranije poslane kopije (bez mape verzija po ključu)
+     */
+    private final AtomicLong versionClock = new AtomicLong();
+
+    /**
+     * Čvorovi koji drže kopiju popularnog ključa (kojima se šalje invalidacija)
+     */
+    private final Map<Long, Set<Node<T>>> cacheHolders = new ConcurrentHashMap<>();
+
+    /**
+     * Kratkotrajne kopije popularnih vrijednosti koje je ovaj čvor pročitao
+     */
+    private final PathCache<T> pathCache = new PathCache<>();
+
+    /**
+     * Drži li ovaj čvor kopije popularnih vrijednosti
+     */
+    private volatile boolean pathCaching = true;
+
+    /**
+     * Spajaju li se istovremeni lookupovi i čitanja istog ključa s ovog čvora
+     */
+    private volatile boolean coalescing = true;
+
+    /**
+     * Lookupovi vlasnika koji su u tijeku, po ključu
+     */
+    private final SingleFlight<NodeHandle<T>> ownerLookups = new SingleFlight<>();
+
+    /**
+     * Čitanja kod vlasnika koja su u tijeku, po ključu
+     */
+    private final SingleFlight<T> ownerReads = new SingleFlight<>();
+
+    /**
+     * Transport kojim ovaj čvor šalje CRUD zahtjeve vlasnicima i prima njihove (null: čvorovi se pozivaju izravno)
+     */
+    private volatile Transport transport;
+
+    /**
+     * Adresa na kojoj transport ovog čvora prima zahtjeve
+     */
+    private volatile String transportAddress;
+
+    /**
+     * Najdulje čekanje na odgovor zahtjeva poslanog transportom u milisekundama
+     */
+    private volatile long transportTimeout = DEFAULT_TRANSPORT_TIMEOUT;
+
+    public static final long DEFAULT_TRANSPORT_TIMEOUT = 5000;
+
+    /**
+     * Pisanja ga drže za čitanje, a predaja intervala za pisanje (da se promjena ne izgubi za vrijeme predaje)
+     */
+    private final ReentrantReadWriteLock transferLock = new ReentrantReadWriteLock();
+
+    /**
+     * Pisanje ključa i slanje promjene replikama drži lock ključa (po hashu), da replike prime promjene istim redom kao vlasnik
+     */
+    private final ReentrantLock[] keyLocks = newKeyLocks(KEY_LOCKS);
+
+    private static final int KEY_LOCKS = 256;
+
+    /**
+     * Intervali koji se upravo prenose drugom čvoru, s ključevima promijenjenim za vrijeme prijenosa
+     */
+    private final List<TransferLog> transferLogs = new CopyOnWriteArrayList<>();
+
+    /**
+     * Koliko puta se prijenos nastavlja od checkpointa prije nego join/leave odustane
+     */
+    private static final int MAX_TRANSFER_ATTEMPTS = 3;
+
+    private volatile int transferChunkSize = RangeTransfer.DEFAULT_CHUNK_SIZE;
+    private volatile int transferStreams = RangeTransfer.DEFAULT_STREAMS;
+    private volatile RangeTransfer lastTransfer;
+
+    /**
+     * Defaultno za nove čvorove: simulirani čvor se ne objavljuje preko RMI-ja i nema dretve za održavanje
+     * (stabilizaciju mu pokreće simulator, npr. project_package.simulation.Simulation)
+     */
+    private static volatile boolean defaultSimulated = false;
+
+    /**
+     * Je li ovaj čvor simuliran
+     */
+    private final boolean simulated = defaultSimulated;
+
+    /**
+     * Pozadinsko održavanje (samo u STABILIZED načinu)
+     */
+    private final Stabilizer stabilizer = new Stabilizer(this);
+
+    /**
+     * Broj lookup upita koje je ovaj čvor proslijedio drugom čvoru (hop counter)
+     */
+    private final AtomicLong forwardedLookups = new AtomicLong();
+
+    /**
+     * Izvršitelj asinkronih zahtjeva ovog čvora (stvara se kod prvog asinkronog zahtjeva)
+     */
+    private volatile AsyncExecutor asyncExecutor;
+
+    /**
+     * Izvršitelj dolaznih zahtjeva za podatke (CRUD, batch, atomarne operacije, čitanje kopija).
+     * Koraci lookupa (koristi ih i fixFingers) i zahtjevi replikacije, prijenosa intervala i stabilizacije
+     * se izvršavaju izravno, da se održavanje prstena ne odbaci kod preopterećenja.
+     */
+    private volatile RequestExecutor requestExecutor = new RequestExecutor();
+
+    /**
+     * Registryji udaljenih mreža na koje su se čvorovi spajali, po "host:port"
+     */
+    private static final Map<String, Registry> registries = new ConcurrentHashMap<>();
+
+    /**
+     * Dretve koje paralelno šalju batch zahtjeve različitim vlasnicima
+     */
+    private static final ExecutorService batchExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "dht-batch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Interval (from, to] koji se prenosi i ključevi promijenjeni za vrijeme prijenosa
+     */
+    private static final class TransferLog {
+        private final long from;
+        private final long to;
+        private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+        private TransferLog(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
 
     //-----------------------------------------------------KONSTRUKTORI-----------------------------------------
     
@@ -75,12 +350,18 @@ public class Node<T> extends UnicastRemoteObject implements Network<T> {
         //settam ime i iz njega generiram indeks cvora
         this.setName(name);
         this.setIndex(KeyService.generateNodeIndex(name, N));
+        this.setFingers(new FingerTable<>(index, N));
 
         //buduci nemam s cim spojiti, on je prethodnik i sljedbenik samome sebi
         this.setSuccessor(this);
         this.setPredecessor(this);
 
+        //simulirani čvorovi se pozivaju samo iz istog procesa
+        if(simulated)
+            return;
+
         //spajam ga kao klin
+        UnicastRemoteObject.exportObject(this, 0);
         Registry registry;
         try {
             registry = LocateRegistry.createRegistry(DEFAULT_PORT);
@@ -91,266 +372,2492 @@ public class Node<T> extends UnicastRemoteObject implements Network<T> {
 
     }
 
-    //Konstruktor koji inicijalizira jedan node i spaja ga na mrežu koja sadži Node other
-    public Node(String name, Node<T> other) throws RemoteException {
-        this(name);
-        joinNetworkWithNode(other);
+    //Konstruktor koji inicijalizira jedan node i spaja ga na mrežu koja sadži Node other
+    public Node(String name, Node<T> other) throws RemoteException {
+        this(name);
+        joinNetworkWithNode(other);
+    }
+
+    //Konstruktor koji spaja dht.Node na udaljenu (internet/remote) mrežu
+    @SuppressWarnings("unchecked")
+    public Node(String name, String host, int port, String otherName) throws RemoteException, NotBoundException {
+        //konstruiraj nod kao da je zaseban u mreži
+        this(name);
+
+        //registry stuffre
+        Node<T> other = (Node<T>) registryOf(host, port).lookup(otherName);
+
+        //spoji na ostatak mreže
+        joinNetworkWithNode(other);
+    }
+
+    //stub registryja se pamti po adresi, pa se ponovna spajanja na isti host ne stvaraju iznova
+    private static Registry registryOf(String host, int port) throws RemoteException {
+        String address = host + ":" + port;
+        Registry registry = registries.get(address);
+        if(registry == null) {
+            registry = LocateRegistry.getRegistry(host, port);
+            Registry previous = registries.putIfAbsent(address, registry);
+            if(previous != null)
+                registry = previous;
+        }
+        return registry;
+    }
+
+    //------------------------------------------------GETTERS AND SETTERS------------------------------------
+
+    public Node<T> getSuccessor() throws RemoteException {
+        NodeHandle<T> succ = successor;
+        return succ == null ? null : succ.getNode();
+    }
+
+    public Node<T> getPredecessor() throws RemoteException {
+        NodeHandle<T> pred = predecessor;
+        return pred == null ? null : pred.getNode();
+    }
+
+    /**
+     * @return referenca na ovaj čvor s njegovim indeksom, imenom i adresom transporta
+     * @throws RemoteException
+     */
+    public NodeHandle<T> getHandle() throws RemoteException {
+        NodeHandle<T> current = handle;
+        if(current == null) {
+            current = new NodeHandle<>(this, index, name, transportAddress);
+            handle = current;
+        }
+        return current;
+    }
+
+    /**
+     * Nasljednik i prethodnik ovog čvora te je li čvor još član mreže, u jednom pozivu (za stabilize)
+     *
+     * @return susjedi ovog čvora
+     * @throws RemoteException
+     */
+    public Neighbours<T> getNeighbours() throws RemoteException {
+        return new Neighbours<>(successor, predecessor, active);
+    }
+
+    public long getIndex() throws RemoteException {return index;}
+
+    public String getName() {
+        return name;
+    }
+
+    public Storage<T> getStorage() {
+        return storage;
+    }
+
+    public FingerTable<T> getFingers() {
+        return fingers;
+    }
+
+    public void setFingers(FingerTable<T> fingers) {
+        this.fingers = fingers;
+    }
+
+    public long getForwardedLookups() {
+        return forwardedLookups.get();
+    }
+
+    public static RoutingMode getDefaultRoutingMode() {
+        return defaultRoutingMode;
+    }
+
+    /**
+     * Postavi način održavanja routing tablica za čvorove koji se tek stvaraju
+     *
+     * @param mode
+     */
+    public static void setDefaultRoutingMode(RoutingMode mode) {
+        defaultRoutingMode = mode;
+    }
+
+    public RoutingMode getRoutingMode() {
+        return routingMode;
+    }
+
+    public void setRoutingMode(RoutingMode routingMode) {
+        this.routingMode = routingMode;
+        if(routingMode == RoutingMode.EAGER)
+            stabilizer.stop();
+    }
+
+    public static LookupMode getDefaultLookupMode() {
+        return defaultLookupMode;
+    }
+
+    /**
+     * Postavi način lookupa za čvorove koji se tek stvaraju
+     *
+     * @param mode
+     */
+    public static void setDefaultLookupMode(LookupMode mode) {
+        defaultLookupMode = mode;
+    }
+
+    public LookupMode getLookupMode() {
+        return lookupMode;
+    }
+
+    public void setLookupMode(LookupMode lookupMode) {
+        this.lookupMode = lookupMode;
+    }
+
+    public static int getDefaultReplicationFactor() {
+        return defaultReplicationFactor;
+    }
+
+    /**
+     * Postavi broj kopija za čvorove koji se tek stvaraju
+     *
+     * @param replicationFactor - 1 za samo vlasnika
+     */
+    public static void setDefaultReplicationFactor(int replicationFactor) {
+        if(replicationFactor < 1)
+            throw new IllegalArgumentException("Replication factor must be at least 1");
+        defaultReplicationFactor = replicationFactor;
+    }
+
+    public int getReplicationFactor() {
+        return replicationFactor;
+    }
+
+    /**
+     * Postavi broj kopija; postojeći parovi se repliciraju tek kod sljedećeg repairReplicas()
+     *
+     * @param replicationFactor - 1 za samo vlasnika
+     */
+    public void setReplicationFactor(int replicationFactor) {
+        if(replicationFactor < 1)
+            throw new IllegalArgumentException("Replication factor must be at least 1");
+        this.replicationFactor = replicationFactor;
+        replicaSets.clear();
+    }
+
+    public static ReadMode getDefaultReadMode() {
+        return defaultReadMode;
+    }
+
+    /**
+     * Postavi način čitanja za čvorove koji se tek stvaraju
+     *
+     * @param mode
+     */
+    public static void setDefaultReadMode(ReadMode mode) {
+        defaultReadMode = mode;
+    }
+
+    public ReadMode getReadMode() {
+        return readMode;
+    }
+
+    public void setReadMode(ReadMode readMode) {
+        this.readMode = readMode;
+    }
+
+    public Storage<T> getReplicas() {
+        return replicas;
+    }
+
+    public long getServedReads() {
+        return servedReads.get();
+    }
+
+    public HotKeyDetector getHotKeys() {
+        return hotKeys;
+    }
+
+    public PathCache<T> getPathCache() {
+        return pathCache;
+    }
+
+    public boolean isPathCaching() {
+        return pathCaching;
+    }
+
+    /**
+     * Uključi/isključi kopije popularnih vrijednosti na ovom čvoru (isključivanje briše postojeće kopije)
+     *
+     * @param pathCaching
+     */
+    public void setPathCaching(boolean pathCaching) {
+        this.pathCaching = pathCaching;
+        if(!pathCaching)
+            pathCache.clear();
+    }
+
+    public boolean isCoalescing() {
+        return coalescing;
+    }
+
+    /**
+     * Uključi/isključi spajanje istovremenih lookupova i čitanja istog ključa.
+     * Čitanje koje se pridruži čitanju u tijeku dobiva vrijednost pročitanu nakon početka tog čitanja;
+     * pisanje s ovog čvora odvaja kasnija čitanja od čitanja koja su počela prije njega.
+     *
+     * @param coalescing
+     */
+    public void setCoalescing(boolean coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    public SingleFlight<NodeHandle<T>> getOwnerLookups() {
+        return ownerLookups;
+    }
+
+    public SingleFlight<T> getOwnerReads() {
+        return ownerReads;
+    }
+
+    public LocationCache<T> getLocationCache() {
+        return locationCache;
+    }
+
+    /**
+     * @return izvršitelj asinkronih zahtjeva (s defaultnim limitima ako nije postavljen)
+     */
+    public AsyncExecutor getAsyncExecutor() {
+        AsyncExecutor executor = asyncExecutor;
+        if(executor == null) {
+            synchronized (this) {
+                if(asyncExecutor == null)
+                    asyncExecutor = new AsyncExecutor();
+                executor = asyncExecutor;
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Postavi limite asinkronih zahtjeva; stari izvršitelj se zaustavlja
+     *
+     * @param connections - broj dretvi koje istovremeno rade pozive
+     * @param maxOutstanding - maksimalan broj zahtjeva u tijeku
+     * @param timeoutMillis - timeout zahtjeva
+     */
+    public synchronized void setAsyncLimits(int connections, int maxOutstanding, long timeoutMillis) {
+        if(asyncExecutor != null)
+            asyncExecutor.shutdown();
+        asyncExecutor = new AsyncExecutor(connections, maxOutstanding, timeoutMillis);
+    }
+
+    public RequestExecutor getRequestExecutor() {
+        return requestExecutor;
+    }
+
+    /**
+     * Postavi način izvršavanja dolaznih zahtjeva; stari izvršitelj još izvrši zahtjeve koji su mu u redu
+     *
+     * @param mode
+     * @param workers - broj dretvi koje izvršavaju zahtjeve (BOUNDED)
+     * @param queueCapacity - najviše zahtjeva koji čekaju slobodnu dretvu (BOUNDED)
+     * @param maxQueueMillis - najdulje čekanje u redu (BOUNDED)
+     */
+    public synchronized void setRequestExecution(ExecutionMode mode, int workers, int queueCapacity, long maxQueueMillis) {
+        RequestExecutor old = requestExecutor;
+        requestExecutor = new RequestExecutor(mode, workers, queueCapacity, maxQueueMillis);
+        old.shutdown();
+    }
+
+    public static boolean isDefaultSimulated() {
+        return defaultSimulated;
+    }
+
+    /**
+     * @param simulated - true: čvorovi stvoreni od sada su simulirani (bez RMI-ja i dretvi za održavanje)
+     */
+    public static void setDefaultSimulated(boolean simulated) {
+        defaultSimulated = simulated;
+    }
+
+    public boolean isSimulated() {
+        return simulated;
+    }
+
+    public Stabilizer getStabilizer() {
+        return stabilizer;
+    }
+
+    /**
+     * Koristi se za provjeru je li čvor još uvijek u mreži
+     *
+     * @return true ako čvor nije napustio mrežu
+     * @throws RemoteException
+     */
+    public boolean isAlive() throws RemoteException {
+        return active;
+    }
+
+    public synchronized void setStorage(Storage<T> storage) {
+        this.storage = storage;
+        matchReplicaCodec();
+    }
+
+    public ValueCodec<T> getCodec() {
+        return codec;
+    }
+
+    /**
+     * Postavi codec kojim se vrijednosti prenose (svi čvorovi u mreži moraju imati isti).
+     * Ako obično spremište ne drži vrijednosti kodirane tim codecom, zamjenjuje se s EncodedStorage,
+     * pa čitanja i predaje spremišta samo kopiraju bajtove. Ostala spremišta (BoundedStorage,
+     * LogStructuredStorage, OffHeapStorage) se ne zamjenjuju, nego moraju biti napravljena s tim codecom.
+     *
+     * @param codec - codec ili null za prijenos objekata
+     * @throws IllegalStateException ako je spremište drugačije konfigurirano i nema taj codec
+     */
+    public synchronized void setCodec(ValueCodec<T> codec) {
+        boolean engine = storage.getClass() != Storage.class && storage.getClass() != EncodedStorage.class;
+        if(codec != null && engine && storage.getCodec() != codec)
+            throw new IllegalStateException("Storage " + storage.getClass().getSimpleName()
+                    + " must be created with this codec before it is set on the node");
+        if(codec != null && !engine && !(storage.isEncoded() && storage.getCodec() == codec)) {
+            //pisanja čekaju dok se spremište ne kopira, da se nijedno ne izgubi
+            transferLock.writeLock().lock();
+            try {
+                storage = encodedCopy(storage, codec);
+                matchReplicaCodec();
+            } finally {
+                transferLock.writeLock().unlock();
+            }
+        }
+        this.codec = codec;
+    }
+
+    //replike se drže kodirane istim codecom kao spremište, pa se između njih kopiraju bajtovi
+    private void matchReplicaCodec() {
+        if(replicas.getCodec() != storage.getCodec())
+            replicas = encodedCopy(replicas, storage.getCodec());
+    }
+
+    //EncodedStorage nije ograničen, pa kopiranje u njega ne može naići na puno spremište
+    private static <T> EncodedStorage<T> encodedCopy(Storage<T> source, ValueCodec<T> codec) {
+        EncodedStorage<T> encoded = new EncodedStorage<>(codec);
+        try {
+            encoded.addAll(source.snapshot());
+        } catch (RemoteException e) {
+            throw new IllegalStateException(e);
+        }
+        return encoded;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+        this.handle = null;
+    }
+
+    public void setIndex(long index) {
+        this.index = index;
+        this.handle = null;
+    }
+
+    public void setSuccessor(Node<T> newSuccessor) throws RemoteException {
+        successor = newSuccessor == null ? null : newSuccessor.getHandle();
+    }
+
+    public void setPredecessor(Node<T> newPredcessor) throws RemoteException {
+        predecessor = newPredcessor == null ? null : newPredcessor.getHandle();
+    }
+
+
+    //--------------------------------------------------JOIN & LEAVE dht NETWORK------------------------------
+    // Napusti trenutnu mrežu i pridruži se drugoj koja sadrži node other
+    public void joinNetworkWithNode(Node<T> other) {
+        try {
+            active = true;
+            locationCache.clear();
+            replicaSets.clear();
+            pathCache.clear();
+            //nasljednik je čvor koji je trenutno odgovoran za naš indeks - O(log N) poruka
+            Node<T> succ = findResponsibleNode(this.getIndex(), other);
+            Node<T> pred = succ.getPredecessor();
+            //ako nasljednik ne zna prethodnika, predajemo sve što nije u (succ, this]
+            long predKey = pred != null ? pred.getIndex() : succ.getIndex();
+
+            setSuccessor(succ);
+            setPredecessor(pred);
+
+            /*Get a share of the project_package.storage from our new successor*/
+            //nasljednik i dalje poslužuje interval dok se kopira u dijelovima, a predaje ga tek na kraju
+            receiveRange(succ, predKey);
+            if(pred != null)
+                pred.setSuccessor(this);
+            succ.notifyPredecessor(this);
+
+            if(routingMode == RoutingMode.EAGER)
+                updateRoutingTable();
+            else {
+                initFingers(succ);
+                stabilizer.start();
+            }
+
+            //prethodnici šalju replike i nama, a nasljednik ima novi (manji) interval
+            if(replicationFactor > 1) {
+                List<Node<T>> affected = predecessors(replicationFactor - 1);
+                affected.add(this);
+                affected.add(succ);
+                repairReplicas(affected);
+            }
+
+        } catch(RemoteException e) {
+            System.err.println("Error joining " + other);
+            e.printStackTrace();
+        }
+    }
+
+    // Napusti trenutnu mrežu
+    public void leaveCurrentNetwork() {
+        try {
+            stabilizer.stop();
+            locationCache.clear();
+            replicaSets.clear();
+            pathCache.clear();
+            Node<T> succ = this.getSuccessor();
+            Node<T> pred = this.getPredecessor();
+            //prethodnici gube jednu repliku (nas), pa ih moraju ponovno poslati
+            List<Node<T>> affected = replicationFactor > 1 && succ != this
+                    ? predecessors(replicationFactor - 1) : new ArrayList<>();
+
+            /*Hand over items to successor.*/
+//			System.out.println(name + ": I'm leaving. " + successor + " will handle my project_package.storage. (" + project_package.storage.size() + ") items.");
+            //spremište se šalje u dijelovima dok ovaj čvor i dalje poslužuje zahtjeve
+            TransferLog log = succ != this ? sendRange(succ) : null;
+            System.out.println(name + ": Done.");
+
+            //join empty hands inside the ring
+            //(pisanja čekaju dok se ne pošalju promjene napravljene za vrijeme slanja i prsten ne spoji)
+            transferLock.writeLock().lock();
+            try {
+                if(log != null)
+                    sendChanges(log, succ);
+                succ.setPredecessor(pred);
+                if(pred != null)
+                    pred.setSuccessor(succ);
+                active = false;
+            } finally {
+                if(log != null)
+                    transferLogs.remove(log);
+                transferLock.writeLock().unlock();
+            }
+
+            //novi vlasnik ne zna tko drži kopije naših popularnih ključeva
+            invalidateCopies(index, index);
+
+            //nasljednik ima veći interval, pa ga šalje i jednom čvoru dalje
+            replicas = new EncodedStorage<>(storage.getCodec());
+            if(!affected.isEmpty()) {
+                affected.add(succ);
+                repairReplicas(affected);
+            }
+
+            if(routingMode == RoutingMode.EAGER || succ == this) {
+                //aaand update the routing table
+                if(succ != this)
+                    succ.updateRoutingTable();
+
+                //isolate this node in his own project_package.network
+                this.setSuccessor(this);
+                this.setPredecessor(this);
+                this.setFingers(new FingerTable<>(index, N));
+            } else {
+                //tuđi fingeri mogu još pokazivati na nas dok ih fixFingers() ne osvježi,
+                //pa nasljednika zadržavamo kao pokazivač na koji prosljeđujemo lookupove
+                this.setPredecessor(null);
+            }
+
+        } catch(RemoteException e) { //if we've encountered a problem while leaving the project_package.network
+            System.err.println("Error leaving.");
+            e.printStackTrace();
+        }
+    }
+
+    //čvor predaje dio svojeg project_package.storage-a novom prethodniku.
+    //ako se parovi repliciraju, predani parovi ostaju ovdje kao replike (mi smo prvi nasljednik novog prethodnika)
+    public Map<Long, T> handoverStorageDueToNewPredcessor(long oldPredIndex, long newPredIndex) throws RemoteException {
+        if(replicationFactor > 1) {
+            SortedMap<Long, byte[]> removed = releaseRange(oldPredIndex, newPredIndex);
+            SortedMap<Long, T> handed = new TreeMap<>();
+            for(Map.Entry<Long, byte[]> entry : removed.entrySet())
+                handed.put(entry.getKey(), decodeCopy(entry.getValue()));
+            return handed;
+        }
+        locationCache.invalidateRange(oldPredIndex, newPredIndex);
+        replicaSets.clear();
+        invalidateCopies(oldPredIndex, newPredIndex);
+        return storage.removeRange(oldPredIndex, newPredIndex);
+    }
+
+    //kao handoverStorageDueToNewPredcessor, ali se predaju kodirane vrijednosti spakirane za prijenos
+    public EncodedEntries handoverEncodedStorageDueToNewPredcessor(long oldPredIndex, long newPredIndex) throws RemoteException {
+        return new EncodedEntries(releaseRange(oldPredIndex, newPredIndex));
+    }
+
+    //makni interval (from, to] iz spremišta (ako se parovi repliciraju, ostaje ovdje kao replika)
+    private SortedMap<Long, byte[]> releaseRange(long from, long to) throws RemoteException {
+        locationCache.invalidateRange(from, to);
+        replicaSets.clear();
+        invalidateCopies(from, to);
+        SortedMap<Long, byte[]> removed = storage.removeRangeEncoded(from, to);
+        if(replicationFactor > 1)
+            replicas.addAllEncoded(removed);
+        return removed;
+    }
+
+    //--------------------------------------------------RANGE TRANSFER----------------------------------------
+
+    /**
+     * Počni bilježiti promjene parova iz (from, to] (interval se upravo kopira drugom čvoru)
+     *
+     * @param from
+     * @param to
+     * @throws RemoteException
+     */
+    public void beginTransfer(long from, long to) throws RemoteException {
+        transferLogs.add(new TransferLog(from, to));
+    }
+
+    /**
+     * Predaj interval (from, to] čvoru koji ga je kopirao: pošalji mu parove promijenjene za vrijeme
+     * kopiranja, postavi ga za prethodnika i makni interval iz spremišta. Pisanja čekaju dok predaja traje,
+     * pa se nijedna promjena ne izgubi, a nakon predaje se zahtjevi za interval odbijaju.
+     *
+     * @param from
+     * @param to
+     * @param receiver - novi prethodnik
+     * @throws RemoteException
+     */
+    public void completeTransfer(long from, long to, Node<T> receiver) throws RemoteException {
+        transferLock.writeLock().lock();
+        try {
+            TransferLog log = removeTransferLog(from, to);
+            if(log != null)
+                sendChanges(log, receiver);
+            setPredecessor(receiver);
+            releaseRange(from, to);
+        } finally {
+            transferLock.writeLock().unlock();
+        }
+    }
+
+    //Prestani bilježiti promjene intervala (kopiranje nije uspjelo)
+    public void abortTransfer(long from, long to) throws RemoteException {
+        removeTransferLog(from, to);
+    }
+
+    //Primijeni parove promijenjene za vrijeme kopiranja
+    public void applyTransferChanges(EncodedEntries puts, long[] deletes) throws RemoteException {
+        SortedMap<Long, byte[]> map = puts.toMap();
+        storage.addAllEncoded(map);
+        for(long key : deletes)
+            storage.remove(key);
+        forgetReplicas(map.keySet());
+    }
+
+    public int getTransferChunkSize() {
+        return transferChunkSize;
+    }
+
+    public int getTransferStreams() {
+        return transferStreams;
+    }
+
+    /**
+     * Postavi kako se intervali prenose kod join/leave
+     *
+     * @param chunkSize - najviše parova po poruci
+     * @param streams - broj podintervala koji se prenose paralelno
+     */
+    public void setTransferOptions(int chunkSize, int streams) {
+        if(chunkSize < 1 || streams < 1)
+            throw new IllegalArgumentException("Chunk size and streams must be positive");
+        this.transferChunkSize = chunkSize;
+        this.transferStreams = streams;
+    }
+
+    /**
+     * @return zadnji prijenos kojeg je ovaj čvor napravio (null ako ga nije bilo)
+     */
+    public RangeTransfer getLastTransfer() {
+        return lastTransfer;
+    }
+
+    //kopiraj interval (from, this] od nasljednika u dijelovima, pa ga preuzmi
+    private void receiveRange(Node<T> succ, long from) throws RemoteException {
+        succ.beginTransfer(from, index);
+        RangeTransfer transfer = new RangeTransfer(from, index, N, transferChunkSize, transferStreams,
+                succ::scanStoredEncoded, chunk -> storage.addAllEncoded(chunk.toMap()));
+        lastTransfer = transfer;
+        try {
+            runTransfer(transfer);
+            succ.completeTransfer(from, index, this);
+        } catch (RemoteException e) {
+            succ.abortTransfer(from, index);
+            throw e;
+        }
+    }
+
+    //pošalji cijelo spremište nasljedniku u dijelovima; vraća zapis promjena za vrijeme slanja
+    private TransferLog sendRange(Node<T> succ) throws RemoteException {
+        TransferLog log = new TransferLog(index, index);
+        transferLogs.add(log);
+        RangeTransfer transfer = new RangeTransfer(index, index, N, transferChunkSize, transferStreams,
+                (from, to, limit) -> new EncodedEntries(storage.scanRangeEncoded(from, to, limit)),
+                succ::addAllStoredEncoded);
+        lastTransfer = transfer;
+        //log ostaje registriran dok pozivatelj pod write lockom ne pošalje promjene, inače bi se pisanja između izgubila
+        try {
+            runTransfer(transfer);
+        } catch (RemoteException | RuntimeException e) {
+            transferLogs.remove(log);
+            throw e;
+        }
+        return log;
+    }
+
+    //ako prijenos stane, nastavlja se od checkpointa
+    private void runTransfer(RangeTransfer transfer) throws RemoteException {
+        for(int attempt=1; ; attempt++) {
+            try {
+                transfer.run(batchExecutor);
+                return;
+            } catch (RemoteException e) {
+                if(attempt >= MAX_TRANSFER_ATTEMPTS)
+                    throw e;
+            }
+        }
+    }
+
+    //pošalji trenutne vrijednosti parova promijenjenih za vrijeme prijenosa (pod write lockom)
+    private void sendChanges(TransferLog log, Node<T> receiver) throws RemoteException {
+        Map<Long, byte[]> puts = new TreeMap<>();
+        List<Long> deletes = new ArrayList<>();
+        for(long key : log.dirty) {
+            byte[] value = storage.getEncoded(key);
+            if(value == null)
+                deletes.add(key);
+            else
+                puts.put(key, value);
+        }
+        receiver.applyTransferChanges(new EncodedEntries(puts), toLongArray(deletes));
+    }
+
+    private TransferLog removeTransferLog(long from, long to) {
+        for(TransferLog log : transferLogs)
+            if(log.from == from && log.to == to && transferLogs.remove(log))
+                return log;
+        return null;
+    }
+
+    //par se promijenio: zabilježi ga za prijenose u tijeku i invalidiraj kopije
+    private void changed(long key) {
+        for(TransferLog log : transferLogs)
+            if(KeyService.isKeyInbetween(key, log.from, log.to))
+                log.dirty.add(key);
+        invalidateCopies(key);
+    }
+
+
+    /**
+     * Salji "probe" kroz mrežu.
+     * Čvor kada se pozove ova funkcija
+     * će samo isprintati svoje ime na standardni output (vjv konzola)
+     * i proslijediti svom nasljedniku f-ju (tj pozvati je nad njime).
+     *
+     * @param nodeIndex - Index čvora koji je originalno slao probe
+     * @param count - informacija o broju čvorova (inkrementira se svakim prolazom kroz novi čvor)
+     * @throws RemoteException
+     */
+    public void probe(long nodeIndex, int count) throws RemoteException {
+        if(this.getIndex() == nodeIndex && count > 0) {
+            System.out.println("Probe returned after " + count + " hops.");
+        } else {
+            System.out.println(this.getName() + ": Forwarding probe to " + this.getSuccessor());
+            this.getSuccessor().probe(nodeIndex, count+1);
+        }
+    }
+
+    /**
+     * Nađi u prstenu/mreži čvor koji je odgovoran za project_package.storage ovog ključa key.
+     * Koristi se pri CRUD operacijama.
+     * Upit se rekurzivno prosljeđuje najbližem prethodnom fingeru pa treba O(log N) skokova.
+     *
+     * @param key
+     * @return a reference to the (remote) dht.Node.
+     * @throws RemoteException
+     */
+    public Node<T> lookupNodeResponsibleFor(long key) throws RemoteException {
+        LookupStep<T> step = nextLookupStep(key);
+        if(step.isFinal())
+            return step.getNode();
+        forwardedLookups.incrementAndGet();
+        return step.getNode().lookupNodeResponsibleFor(key);
+    }
+
+    /**
+     * Iterativni lookup: ovaj čvor sam pita svaki čvor na putu za sljedeći korak,
+     * pa čvorovi na putu ne drže dretvu dok se čeka konačni odgovor.
+     *
+     * @param key
+     * @return odgovorni čvor, broj skokova i trajanje svakog koraka
+     * @throws RemoteException
+     */
+    public LookupResult<T> lookupIterative(long key) throws RemoteException {
+        return lookupIterative(key, this);
+    }
+
+    /**
+     * Iterativni lookup koji kreće od čvora start
+     *
+     * @param key
+     * @param start - prvi čvor kojeg pitamo
+     * @return odgovorni čvor, broj skokova i trajanje svakog koraka
+     * @throws RemoteException
+     */
+    public LookupResult<T> lookupIterative(long key, Node<T> start) throws RemoteException {
+        long[] latencies = new long[8];
+        int steps = 0;
+        Node<T> current = start;
+        //dok prsten nije stabiliziran (npr. odmah nakon odlaska čvora) koraci se mogu vrtjeti u krug
+        Set<Node<T>> visited = null;
+        while(true) {
+            long stepStart = System.nanoTime();
+            LookupStep<T> step = current.nextLookupStep(key);
+            if(steps == latencies.length)
+                latencies = Arrays.copyOf(latencies, steps * 2);
+            latencies[steps++] = System.nanoTime() - stepStart;
+            if(step.isFinal())
+                return new LookupResult<>(step.getNode(), step.getRangeStart(), Arrays.copyOf(latencies, steps));
+            if(steps > M) {
+                if(visited == null)
+                    visited = new HashSet<>();
+                if(!visited.add(current))
+                    throw new RemoteException("Lookup of " + key + " is looping, the ring is not stabilized yet");
+            }
+            current = step.getNode();
+        }
+    }
+
+    /**
+     * Jedan korak lookupa na ovom čvoru
+     *
+     * @param key
+     * @return odgovorni čvor (final) ili sljedeći čvor kojeg treba pitati
+     * @throws RemoteException
+     */
+    public LookupStep<T> nextLookupStep(long key) throws RemoteException {
+        //indeksi susjeda su zapamćeni u handleovima, pa korak ne zove druge čvorove
+        NodeHandle<T> successor = this.successor;
+        //čvor koji je napustio mrežu samo upućuje na bivšeg nasljednika
+        if(!active && successor.getNode() != this)
+            return new LookupStep<>(successor.getNode());
+        //ako je key u prostoru ključa (razlici indeksa) između prethodnika i ovog elementa
+        //onda je za key odgovoran ovaj čvor
+        //pa ga vrati
+        NodeHandle<T> pred = this.predecessor;
+        if(pred != null && KeyService.isKeyInbetween(key, pred.getIndex(), index))
+            return new LookupStep<>(this, pred.getIndex());
+        //ako je key između ovog čvora i nasljednika, odgovoran je nasljednik
+        if(KeyService.isKeyInbetween(key, index, successor.getIndex()))
+            return new LookupStep<>(successor.getNode(), index);
+        //inače idući korak je najbliži prethodni finger (ili nasljednik ako takvog nema)
+        return new LookupStep<>(closestPrecedingNode(key));
+    }
+
+    /**
+     * Nađi čvor odgovoran za ključ na način zadan s lookupMode
+     *
+     * @param key
+     * @param start - čvor od kojeg lookup kreće
+     * @return odgovorni čvor
+     * @throws RemoteException
+     */
+    private Node<T> findResponsibleNode(long key, Node<T> start) throws RemoteException {
+        if(lookupMode == LookupMode.ITERATIVE)
+            return lookupIterative(key, start).getOwner();
+        return start.lookupNodeResponsibleFor(key);
+    }
+
+    /**
+     * Nađi vlasnika ključa za CRUD operaciju, prvo u cacheu lokacija, a onda lookupom
+     *
+     * @param key
+     * @return odgovorni čvor
+     * @throws RemoteException
+     */
+    Node<T> findOwner(long key) throws RemoteException {
+        return findOwnerHandle(key).getNode();
+    }
+
+    //kao findOwner, ali vraća handle vlasnika (s adresom transporta, bez dodatnog poziva vlasniku)
+    private NodeHandle<T> findOwnerHandle(long key) throws RemoteException {
+        NodeHandle<T> owner = locationCache.get(key);
+        if(owner != null)
+            return owner;
+        //istovremeni promašaji za isti ključ čekaju jedan lookup
+        if(coalescing)
+            return ownerLookups.execute(key, () -> lookupOwner(key));
+        return lookupOwner(key);
+    }
+
+    //lookup vlasnika (mimo cachea), rezultat se sprema u cache lokacija
+    private NodeHandle<T> lookupOwner(long key) throws RemoteException {
+        NodeHandle<T> owner;
+        if(lookupMode == LookupMode.ITERATIVE) {
+            LookupResult<T> result = lookupIterative(key);
+            owner = result.getOwner().getHandle();
+            locationCache.put(result.getRangeStart(), owner);
+        } else {
+            Node<T> node = lookupNodeResponsibleFor(key);
+            owner = node.getHandle();
+            NodeHandle<T> ownerPredecessor = node.getNeighbours().getPredecessor();
+            if(ownerPredecessor != null)
+                locationCache.put(ownerPredecessor.getIndex(), owner);
+        }
+        return owner;
+    }
+
+    /**
+     * Operacija nad vlasnikom ključa
+     */
+    private interface OwnerOperation<T, R> {
+        /**
+         * @param owner - handle čvora za kojeg mislimo da je vlasnik
+         * @param checked - treba li vlasnik provjeriti da je još uvijek odgovoran za ključ
+         */
+        R apply(NodeHandle<T> owner, boolean checked) throws RemoteException, NotResponsibleException;
+    }
+
+    /**
+     * Izvrši operaciju nad vlasnikom ključa. Ako vlasnik odbije zahtjev (npr. cache je zastario),
+     * interval se briše iz cachea i operacija se ponavlja sa svježim lookupom.
+     *
+     * @param key
+     * @param operation
+     * @return rezultat operacije
+     * @throws RemoteException
+     */
+    private <R> R executeOnOwner(long key, OwnerOperation<T, R> operation) throws RemoteException {
+        for(int attempt=0; attempt<MAX_OWNER_ATTEMPTS; attempt++) {
+            try {
+                return operation.apply(findOwnerHandle(key), true);
+            } catch (NotResponsibleException e) {
+                locationCache.invalidate(key);
+            }
+        }
+        //mreža se još stabilizira, izvrši na čvoru kojeg vrati lookup
+        try {
+            return operation.apply(findResponsibleNode(key, this).getHandle(), false);
+        } catch (NotResponsibleException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Batch operacija nad vlasnikom skupa ključeva
+     */
+    private interface BatchOperation<T> {
+        /**
+         * @param owner - čvor za kojeg mislimo da je vlasnik ključeva
+         * @param keys
+         * @param checked - treba li vlasnik odbiti ključeve za koje nije odgovoran
+         * @return ključevi koje je vlasnik odbio
+         */
+        long[] apply(Node<T> owner, long[] keys, boolean checked) throws RemoteException;
+    }
+
+    /**
+     * Izvrši batch operaciju: ključevi se grupiraju po vlasniku i svakom vlasniku se paralelno šalje jedan zahtjev.
+     * Ključevi se obilaze sortirani, pa se vlasnik traži (u cacheu lokacija ili lookupom) samo za prvi ključ
+     * iz njegovog intervala. Odbijeni ključevi se brišu iz cachea i ponovno grupiraju, kao u executeOnOwner.
+     *
+     * @param keys - sortirani različiti ključevi
+     * @param operation
+     * @param errors - ovdje se upisuju greške po ključu
+     * @return broj zahtjeva poslanih vlasnicima
+     */
+    private int executeOnOwners(long[] keys, BatchOperation<T> operation, Map<Long, Exception> errors) {
+        AtomicInteger requests = new AtomicInteger();
+        long[] pending = keys;
+        for(int attempt=0; attempt<=MAX_OWNER_ATTEMPTS && pending.length > 0; attempt++) {
+            //zadnji pokušaj ide bez provjere vlasništva, na čvor kojeg vrati svježi lookup
+            boolean checked = attempt < MAX_OWNER_ATTEMPTS;
+            Map<Node<T>, List<Long>> groups = new LinkedHashMap<>();
+            Node<T> owner = null;
+            long ownerIndex = 0;
+            long previous = 0;
+            for(long key : pending) {
+                //vlasnik prethodnog ključa je odgovoran za (pred, ownerIndex], a ključevi rastu:
+                //ako je prethodni ključ <= ownerIndex, isti vlasnik ima sve do ownerIndex,
+                //a inače interval prelazi preko nule i vlasnik ima sve veće ključeve
+                if(owner == null || (previous <= ownerIndex && key > ownerIndex)) {
+                    try {
+                        owner = checked ? findOwner(key) : findResponsibleNode(key, this);
+                        ownerIndex = owner.getIndex();
+                    } catch (RemoteException e) {
+                        errors.put(key, e);
+                        owner = null;
+                        continue;
+                    }
+                }
+                groups.computeIfAbsent(owner, o -> new ArrayList<>()).add(key);
+                previous = key;
+            }
+
+            Set<Long> rejected = ConcurrentHashMap.newKeySet();
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for(Map.Entry<Node<T>, List<Long>> group : groups.entrySet()) {
+                long[] ownerKeys = toLongArray(group.getValue());
+                tasks.add(() -> {
+                    requests.incrementAndGet();
+                    try {
+                        for(long key : operation.apply(group.getKey(), ownerKeys, checked)) {
+                            locationCache.invalidate(key);
+                            rejected.add(key);
+                        }
+                    } catch (RemoteException e) {
+                        for(long key : ownerKeys)
+                            errors.put(key, e);
+                    }
+                    return null;
+                });
+            }
+            try {
+                if(tasks.size() == 1)
+                    tasks.get(0).call();
+                else
+                    batchExecutor.invokeAll(tasks);
+            } catch (Exception e) {
+                if(e instanceof InterruptedException)
+                    Thread.currentThread().interrupt();
+                for(List<Long> group : groups.values())
+                    for(long key : group)
+                        errors.putIfAbsent(key, e);
+                return requests.get();
+            }
+            pending = toLongArray(rejected);
+            Arrays.sort(pending);
+        }
+        return requests.get();
+    }
+
+    /**
+     * Najbliži čvor iz routing tablice koji se nalazi prije ključa key
+     *
+     * @param key
+     * @return finger ili nasljednik ako routing tablica nema boljeg kandidata
+     * @throws RemoteException
+     */
+    public Node<T> closestPrecedingNode(long key) throws RemoteException {
+        Node<T> finger = this.getFingers().closestPrecedingNode(key);
+        return finger != null ? finger : this.getSuccessor();
+    }
+
+    /**
+     * Osvježi routing tablicu: finger[i] = successor(index + 2^i)
+     *
+     * @param nodes - svi čvorovi u mreži, sortirani po indeksu
+     * @throws RemoteException
+     */
+    public void updateFingers(List<Node<T>> nodes) throws RemoteException {
+        long[] sortedIndexes = new long[nodes.size()];
+        for(int i=0; i<nodes.size(); i++)
+            sortedIndexes[i] = nodes.get(i).getIndex();
+        updateFingers(nodes, sortedIndexes);
+    }
+
+    /**
+     * Osvježi routing tablicu: finger[i] = successor(index + 2^i)
+     *
+     * @param nodes - svi čvorovi u mreži, sortirani po indeksu
+     * @param sortedIndexes - indeksi čvorova iz nodes
+     * @throws RemoteException
+     */
+    public void updateFingers(List<Node<T>> nodes, long[] sortedIndexes) throws RemoteException {
+        synchronized (fingerSlots) {
+            for(int i=0; i<M; i++) {
+                //prvi čvor s indeksom >= start, ili prvi u prstenu ako takvog nema
+                int position = Arrays.binarySearch(sortedIndexes, fingerStart(i));
+                if(position < 0)
+                    position = -position - 1;
+                fingerSlots[i] = nodes.get(position % nodes.size());
+            }
+            rebuildFingerTable();
+        }
+    }
+
+    /**
+     * Izgradi vlastite fingere pri ulasku u mrežu (O(log² N) poruka).
+     * Ako je početak fingera prije prethodnog fingera, prethodni finger se ponovno koristi.
+     *
+     * @param succ - novi nasljednik
+     * @throws RemoteException
+     */
+    private void initFingers(Node<T> succ) throws RemoteException {
+        synchronized (fingerSlots) {
+            Node<T> previous = succ;
+            long previousIndex = succ.getIndex();
+            for(int i=0; i<M; i++) {
+                long start = fingerStart(i);
+                if(!KeyService.isKeyInbetween(start, index, previousIndex)) {
+                    previous = findResponsibleNode(start, succ);
+                    previousIndex = previous.getIndex();
+                }
+                fingerSlots[i] = previous;
+            }
+            rebuildFingerTable();
+        }
+    }
+
+    /**
+     * Izgradi fingere iz poznatog sastava prstena, bez lookupa (npr. simulator koji gradi već stabilan prsten)
+     *
+     * @param ring - svi čvorovi prstena po indeksu
+     * @throws RemoteException
+     */
+    public void initFingers(NavigableMap<Long, Node<T>> ring) throws RemoteException {
+        synchronized (fingerSlots) {
+            for(int i=0; i<M; i++) {
+                Map.Entry<Long, Node<T>> finger = ring.ceilingEntry(fingerStart(i));
+                fingerSlots[i] = (finger != null ? finger : ring.firstEntry()).getValue();
+            }
+            rebuildFingerTable();
+        }
+    }
+
+    /**
+     * Početak intervala i-tog fingera
+     *
+     * @param i
+     * @return (index + 2^i) mod N
+     */
+    private long fingerStart(int i) {
+        return (index + (1L << i)) & (N - 1);
+    }
+
+    private void rebuildFingerTable() throws RemoteException {
+        this.setFingers(new FingerTable<>(index, N, Arrays.asList(fingerSlots.clone())));
+    }
+
+    //----------------------------------------------STABILIZATION-----------------------------------------
+
+    /**
+     * Chord stabilize: provjeri je li se između nas i nasljednika pojavio novi čvor
+     * i obavijesti nasljednika da smo mu (možda) mi prethodnik.
+     *
+     * @throws RemoteException
+     */
+    public void stabilize() throws RemoteException {
+        //susjedi nasljednika stižu u jednom pozivu, s indeksima
+        NodeHandle<T> succ = this.successor;
+        Neighbours<T> neighbours = succ.getNode().getNeighbours();
+        if(!neighbours.isAlive() && succ.getNode() != this) {
+            //nasljednik je otišao, nastavi s njegovim nasljednikom
+            succ = neighbours.getSuccessor();
+            successor = succ;
+            neighbours = succ.getNode().getNeighbours();
+        }
+        NodeHandle<T> x = neighbours.getPredecessor();
+        if(x != null && x.getNode() != this && KeyService.isKeyInbetween(x.getIndex(), index, succ.getIndex())
+                && x.getIndex() != succ.getIndex() && x.getNode().isAlive()) {
+            successor = x;
+            succ = x;
+        }
+        succ.getNode().notifyPredecessor(this);
+    }
+
+    /**
+     * Chord notify: čvor candidate misli da je naš prethodnik
+     *
+     * @param candidate
+     * @throws RemoteException
+     */
+    public void notifyPredecessor(Node<T> candidate) throws RemoteException {
+        NodeHandle<T> pred = this.predecessor;
+        //u stabilnom prstenu javlja se čvor koji nam je već prethodnik, pa ga ne treba ništa pitati
+        if(pred == null || pred.getNode() != candidate) {
+            //stabilize() čvora koji je upravo napustio mrežu može još biti u tijeku
+            if(!candidate.isAlive())
+                return;
+            NodeHandle<T> candidateHandle = candidate.getHandle();
+            if(pred == null || KeyService.isKeyInbetween(candidateHandle.getIndex(), pred.getIndex(), index) || !pred.getNode().isAlive())
+                predecessor = candidateHandle;
+        }
+        if(routingMode == RoutingMode.STABILIZED && candidate != this)
+            stabilizer.start();
+    }
+
+    /**
+     * Chord fix_fingers: osvježi sljedeći finger
+     *
+     * @throws RemoteException
+     */
+    public void fixFingers() throws RemoteException {
+        synchronized (fingerSlots) {
+            int i = nextFingerToFix;
+            nextFingerToFix = (i + 1) % M;
+            Node<T> finger = findResponsibleNode(fingerStart(i), this);
+            if(finger != fingerSlots[i]) {
+                fingerSlots[i] = finger;
+                rebuildFingerTable();
+            }
+        }
+    }
+
+    /**
+     * Chord check_predecessor: zaboravi prethodnika ako više nije u mreži
+     *
+     * @throws RemoteException
+     */
+    public void checkPredecessor() throws RemoteException {
+        Node<T> pred = this.getPredecessor();
+        try {
+            if(pred != null && !pred.isAlive())
+                setPredecessor(null);
+        } catch (RemoteException e) {
+            setPredecessor(null);
+        }
+    }
+
+    //----------------------------------------------STORAGE----------------------------------------------
+
+    //Vrati vrijednost mapiranu na dani ključ
+    public T getStored(long key) throws RemoteException {
+        return requestExecutor.execute(() -> {
+            servedReads.incrementAndGet();
+            hotKeys.record(key);
+            return storage.getStored(key);
+        });
+    }
+
+    //GetAll vrijednosti u skladištu ovog čvora
+    public List<T> getAllStored() throws RemoteException {
+        ArrayList<T> values = new ArrayList<>(storage.getAllStored());
+        return values;
+    }
+
+    //Add/update vrijednosti na ključ
+    public void addStored(long key, T value) throws RemoteException {
+        requestExecutor.execute(() -> {
+            transferLock.readLock().lock();
+            ReentrantLock keyLock = lockKey(key);
+            try {
+                storage.addStored(key, value);
+                propagatePut(key, value);
+            } finally {
+                keyLock.unlock();
+                transferLock.readLock().unlock();
+            }
+            return null;
+        });
+    }
+
+    //Delete vrijednosti na ključ
+    public void removeStored(long key) throws RemoteException {
+        requestExecutor.execute(() -> {
+            transferLock.readLock().lock();
+            ReentrantLock keyLock = lockKey(key);
+            try {
+                storage.remove(key);
+                propagateDelete(key);
+            } finally {
+                keyLock.unlock();
+                transferLock.readLock().unlock();
+            }
+            return null;
+        });
+    }
+
+    //Add/update više vrijednosti odjednom (npr. cijelo spremište čvora koji napušta mrežu)
+    public void addAllStored(Map<Long, T> entries) throws RemoteException {
+        storage.addAll(entries);
+        forgetReplicas(entries.keySet());
+    }
+
+    //Vrati vrijednost mapiranu na dani ključ, ako je ovaj čvor odgovoran za ključ
+    public T getStoredIfResponsible(long key) throws RemoteException, NotResponsibleException {
+        return requestExecutor.execute(() -> {
+            checkResponsibleFor(key);
+            servedReads.incrementAndGet();
+            hotKeys.record(key);
+            return storage.getStored(key);
+        });
+    }
+
+    //Add/update vrijednosti na ključ, ako je ovaj čvor odgovoran za ključ
+    public void addStoredIfResponsible(long key, T value) throws RemoteException, NotResponsibleException {
+        requestExecutor.execute(() -> {
+            transferLock.readLock().lock();
+            ReentrantLock keyLock = lockKey(key);
+            try {
+                checkResponsibleFor(key);
+                storage.addStored(key, value);
+                propagatePut(key, value);
+            } finally {
+                keyLock.unlock();
+                transferLock.readLock().unlock();
+            }
+            return null;
+        });
+    }
+
+    //Delete vrijednosti na ključ, ako je ovaj čvor odgovoran za ključ
+    public void removeStoredIfResponsible(long key) throws RemoteException, NotResponsibleException {
+        requestExecutor.execute(() -> {
+            transferLock.readLock().lock();
+            ReentrantLock keyLock = lockKey(key);
+            try {
+                checkResponsibleFor(key);
+                storage.remove(key);
+                propagateDelete(key);
+            } finally {
+                keyLock.unlock();
+                transferLock.readLock().unlock();
+            }
+            return null;
+        });
+    }
+
+    //Vrati kodiranu vrijednost mapiranu na dani ključ
+    public byte[] getStoredEncoded(long key) throws RemoteException {
+        return requestExecutor.execute(() -> {
+            servedReads.incrementAndGet();
+            hotKeys.record(key);
+            return storage.getEncoded(key);
+        });
+    }
+
+    //Add/update kodirane vrijednosti na ključ
+    public void addStoredEncoded(long key, byte[] value) throws RemoteException {
+        requestExecutor.execute(() -> {
+            transferLock.readLock().lock();
+            ReentrantLock keyLock = lockKey(key);
+            try {
+                storage.addEncoded(key, value);
+                propagate(Collections.singletonMap(key, value), new long[0]);
+            } finally {
+                keyLock.unlock();
+                transferLock.readLock().unlock();
+            }
+            return null;
+        });
+    }
+
+    //Add/update više kodiranih vrijednosti odjednom
+    public void addAllStoredEncoded(EncodedEntries entries) throws RemoteException {
+        SortedMap<Long, byte[]> map = entries.toMap();
+        storage.addAllEncoded(map);
+        forgetReplicas(map.keySet());
+    }
+
+    //Vrati kodiranu vrijednost mapiranu na dani ključ, ako je ovaj čvor odgovoran za ključ
+    public byte[] getStoredEncodedIfResponsible(long key) throws RemoteException, NotResponsibleException {
+        return requestExecutor.execute(() -> {
+            checkResponsibleFor(key);
+            servedReads.incrementAndGet();
+            hotKeys.record(key);
+            return storage.getEncoded(key);
+        });
+    }
+
+    //Add/update kodirane vrijednosti na ključ, ako je ovaj čvor odgovoran za ključ
+    public void addStoredEncodedIfResponsible(long key, byte[] value) throws RemoteException, NotResponsibleException {
+        requestExecutor.execute(() -> {
+            transferLock.readLock().lock();
+            ReentrantLock keyLock = lockKey(key);
+            try {
+                checkResponsibleFor(key);
+                storage.addEncoded(key, value);
+                propagate(Collections.singletonMap(key, value), new long[0]);
+            } finally {
+                keyLock.unlock();
+                transferLock.readLock().unlock();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Atomarno izvrši operaciju nad vrijednošću ključa u spremištu, pa promjenu pošalji replikama.
+     * Operacija je linearizabilna po ključu: između čitanja trenutne vrijednosti i pisanja nove
+     * nijedno drugo pisanje na isti ključ ne može doći do spremišta.
+     *
+     * @param key
+     * @param operation
+     * @param checked - treba li odbiti ključ za koji ovaj čvor nije odgovoran
+     * @return vrijednost prije i nakon operacije
+     * @throws RemoteException i ako se operacija ne može primijeniti na vrijednost
+     * @throws NotResponsibleException
+     */
+    public AtomicResult<T> applyAtomic(long key, AtomicOperation<T> operation, boolean checked) throws RemoteException, NotResponsibleException {
+        return requestExecutor.execute(() -> {
+            transferLock.readLock().lock();
+            ReentrantLock keyLock = lockKey(key);
+            try {
+                if(checked)
+                    checkResponsibleFor(key);
+                //compute može pozvati funkciju više puta (kod natjecanja), vrijedi vrijednost iz zadnjeg poziva
+                AtomicReference<T> previous = new AtomicReference<>();
+                T current;
+                try {
+                    current = storage.compute(key, value -> {
+                        previous.set(value);
+                        return operation.apply(value);
+                    });
+                } catch (IllegalArgumentException e) {
+                    //operacija se ne može primijeniti na vrijednost (npr. increment para kojeg nema): greška pozivatelja, ne vlasnika
+                    throw new RemoteException("Atomic operation on " + key + " failed: " + e.getMessage(), e);
+                }
+                if(current != previous.get()) {
+                    if(current == null)
+                        propagateDelete(key);
+                    else
+                        propagatePut(key, current);
+                }
+                return new AtomicResult<>(previous.get(), current);
+            } finally {
+                keyLock.unlock();
+                transferLock.readLock().unlock();
+            }
+        });
+    }
+
+    //Vrati najviše limit parova s ključem u (from, to], sortirano po ključu (from < to)
+    public SortedMap<Long, T> scanStored(long from, long to, int limit) throws RemoteException {
+        return storage.scanRange(from, to, limit);
+    }
+
+    //kao scanStored, ali s kodiranim vrijednostima
+    public EncodedEntries scanStoredEncoded(long from, long to, int limit) throws RemoteException {
+        return new EncodedEntries(storage.scanRangeEncoded(from, to, limit));
+    }
+
+    //Vrati vrijednosti za više ključeva; ako je checked, ključeve za koje ovaj čvor nije odgovoran odbij
+    public BatchReply<T> getStoredBatch(long[] keys, boolean checked) throws RemoteException {
+        return requestExecutor.execute(() -> {
+            Map<Long, T> values = new HashMap<>();
+            List<Long> rejected = new ArrayList<>();
+            for(long key : keys) {
+                if(checked && !isResponsibleFor(key))
+                    rejected.add(key);
+                else {
+                    servedReads.incrementAndGet();
+                    T value = storage.getStored(key);
+                    if(value != null)
+                        values.put(key, value);
+                }
+            }
+            return new BatchReply<>(values, toLongArray(rejected));
+        });
+    }
+
+    //kao getStoredBatch, ali vraća kodirane vrijednosti
+    public BatchReply<byte[]> getStoredEncodedBatch(long[] keys, boolean checked) throws RemoteException {
+        return requestExecutor.execute(() -> {
+            Map<Long, byte[]> values = new HashMap<>();
+            List<Long> rejected = new ArrayList<>();
+            for(long key : keys) {
+                if(checked && !isResponsibleFor(key))
+                    rejected.add(key);
+                else {
+                    servedReads.incrementAndGet();
+                    byte[] value = storage.getEncoded(key);
+                    if(value != null)
+                        values.put(key, value);
+                }
+            }
+            return new BatchReply<>(values, toLongArray(rejected));
+        });
+    }
+
+    //Add/update više vrijednosti; vraća odbijene ključeve
+    public long[] addStoredBatch(Map<Long, T> entries, boolean checked) throws RemoteException {
+        return requestExecutor.execute(() -> {
+            transferLock.readLock().lock();
+            BitSet locked = lockKeys(entries.keySet());
+            try {
+                Map<Long, T> accepted = new TreeMap<>();
+                List<Long> rejected = new ArrayList<>();
+                for(Map.Entry<Long, T> entry : entries.entrySet()) {
+                    if(checked && !isResponsibleFor(entry.getKey()))
+                        rejected.add(entry.getKey());
+                    else
+                        accepted.put(entry.getKey(), entry.getValue());
+                }
+                storage.addAll(accepted);
+                if(replicationFactor > 1) {
+                    Map<Long, byte[]> encoded = new TreeMap<>();
+                    for(Map.Entry<Long, T> entry : accepted.entrySet())
+                        encoded.put(entry.getKey(), encodeCopy(entry.getValue()));
+                    propagate(encoded, new long[0]);
+                } else {
+                    for(long key : accepted.keySet())
+                        changed(key);
+                }
+                return toLongArray(rejected);
+            } finally {
+                unlockKeys(locked);
+                transferLock.readLock().unlock();
+            }
+        });
+    }
+
+    //Add/update više kodiranih vrijednosti; vraća odbijene ključeve
+    public long[] addStoredEncodedBatch(EncodedEntries entries, boolean checked) throws RemoteException {
+        return requestExecutor.execute(() -> {
+            SortedMap<Long, byte[]> map = entries.toMap();
+            transferLock.readLock().lock();
+            BitSet locked = lockKeys(map.keySet());
+            try {
+                Map<Long, byte[]> accepted = new TreeMap<>();
+                List<Long> rejected = new ArrayList<>();
+                for(Map.Entry<Long, byte[]> entry : map.entrySet()) {
+                    if(checked && !isResponsibleFor(entry.getKey()))
+                        rejected.add(entry.getKey());
+                    else
+                        accepted.put(entry.getKey(), entry.getValue());
+                }
+                storage.addAllEncoded(accepted);
+                propagate(accepted, new long[0]);
+                return toLongArray(rejected);
+            } finally {
+                unlockKeys(locked);
+                transferLock.readLock().unlock();
+            }
+        });
+    }
+
+    //Delete više vrijednosti; vraća odbijene ključeve
+    public long[] removeStoredBatch(long[] keys, boolean checked) throws RemoteException {
+        return requestExecutor.execute(() -> {
+            transferLock.readLock().lock();
+            BitSet locked = lockKeys(keys);
+            try {
+                List<Long> removed = new ArrayList<>();
+                List<Long> rejected = new ArrayList<>();
+                for(long key : keys) {
+                    if(checked && !isResponsibleFor(key))
+                        rejected.add(key);
+                    else {
+                        storage.remove(key);
+                        removed.add(key);
+                    }
+                }
+                propagate(Collections.emptyMap(), toLongArray(removed));
+                return toLongArray(rejected);
+            } finally {
+                unlockKeys(locked);
+                transferLock.readLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Odbij zahtjev za ključ koji nije u (predecessor, index].
+     * Ako prethodnik nije poznat, zahtjev se prihvaća.
+     *
+     * @param key
+     * @throws RemoteException
+     * @throws NotResponsibleException
+     */
+    private void checkResponsibleFor(long key) throws RemoteException, NotResponsibleException {
+        if(!isResponsibleFor(key))
+            throw new NotResponsibleException(name, key);
+    }
+
+    private boolean isResponsibleFor(long key) throws RemoteException {
+        NodeHandle<T> pred = this.predecessor;
+        return active && (pred == null || KeyService.isKeyInbetween(key, pred.getIndex(), index));
+    }
+
+    //----------------------------------------------REPLICATION----------------------------------------------
+
+    //Vrati vrijednost iz spremišta ili replika (čitanje s bilo koje kopije)
+    public T getStoredCopy(long key) throws RemoteException {
+        return requestExecutor.execute(() -> {
+            servedReads.incrementAndGet();
+            T value = storage.getStored(key);
+            return value != null ? value : replicas.getStored(key);
+        });
+    }
+
+    //kao getStoredCopy, ali s kodiranom vrijednošću
+    public byte[] getStoredCopyEncoded(long key) throws RemoteException {
+        return requestExecutor.execute(() -> {
+            servedReads.incrementAndGet();
+            byte[] value = storage.getEncoded(key);
+            return value != null ? value : replicas.getEncoded(key);
+        });
+    }
+
+    //Primijeni promjene koje je vlasnik napravio u svojem spremištu na replike
+    public void applyReplicaUpdate(EncodedEntries puts, long[] deletes) throws RemoteException {
+        replicas.addAllEncoded(puts.toMap());
+        for(long key : deletes)
+            replicas.remove(key);
+    }
+
+    /**
+     * Zamijeni replike s ključem u (from, to] danim parovima (vlasnik intervala šalje cijelo svoje spremište).
+     * Pritom se brišu replike koje ovaj čvor više ne treba držati: čuvaju se samo intervali R-1 prethodnika.
+     *
+     * @param from - indeks prethodnika vlasnika
+     * @param to - indeks vlasnika
+     * @param entries - svi parovi vlasnika
+     * @throws RemoteException
+     */
+    public void replaceReplicaRange(long from, long to, EncodedEntries entries) throws RemoteException {
+        replicas.removeRange(from, to);
+        replicas.addAllEncoded(entries.toMap());
+        pruneReplicas();
+    }
+
+    /**
+     * Pošalji cijelo spremište nasljednicima koji drže replike (npr. nakon što se članstvo promijenilo).
+     * Pisanja čekaju dok replike ne prime snimku, da je novija promjena ne prepiše starijom vrijednošću.
+     *
+     * @throws RemoteException
+     */
+    public void repairReplicas() throws RemoteException {
+        NodeHandle<T> pred = this.predecessor;
+        if(replicationFactor <= 1 || !active || pred == null)
+            return;
+        List<Node<T>> targets = successors(replicationFactor - 1);
+        if(targets.isEmpty())
+            return;
+        transferLock.readLock().lock();
+        BitSet locked = lockAllKeys();
+        try {
+            EncodedEntries entries = new EncodedEntries(storage.snapshotEncoded());
+            for(Node<T> replica : targets)
+                replica.replaceReplicaRange(pred.getIndex(), index, entries);
+        } finally {
+            unlockKeys(locked);
+            transferLock.readLock().unlock();
+        }
+    }
+
+    //popravi replike čvorova čiji se skup kopija promijenio; greška jednog čvora ne zaustavlja ostale
+    private static <T> void repairReplicas(List<Node<T>> nodes) {
+        for(Node<T> node : nodes) {
+            try {
+                node.repairReplicas();
+            } catch (RemoteException e) {
+                System.err.println("Error repairing replicas of " + node);
+            }
+        }
+    }
+
+    //obriši replike izvan intervala R-1 prethodnika i parove za koje smo sami odgovorni
+    private void pruneReplicas() throws RemoteException {
+        NodeHandle<T> pred = this.predecessor;
+        if(pred == null)
+            return;
+        List<Node<T>> preds = predecessors(replicationFactor);
+        if(preds.size() < replicationFactor)
+            replicas.removeRange(pred.getIndex(), index);
+        else
+            replicas.removeRange(pred.getIndex(), preds.get(preds.size() - 1).getIndex());
+    }
+
+    //sljedećih najviše count nasljednika (manje ako je u prstenu manje čvorova)
+    private List<Node<T>> successors(int count) throws RemoteException {
+        List<Node<T>> nodes = new ArrayList<>();
+        Node<T> current = this.getSuccessor();
+        while(nodes.size() < count && current != null && current != this && !nodes.contains(current)) {
+            nodes.add(current);
+            current = current.getSuccessor();
+        }
+        return nodes;
+    }
+
+    //prethodnih najviše count čvorova, od najbližeg (manje ako je prethodnik nepoznat ili je prsten manji)
+    private List<Node<T>> predecessors(int count) throws RemoteException {
+        List<Node<T>> nodes = new ArrayList<>();
+        Node<T> current = this.getPredecessor();
+        while(nodes.size() < count && current != null && current != this && !nodes.contains(current)) {
+            nodes.add(current);
+            current = current.getPredecessor();
+        }
+        return nodes;
+    }
+
+    //pošalji promjene nasljednicima koji drže replike i invalidiraj kopije popularnih ključeva
+    //(vlasnik ih šalje prije nego potvrdi pisanje)
+    private void propagate(Map<Long, byte[]> puts, long[] deletes) throws RemoteException {
+        for(long key : puts.keySet())
+            changed(key);
+        for(long key : deletes)
+            changed(key);
+        if(replicationFactor <= 1 || (puts.isEmpty() && deletes.length == 0))
+            return;
+        EncodedEntries entries = new EncodedEntries(puts);
+        for(Node<T> replica : successors(replicationFactor - 1))
+            replica.applyReplicaUpdate(entries, deletes);
+    }
+
+    private void propagatePut(long key, T value) throws RemoteException {
+        if(replicationFactor > 1)
+            propagate(Collections.singletonMap(key, encodeCopy(value)), new long[0]);
+        else
+            changed(key);
+    }
+
+    private void propagateDelete(long key) throws RemoteException {
+        propagate(Collections.emptyMap(), new long[] {key});
+    }
+
+    private static ReentrantLock[] newKeyLocks(int count) {
+        ReentrantLock[] locks = new ReentrantLock[count];
+        for(int i=0; i<count; i++)
+            locks[i] = new ReentrantLock();
+        return locks;
+    }
+
+    private static int keyLockIndex(long key) {
+        return (int) Math.floorMod(key ^ (key >>> 16), (long) KEY_LOCKS);
+    }
+
+    private ReentrantLock lockKey(long key) {
+        ReentrantLock lock = keyLocks[keyLockIndex(key)];
+        lock.lock();
+        return lock;
+    }
+
+    //lockovi više ključeva se uzimaju po redu indeksa, da se dva batcha ne mogu međusobno blokirati
+    private BitSet lockKeys(Collection<Long> keys) {
+        return lockKeys(toLongArray(keys));
+    }
+
+    private BitSet lockKeys(long[] keys) {
+        BitSet locked = new BitSet(KEY_LOCKS);
+        for(long key : keys)
+            locked.set(keyLockIndex(key));
+        for(int i = locked.nextSetBit(0); i >= 0; i = locked.nextSetBit(i + 1))
+            keyLocks[i].lock();
+        return locked;
+    }
+
+    private BitSet lockAllKeys() {
+        BitSet locked = new BitSet(KEY_LOCKS);
+        locked.set(0, KEY_LOCKS);
+        for(ReentrantLock lock : keyLocks)
+            lock.lock();
+        return locked;
+    }
+
+    private void unlockKeys(BitSet locked) {
+        for(int i = locked.nextSetBit(0); i >= 0; i = locked.nextSetBit(i + 1))
+            keyLocks[i].unlock();
+    }
+
+    //parovi koji su postali naši (prethodnik je napustio mrežu) više nisu replike
+    private void forgetReplicas(Collection<Long> keys) {
+        if(replicas.size() > 0)
+            for(long key : keys)
+                replicas.remove(key);
+    }
+
+    private byte[] encodeCopy(T value) throws RemoteException {
+        try {
+            return storage.getCodec().encode(value);
+        } catch (IOException e) {
+            throw new RemoteException("Can't encode replicated value", e);
+        }
+    }
+
+    private T decodeCopy(byte[] bytes) throws RemoteException {
+        try {
+            return storage.getCodec().decode(bytes);
+        } catch (IOException e) {
+            throw new RemoteException("Can't decode replicated value", e);
+        }
+    }
+
+    //----------------------------------------------HOT KEYS & PATH CACHE-------------------------------------
+
+    /**
+     * Vrati vrijednost s verzijom. Ako je ključ popularan, čitatelj smije zadržati kopiju,
+     * pa ga vlasnik pamti da mu pošalje invalidaciju kad se vrijednost promijeni.
+     *
+     * @param key
+     * @param reader - čvor koji čita (null ako ne želi kopiju)
+     * @param checked - treba li odbiti ključ za koji ovaj čvor nije odgovoran
+     * @return vrijednost, verzija i smije li se kopija zadržati
+     * @throws RemoteException
+     * @throws NotResponsibleException
+     */
+    public VersionedValue<T> getStoredVersioned(long key, Node<T> reader, boolean checked) throws RemoteException, NotResponsibleException {
+        return requestExecutor.execute(() -> {
+            if(checked)
+                checkResponsibleFor(key);
+            servedReads.incrementAndGet();
+            boolean hot = registerReader(key, reader);
+            long version = versionClock.get();
+            return new VersionedValue<>(storage.getStored(key), version, hot);
+        });
+    }
+
+    //kao getStoredVersioned, ali s kodiranom vrijednošću
+    public VersionedValue<byte[]> getStoredEncodedVersioned(long key, Node<T> reader, boolean checked) throws RemoteException, NotResponsibleException {
+        return requestExecutor.execute(() -> {
+            if(checked)
+                checkResponsibleFor(key);
+            servedReads.incrementAndGet();
+            boolean hot = registerReader(key, reader);
+            long version = versionClock.get();
+            return new VersionedValue<>(storage.getEncoded(key), version, hot);
+        });
+    }
+
+    //Vlasnik je promijenio vrijednost popularnog ključa: makni kopiju starije verzije
+    public void invalidateCopy(long key, long version) throws RemoteException {
+        pathCache.invalidate(key, version);
+    }
+
+    //zabilježi čitanje; čitatelj popularnog ključa se pamti prije čitanja verzije i vrijednosti,
+    //pa invalidacija pisanja koje se dogodi nakon toga sigurno stiže do njega
+    private boolean registerReader(long key, Node<T> reader) {
+        if(!hotKeys.record(key) || reader == null || reader == this)
+            return false;
+        cacheHolders.compute(key, (k, holders) -> {
+            if(holders == null)
+                holders = ConcurrentHashMap.newKeySet();
+            holders.add(reader);
+            return holders;
+        });
+        return true;
+    }
+
+    //ključevi iz (from, to] prelaze drugom vlasniku koji ne zna tko drži kopije, pa se kopije invalidiraju
+    private void invalidateCopies(long from, long to) {
+        for(long key : new ArrayList<>(cacheHolders.keySet()))
+            if(KeyService.isKeyInbetween(key, from, to))
+                invalidateCopies(key);
+    }
+
+    //vrijednost se promijenila: nova verzija i invalidacija kod čvorova koji drže kopiju
+    //(ako invalidacija ne stigne, kopija istječe nakon TTL-a cachea)
+    private void invalidateCopies(long key) {
+        Set<Node<T>> holders = cacheHolders.remove(key);
+        if(holders == null)
+            return;
+        long version = versionClock.incrementAndGet();
+        for(Node<T> holder : holders) {
+            try {
+                holder.invalidateCopy(key, version);
+            } catch (RemoteException e) {
+                System.err.println("Error invalidating a copy on " + holder);
+            }
+        }
     }
 
-    //Konstruktor koji spaja dht.Node na udaljenu (internet/remote) mrežu
-    @SuppressWarnings("unchecked")
-    public Node(String name, String host, int port, String otherName) throws RemoteException, NotBoundException {
-        //konstruiraj nod kao da je zaseban u mreži
-        this(name);
+    //-------------------------------------------------TRANSPORT---------------------------------------------------
 
-        //registry stuffre
-        Registry registry = LocateRegistry.getRegistry(host, port);
-        Node<T> other = (Node<T>) registry.lookup(otherName);
+    /**
+     * Pokreni transport: ovaj čvor njime prima CRUD zahtjeve i šalje ih vlasnicima koji imaju adresu istog transporta
+     * (ostalim vlasnicima se zahtjevi šalju izravno). Vrijednosti se prenose kodirane codecom čvora, ili codecom spremišta
+     * ako čvor nema codec. Čitanja preko transporta ne prave kopije popularnih vrijednosti (path cache).
+     *
+     * @param transport
+     * @throws IOException
+     */
+    public synchronized void startTransport(Transport transport) throws IOException {
+        stopTransport();
+        this.transportAddress = transport.start(name, this::handleTransportRequest);
+        this.transport = transport;
+        this.handle = null;
+    }
 
-        //spoji na ostatak mreže
-        joinNetworkWithNode(other);
+    /**
+     * Zatvori transport; zahtjevi se opet šalju izravno
+     */
+    public synchronized void stopTransport() {
+        Transport current = transport;
+        transport = null;
+        transportAddress = null;
+        handle = null;
+        if(current != null)
+            current.close();
     }
 
-    //------------------------------------------------GETTERS AND SETTERS------------------------------------
+    public Transport getTransport() {
+        return transport;
+    }
 
-    public Node<T> getSuccessor() throws RemoteException {return successor;}
+    public String getTransportAddress() throws RemoteException {
+        return transportAddress;
+    }
 
-    public Node<T> getPredecessor() throws RemoteException {return predecessor;}
+    public long getTransportTimeout() {
+        return transportTimeout;
+    }
 
-    public String getIndex() throws RemoteException {return index;}
+    /**
+     * @param transportTimeout - najdulje čekanje na odgovor vlasnika preko transporta u milisekundama;
+     *                           nakon toga se zahtjev šalje izravno
+     */
+    public void setTransportTimeout(long transportTimeout) {
+        if(transportTimeout < 1)
+            throw new IllegalArgumentException("Transport timeout must be positive");
+        this.transportTimeout = transportTimeout;
+    }
 
-    public String getName() {
-        return name;
+    //zahtjev koji je stigao preko transporta (kao *Encoded metode)
+    private byte[] handleTransportRequest(byte operation, long key, byte[] payload) throws RemoteException, NotResponsibleException {
+        boolean checked = (operation & Transport.UNCHECKED) == 0;
+        switch(operation & ~Transport.UNCHECKED) {
+            case Transport.GET:
+                return checked ? getStoredEncodedIfResponsible(key) : getStoredEncoded(key);
+            case Transport.PUT:
+                if(checked)
+                    addStoredEncodedIfResponsible(key, payload);
+                else
+                    addStoredEncoded(key, payload);
+                return null;
+            case Transport.DELETE:
+                if(checked)
+                    removeStoredIfResponsible(key);
+                else
+                    removeStored(key);
+                return null;
+            default:
+                throw new RemoteException("Unknown operation " + operation);
+        }
     }
 
-    public HashMap<String, T> getStorage() {
-        return storage.getStorage();
+    /**
+     * Pošalji kodirani CRUD zahtjev vlasniku: preko transporta ako ga oba čvora imaju, a inače izravno.
+     * Adresa transporta vlasnika se uzima iz handlea (bez posebnog poziva vlasniku).
+     *
+     * @param owner - handle vlasnika
+     * @param operation - Transport.GET, PUT ili DELETE
+     * @param key
+     * @param payload - kodirana vrijednost (za PUT)
+     * @param checked - treba li vlasnik odbiti ključ za koji nije odgovoran
+     * @return kodirana vrijednost (za GET)
+     * @throws RemoteException
+     * @throws NotResponsibleException
+     */
+    private byte[] callOwner(NodeHandle<T> owner, byte operation, long key, byte[] payload, boolean checked) throws RemoteException, NotResponsibleException {
+        Transport current = transport;
+        String address = owner.getAddress();
+        if(current != null && current.supports(address)) {
+            CompletableFuture<byte[]> reply = current.send(address, checked ? operation : (byte) (operation | Transport.UNCHECKED), key, payload);
+            try {
+                return reply.get(transportTimeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                //vlasnik je primio zahtjev, ali ne odgovara: kao i kod drugih grešaka slanja
+                reply.cancel(false);
+                locationCache.invalidate(key);
+            } catch (ExecutionException e) {
+                if(e.getCause() instanceof NotResponsibleException)
+                    throw (NotResponsibleException) e.getCause();
+                if(e.getCause() instanceof BusyException)
+                    throw (BusyException) e.getCause();
+                //adresa u handleu je možda zastarjela (vlasnik je ponovno pokrenuo transport):
+                //interval se briše iz cachea, pa sljedeći lookup donese svježi handle, a ovaj zahtjev ide izravno
+                locationCache.invalidate(key);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RemoteException("Request to " + address + " interrupted", e);
+            }
+        }
+        Node<T> node = owner.getNode();
+        switch(operation) {
+            case Transport.GET:
+                return checked ? node.getStoredEncodedIfResponsible(key) : node.getStoredEncoded(key);
+            case Transport.PUT:
+                if(checked)
+                    node.addStoredEncodedIfResponsible(key, payload);
+                else
+                    node.addStoredEncoded(key, payload);
+                return null;
+            default:
+                if(checked)
+                    node.removeStoredIfResponsible(key);
+                else
+                    node.removeStored(key);
+                return null;
+        }
     }
 
-    public Map<String, Node<T>> getFingers() {
-        return fingers;
+    //codec kojim se vrijednosti prenose vlasniku (null: prenose se objekti)
+    private ValueCodec<T> transferCodec() {
+        ValueCodec<T> valueCodec = codec;
+        return valueCodec == null && transport != null ? storage.getCodec() : valueCodec;
     }
 
-    public void setFingers(Map<String, Node<T>> fingers) {
-        this.fingers = fingers;
+    //-----------------------------------------------NETWORK QUERY IMPLEMENTATIONS----------------------------------------
+
+    @Override
+    public T getValue(String key) {
+        try {
+            return fetchValue(key);
+        } catch (BusyException e) {
+            System.err.println("Busy: get " + key + " was rejected (" + e.getMessage() + ")");
+            return null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
     }
 
-    public void setStorage(HashMap<String, T> storage) {
-        this.storage.setStorage(storage);
+    @Override
+    public void addKeyValuePair(String key, T object) {
+        try {
+            storeValue(key, object);
+        } catch (BusyException e) {
+            System.err.println("Busy: put " + key + " was rejected (" + e.getMessage() + ")");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
-    public void setName(String name) {
-        this.name = name;
+    @Override
+    public void deleteValue(String key) {
+        try {
+            removeValue(key);
+        } catch (BusyException e) {
+            System.err.println("Busy: delete " + key + " was rejected (" + e.getMessage() + ")");
+        } catch (RemoteException e) {
+            e.printStackTrace();
+        }
     }
 
-    public void setIndex(String index) {this.index = index;}
+    //GET koji greške baca umjesto da ih ispiše
+    private T fetchValue(String key) throws IOException {
+        long nodeIndex = KeyService.generateNodeIndex(key, N);
+        ReadMode mode = readMode;
+        //quorum čitanje uvijek pita vlasnika i replike
+        if(pathCaching && mode != ReadMode.QUORUM) {
+            T cached = pathCache.get(nodeIndex);
+            if(cached != null)
+                return cached;
+        }
+        if(replicationFactor > 1 && mode == ReadMode.LEAST_LOADED)
+            return fetchFromCopy(nodeIndex);
+        if(replicationFactor > 1 && mode == ReadMode.QUORUM)
+            return fetchFromQuorum(nodeIndex);
+        return fetchFromOwner(nodeIndex);
+    }
 
-    public void setSuccessor(Node<T> newSuccessor) throws RemoteException {successor = newSuccessor;}
+    //GET kod vlasnika ključa; istovremena čitanja istog ključa čekaju jedno čitanje
+    private T fetchFromOwner(long nodeIndex) throws IOException {
+        if(coalescing)
+            return ownerReads.execute(nodeIndex, () -> readFromOwner(nodeIndex));
+        return readFromOwner(nodeIndex);
+    }
 
-    public void setPredecessor(Node<T> newPredcessor) throws RemoteException {predecessor = newPredcessor;}
+    private T readFromOwner(long nodeIndex) throws IOException {
+        if(pathCaching && transport == null)
+            return fetchVersioned(nodeIndex, codec);
+        ValueCodec<T> valueCodec = transferCodec();
+        if(valueCodec != null) {
+            byte[] bytes = executeOnOwner(nodeIndex, (node, checked) ->
+                    callOwner(node, Transport.GET, nodeIndex, null, checked));
+            return bytes == null ? null : valueCodec.decode(bytes);
+        }
+        return executeOnOwner(nodeIndex, (node, checked) ->
+                checked ? node.getNode().getStoredIfResponsible(nodeIndex) : node.getNode().getStored(nodeIndex));
+    }
 
+    //GET kod vlasnika; ako vlasnik javi da je ključ popularan, vrijednost se zadrži kao kopija
+    private T fetchVersioned(long nodeIndex, ValueCodec<T> valueCodec) throws IOException {
+        T value;
+        VersionedValue<?> reply;
+        if(valueCodec != null) {
+            VersionedValue<byte[]> encoded = executeOnOwner(nodeIndex, (node, checked) ->
+                    node.getNode().getStoredEncodedVersioned(nodeIndex, this, checked));
+            value = encoded.getValue() == null ? null : valueCodec.decode(encoded.getValue());
+            reply = encoded;
+        } else {
+            VersionedValue<T> plain = executeOnOwner(nodeIndex, (node, checked) ->
+                    node.getNode().getStoredVersioned(nodeIndex, this, checked));
+            value = plain.getValue();
+            reply = plain;
+        }
+        if(reply.isHot())
+            pathCache.put(nodeIndex, value, reply.getVersion());
+        return value;
+    }
 
-    //--------------------------------------------------JOIN & LEAVE dht NETWORK------------------------------
-    // Napusti trenutnu mrežu i pridruži se drugoj koja sadrži node other
-    public void joinNetworkWithNode(Node<T> other) {
+    /**
+     * GET s manje opterećene od dvije nasumične kopije. Ako replika nema par (npr. još nije dobila repliku
+     * jer se članstvo promijenilo) ili nije dostupna, čita se kod vlasnika.
+     *
+     * @param nodeIndex
+     * @return vrijednost ili null
+     * @throws IOException
+     */
+    private T fetchFromCopy(long nodeIndex) throws IOException {
+        List<Node<T>> copies = copiesOf(nodeIndex);
+        Node<T> copy = copies.get(0);
+        if(copies.size() > 1) {
+            int first = ThreadLocalRandom.current().nextInt(copies.size());
+            int second = ThreadLocalRandom.current().nextInt(copies.size() - 1);
+            if(second >= first)
+                second++;
+            copy = loadOf(copies.get(first)).get() <= loadOf(copies.get(second)).get()
+                    ? copies.get(first) : copies.get(second);
+        }
+        AtomicInteger load = loadOf(copy);
+        load.incrementAndGet();
         try {
-            boolean joined = false;
-            while(!joined) {
-                Node<T> pred = other.getPredecessor();
-                String otherKey = other.getIndex();
-                String predKey = pred.getIndex();
+            if(copy != copies.get(0)) {
+                try {
+                    T value = readCopy(copy, nodeIndex);
+                    if(value != null)
+                        return value;
+                } catch (RemoteException e) {
+                    replicaSets.remove(copies.get(0).getIndex());
+                }
+            }
+            return fetchFromOwner(nodeIndex);
+        } finally {
+            load.decrementAndGet();
+        }
+    }
 
-                if(KeyService.isKeyInbetween(this.getIndex(), predKey, otherKey)) {
-                    pred.setSuccessor(this);
-                    other.setPredecessor(this);
-                    setSuccessor(other);
-                    setPredecessor(pred);
+    /**
+     * GET s većine kopija (R/2 + 1, počevši od vlasnika); vraća se vrijednost koju ima najviše kopija,
+     * a kod neodlučenog stanja vrijednost vlasnika. Kopija koja ne odgovori je glas koji nedostaje:
+     * pita se sljedeća kopija, a čitanje uspije dok god odgovori većina.
+     *
+     * @param nodeIndex
+     * @return vrijednost ili null
+     * @throws IOException ako ne odgovori većina kopija
+     */
+    private T fetchFromQuorum(long nodeIndex) throws IOException {
+        List<Node<T>> copies = copiesOf(nodeIndex);
+        int quorum = Math.min(copies.size(), replicationFactor / 2 + 1);
+        List<T> values = new ArrayList<>();
+        IOException failure = null;
+        boolean stale = false;
+        try {
+            values.add(fetchFromOwner(nodeIndex));
+        } catch (IOException e) {
+            failure = e;
+        }
+        for(int i=1; i<copies.size() && values.size() < quorum; i++) {
+            try {
+                values.add(readCopy(copies.get(i), nodeIndex));
+            } catch (IOException e) {
+                failure = e;
+                stale = true;
+            }
+        }
+        if(values.size() < quorum) {
+            replicaSets.remove(copies.get(0).getIndex());
+            throw new RemoteException("Only " + values.size() + " of " + quorum + " copies answered", failure);
+        }
 
-                    /*Get a share of the project_package.storage from our new successor*/
-                    Map<String, T> handover = this.getSuccessor().handoverStorageDueToNewPredcessor(predKey, index);
-                    for(String k : handover.keySet())
-                        storage.addStored(k, handover.get(k));
+        T best = values.get(0);
+        int bestVotes = 0;
+        for(T candidate : values) {
+            int votes = 0;
+            for(T value : values)
+                if(sameValue(candidate, value))
+                    votes++;
+            if(votes > bestVotes) {
+                best = candidate;
+                bestVotes = votes;
+            }
+        }
+        //kopija koja nije odgovorila ili se ne slaže je možda izvan skupa kopija: skup se gradi ponovno
+        if(stale || !sameValue(best, values.get(0)))
+            replicaSets.remove(copies.get(0).getIndex());
+        return best;
+    }
 
-                    joined = true;
-                } else
-                    other = other.getSuccessor();
+    //vlasnik ključa i nasljednici koji drže replike (iz cachea dok se vlasnik ne promijeni)
+    private List<Node<T>> copiesOf(long nodeIndex) throws RemoteException {
+        Node<T> owner = findOwner(nodeIndex);
+        List<Node<T>> copies = replicaSets.get(owner.getIndex());
+        if(copies == null || copies.get(0) != owner) {
+            copies = new ArrayList<>();
+            copies.add(owner);
+            Node<T> current = owner.getSuccessor();
+            while(copies.size() < replicationFactor && current != null && !copies.contains(current)) {
+                copies.add(current);
+                current = current.getSuccessor();
             }
-            updateRoutingTable();
+            replicaSets.put(owner.getIndex(), copies);
+        }
+        return copies;
+    }
 
-        } catch(RemoteException e) {
-            System.err.println("Error joining " + other);
-            e.printStackTrace();
+    private T readCopy(Node<T> copy, long nodeIndex) throws IOException {
+        ValueCodec<T> valueCodec = codec;
+        if(valueCodec != null) {
+            byte[] bytes = copy.getStoredCopyEncoded(nodeIndex);
+            return bytes == null ? null : valueCodec.decode(bytes);
         }
+        return copy.getStoredCopy(nodeIndex);
     }
 
-    // Napusti trenutnu mrežu
-    public void leaveCurrentNetwork() {
-        try {
-            /*Hand over items to successor.*/
-//			System.out.println(name + ": I'm leaving. " + successor + " will handle my project_package.storage. (" + project_package.storage.size() + ") items.");
-            for(String k : storage.keySet())
-                this.getSuccessor().addStored(k, storage.getStored(k));
-            System.out.println(name + ": Done.");
+    private AtomicInteger loadOf(Node<T> copy) {
+        return replicaLoad.computeIfAbsent(copy, c -> new AtomicInteger());
+    }
 
+    private static boolean sameValue(Object first, Object second) {
+        if(first instanceof byte[] && second instanceof byte[])
+            return Arrays.equals((byte[]) first, (byte[]) second);
+        return Objects.equals(first, second);
+    }
 
-            //join empty hands inside the ring
-            this.getSuccessor().setPredecessor(this.getPredecessor());
-            this.getPredecessor().setSuccessor(this.getSuccessor());
+    //PUT koji greške baca umjesto da ih ispiše
+    private void storeValue(String key, T object) throws IOException {
+        long k = KeyService.generateNodeIndex(key, N);
+        try {
+            writeValue(k, object);
+        } finally {
+            ownerReads.forget(k);
+        }
+    }
 
-            //isolate this node in his own project_package.network
-            this.setSuccessor(this);
-            this.setPredecessor(this);
+    private void writeValue(long k, T object) throws IOException {
+        ValueCodec<T> valueCodec = transferCodec();
+        if(valueCodec != null) {
+            //kodira se jednom, vlasnik sprema bajtove kakvi jesu
+            byte[] bytes = valueCodec.encode(object);
+            executeOnOwner(k, (node, checked) -> callOwner(node, Transport.PUT, k, bytes, checked));
+            return;
+        }
+        executeOnOwner(k, (node, checked) -> {
+            if(checked)
+                node.getNode().addStoredIfResponsible(k, object);
+            else
+                node.getNode().addStored(k, object);
+            return null;
+        });
+    }
 
-            //aaand update the routing table
-            updateRoutingTable();
+    //DELETE koji greške baca umjesto da ih ispiše
+    private void removeValue(String key) throws RemoteException {
+        long k = KeyService.generateNodeIndex(key, N);
+        try {
+            deleteStoredValue(k);
+        } finally {
+            ownerReads.forget(k);
+        }
+    }
 
-        } catch(RemoteException e) { //if we've encountered a problem while leaving the project_package.network
-            System.err.println("Error leaving.");
-            e.printStackTrace();
+    private void deleteStoredValue(long k) throws RemoteException {
+        if(transport != null) {
+            executeOnOwner(k, (node, checked) -> callOwner(node, Transport.DELETE, k, null, checked));
+            return;
         }
+        executeOnOwner(k, (node, checked) -> {
+            if(checked)
+                node.getNode().removeStoredIfResponsible(k);
+            else
+                node.getNode().removeStored(k);
+            return null;
+        });
     }
 
-    //čvor predaje dio svojeg project_package.storage-a novom prethodniku.
-    public Map<String, T> handoverStorageDueToNewPredcessor(String oldPredIndex, String newPredIndex) throws RemoteException {
-        Map<String, T> handover = new LinkedHashMap<>();
-        List<String> keys = new ArrayList<String>(storage.keySet());
-        for(String k : keys)
-            if(KeyService.isKeyInbetween(k, oldPredIndex, newPredIndex))
-                handover.put(k, storage.remove(k));
-        return handover;
+    //---------------------------------------------ATOMIC OPERATIONS---------------------------------------------
+
+    @Override
+    public boolean compareAndSet(String key, T expected, T newValue) throws RemoteException {
+        AtomicResult<T> result = executeAtomic(key, AtomicOperations.compareAndSet(expected, newValue));
+        return Objects.deepEquals(result.getPrevious(), expected);
     }
 
+    @Override
+    public T putIfAbsent(String key, T value) throws RemoteException {
+        return executeAtomic(key, AtomicOperations.putIfAbsent(value)).getPrevious();
+    }
 
-    /**
-     * Salji "probe" kroz mrežu.
-     * Čvor kada se pozove ova funkcija
-     * će samo isprintati svoje ime na standardni output (vjv konzola)
-     * i proslijediti svom nasljedniku f-ju (tj pozvati je nad njime).
-     *
-     * @param nodeIndex - Index čvora koji je originalno slao probe
-     * @param count - informacija o broju čvorova (inkrementira se svakim prolazom kroz novi čvor)
-     * @throws RemoteException
-     */
-    public void probe(String nodeIndex, int count) throws RemoteException {
-        if(this.getIndex().equals(nodeIndex) && count > 0) {
-            System.out.println("Probe returned after " + count + " hops.");
-        } else {
-            System.out.println(this.getName() + ": Forwarding probe to " + this.getSuccessor());
-            this.getSuccessor().probe(nodeIndex, count+1);
-        }
+    @Override
+    public long increment(String key, long delta) throws RemoteException {
+        return increment(key, delta, null);
+    }
+
+    @Override
+    public long increment(String key, long delta, T initial) throws RemoteException {
+        Object current = executeAtomic(key, AtomicOperations.increment(delta, initial)).getCurrent();
+        return current instanceof Number ? ((Number) current).longValue() : Long.parseLong((String) current);
+    }
+
+    @Override
+    public T merge(String key, T value, String function) throws RemoteException {
+        return executeAtomic(key, AtomicOperations.merge(function, value)).getCurrent();
     }
 
     /**
-     * Nađi u prstenu/mreži čvor koji je odgovoran za project_package.storage ovog ključa key.
-     * Koristi se pri CRUD operacijama.
+     * Pošalji operaciju vlasniku ključa (jedan lookup, ili nijedan ako je vlasnik u cacheu lokacija, i jedan zahtjev).
+     * Operacija i vrijednosti se šalju kao objekti i kad čvor koristi codec, jer ih vlasnik mora izvršiti nad vrijednošću.
      *
      * @param key
-     * @return a reference to the (remote) dht.Node.
+     * @param operation
+     * @return vrijednost prije i nakon operacije
      * @throws RemoteException
      */
-    public Node<T> lookupNodeResponsibleFor(String key) throws RemoteException {
-        //ako je key u prostoru ključa (razlici indeksa) između prethodnika i ovog elementa
-        //onda je za key odgovoran ovaj čvor
-        //pa ga vrati
-        if(KeyService.isKeyInbetween(key, this.getPredecessor().getIndex(), getIndex()))
-            return this;
-        //ako routing tablica ima manje od 3 člana, pitaj nasljednika isto pitanje
-        else if(this.getFingers().keySet().size() < 3) {
-            return this.getSuccessor().lookupNodeResponsibleFor(key);
-        }
-        //ako routing tablica ima jednako ili više od tri člana, po njenim ključevima
-        //tj indexima čvorova pretraži
-        else {
-            String[] routingTableIndexList = {};
-            routingTableIndexList = this.getFingers().keySet().toArray(routingTableIndexList);
-            for(int i=0; i<(routingTableIndexList.length-1); i++) {
-                String currentNodeIndex = routingTableIndexList[i];
-                String nextNodeIndex = routingTableIndexList[i+1];
-                if(KeyService.isKeyInbetween(key, currentNodeIndex, nextNodeIndex)) {
-                    Node<T> currentNode = this.getFingers().get(currentNodeIndex);
-                    Node<T> node = currentNode.getSuccessor();
-                    return node.lookupNodeResponsibleFor(key);
+    private AtomicResult<T> executeAtomic(String key, AtomicOperation<T> operation) throws RemoteException {
+        long k = KeyService.generateNodeIndex(key, N);
+        try {
+            return executeOnOwner(k, (node, checked) -> node.getNode().applyAtomic(k, operation, checked));
+        } finally {
+            ownerReads.forget(k);
+        }
+    }
+
+    @Override
+    public BatchResult<T> getValues(Collection<String> keys) {
+        String[] names = keys.toArray(new String[0]);
+        long[] indexes = indexKeys(names);
+        Map<Long, T> found = new ConcurrentHashMap<>();
+        Map<Long, Exception> errors = new ConcurrentHashMap<>();
+        ValueCodec<T> valueCodec = codec;
+        int requests = executeOnOwners(distinctSorted(indexes), (owner, ownerKeys, checked) -> {
+            if(valueCodec == null) {
+                BatchReply<T> reply = owner.getStoredBatch(ownerKeys, checked);
+                found.putAll(reply.getValues());
+                return reply.getRejected();
+            }
+            BatchReply<byte[]> reply = owner.getStoredEncodedBatch(ownerKeys, checked);
+            for(Map.Entry<Long, byte[]> entry : reply.getValues().entrySet()) {
+                try {
+                    found.put(entry.getKey(), valueCodec.decode(entry.getValue()));
+                } catch (IOException e) {
+                    errors.put(entry.getKey(), e);
+                }
+            }
+            return reply.getRejected();
+        }, errors);
+        return toBatchResult(names, indexes, found, errors, requests);
+    }
+
+    @Override
+    public BatchResult<T> addKeyValuePairs(Map<String, T> pairs) {
+        String[] names = pairs.keySet().toArray(new String[0]);
+        long[] indexes = indexKeys(names);
+        Map<Long, Exception> errors = new ConcurrentHashMap<>();
+        //više imena s istim indeksom: vrijedi zadnja vrijednost, kao kod pojedinačnih put-ova
+        Map<Long, T> values = new HashMap<>();
+        for(int i=0; i<names.length; i++)
+            values.put(indexes[i], pairs.get(names[i]));
+
+        ValueCodec<T> valueCodec = codec;
+        Map<Long, byte[]> encoded = new HashMap<>();
+        if(valueCodec != null) {
+            //kodira se jednom, vlasnici spremaju bajtove kakvi jesu
+            for(Map.Entry<Long, T> entry : values.entrySet()) {
+                try {
+                    encoded.put(entry.getKey(), valueCodec.encode(entry.getValue()));
+                } catch (IOException e) {
+                    errors.put(entry.getKey(), e);
                 }
             }
-            return this.getFingers().get(routingTableIndexList[routingTableIndexList.length-1]).getSuccessor().lookupNodeResponsibleFor(key);
         }
 
+        long[] keys = distinctSorted(indexes);
+        if(!errors.isEmpty())
+            keys = Arrays.stream(keys).filter(key -> !errors.containsKey(key)).toArray();
+        int requests = executeOnOwners(keys, (owner, ownerKeys, checked) -> {
+            if(valueCodec == null) {
+                Map<Long, T> entries = new TreeMap<>();
+                for(long key : ownerKeys)
+                    entries.put(key, values.get(key));
+                return owner.addStoredBatch(entries, checked);
+            }
+            Map<Long, byte[]> entries = new TreeMap<>();
+            for(long key : ownerKeys)
+                entries.put(key, encoded.get(key));
+            return owner.addStoredEncodedBatch(new EncodedEntries(entries), checked);
+        }, errors);
+        for(long index : indexes)
+            ownerReads.forget(index);
+        return toBatchResult(names, indexes, Collections.emptyMap(), errors, requests);
     }
 
-    public void updateFingers(List<Node<T>> nodes) throws RemoteException {
-        Map<String, Node<T>> newFingers = new LinkedHashMap<>();
-        newFingers.put(this.getIndex(), this);
-        try {
-            int myIndex = nodes.indexOf(this);
+    @Override
+    public BatchResult<T> deleteValues(Collection<String> keys) {
+        String[] names = keys.toArray(new String[0]);
+        long[] indexes = indexKeys(names);
+        Map<Long, Exception> errors = new ConcurrentHashMap<>();
+        int requests = executeOnOwners(distinctSorted(indexes),
+                (owner, ownerKeys, checked) -> owner.removeStoredBatch(ownerKeys, checked), errors);
+        for(long index : indexes)
+            ownerReads.forget(index);
+        return toBatchResult(names, indexes, Collections.emptyMap(), errors, requests);
+    }
 
-            for(int i=1; i<nodes.size(); i = i*2) {
-                int nodeIndex = (myIndex + i) % nodes.size();
-                Node<T> n = nodes.get(nodeIndex);
-                newFingers.put(n.getIndex(), n);
-            }
-        } catch(RemoteException e) {
-            e.printStackTrace();
+    //indeksi imena ključeva
+    private static long[] indexKeys(String[] names) {
+        long[] indexes = new long[names.length];
+        for(int i=0; i<names.length; i++)
+            indexes[i] = KeyService.generateNodeIndex(names[i], N);
+        return indexes;
+    }
+
+    //sortirani indeksi bez ponavljanja
+    private static long[] distinctSorted(long[] indexes) {
+        return Arrays.stream(indexes).sorted().distinct().toArray();
+    }
+
+    //rezultati po indeksu -> rezultati po imenu ključa
+    private static <T> BatchResult<T> toBatchResult(String[] names, long[] indexes, Map<Long, T> found,
+                                                    Map<Long, Exception> errors, int requests) {
+        Map<String, T> values = new HashMap<>();
+        Map<String, Exception> keyErrors = new HashMap<>();
+        for(int i=0; i<names.length; i++) {
+            Exception error = errors.isEmpty() ? null : errors.get(indexes[i]);
+            T value = found.get(indexes[i]);
+            if(error != null)
+                keyErrors.put(names[i], error);
+            else if(value != null)
+                values.put(names[i], value);
         }
-        this.setFingers(newFingers);
+        return new BatchResult<>(values, keyErrors, requests);
     }
 
-    //----------------------------------------------STORAGE----------------------------------------------
+    //-----------------------------------------------ASYNC QUERY IMPLEMENTATIONS----------------------------------------
 
-    //Vrati vrijednost mapiranu na dani ključ
-    public T getStored(String key) throws RemoteException {
-        return storage.getStored(key);
+    @Override
+    public CompletableFuture<T> getValueAsync(String key) {
+        return getAsyncExecutor().submit(() -> fetchValue(key));
     }
 
-    //GetAll vrijednosti u skladištu ovog čvora
-    public List<T> getAllStored() throws RemoteException {
-        ArrayList<T> values = new ArrayList<>(storage.getAllStored());
-        return values;
+    @Override
+    public CompletableFuture<Void> addKeyValuePairAsync(String key, T object) {
+        return getAsyncExecutor().submit(() -> {
+            storeValue(key, object);
+            return null;
+        });
     }
 
-    //Add/update vrijednosti na ključ
-    public void addStored(String key, T value) throws RemoteException {
-        storage.addStored(key, value);
+    @Override
+    public CompletableFuture<Void> deleteValueAsync(String key) {
+        return getAsyncExecutor().submit(() -> {
+            removeValue(key);
+            return null;
+        });
     }
 
-    //Delete vrijednosti na ključ
-    public void removeStored(String key) throws RemoteException {
-        storage.remove(key);
+    @Override
+    public CompletableFuture<BatchResult<T>> getValuesAsync(Collection<String> keys) {
+        return getAsyncExecutor().submit(() -> getValues(keys));
     }
 
-    //-----------------------------------------------NETWORK QUERY IMPLEMENTATIONS----------------------------------------
+    @Override
+    public CompletableFuture<BatchResult<T>> addKeyValuePairsAsync(Map<String, T> pairs) {
+        return getAsyncExecutor().submit(() -> addKeyValuePairs(pairs));
+    }
 
     @Override
-    public T getValue(String key) {
-        try {
-            String nodeIndex = KeyService.generateNodeIndex(key, N);
-            Node<T> node = lookupNodeResponsibleFor(nodeIndex);
-            return node.getStored(nodeIndex);
-        } catch (RemoteException e) {
-            e.printStackTrace();
-            return null;
-        }
+    public CompletableFuture<BatchResult<T>> deleteValuesAsync(Collection<String> keys) {
+        return getAsyncExecutor().submit(() -> deleteValues(keys));
+    }
+
+    /**
+     * Streaming scan cijelog prstena s defaultnim paralelizmom i veličinom dijela
+     *
+     * @return scan (treba ga zatvoriti ako se ne pročita do kraja)
+     */
+    public RingScan<T> scan() {
+        return scan(RingScan.DEFAULT_PARALLELISM, RingScan.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Streaming scan cijelog prstena
+     *
+     * @param parallelism - broj segmenata prstena koji se čitaju paralelno
+     * @param chunkSize - najviše parova po jednom zahtjevu vlasniku
+     * @return scan (treba ga zatvoriti ako se ne pročita do kraja)
+     */
+    public RingScan<T> scan(int parallelism, int chunkSize) {
+        return new RingScan<>(this, N, parallelism, chunkSize, batchExecutor);
     }
 
     @Override
-    public void addKeyValuePair(String key, T object) {
-        try {
-            String k = KeyService.generateNodeIndex(key, N);
-            Node<T> node = lookupNodeResponsibleFor(k);
-            node.addStored(k, object);
-        } catch (RemoteException e) {
-            e.printStackTrace();
-        }
+    public ScanPage<T> scan(long fromId, long toId, int limit) throws RemoteException {
+        checkIdentifier(fromId);
+        checkIdentifier(toId);
+        return scanFrom(fromId, KeyService.distance(fromId, toId, N) + 1, limit);
     }
 
     @Override
-    public void deleteValue(String key) {
+    public ScanPage<T> scan(String continuationToken, int limit) throws RemoteException {
+        long[] remaining = ScanPage.parseToken(continuationToken);
+        checkIdentifier(remaining[0]);
+        if(remaining[1] < 1 || remaining[1] > N)
+            throw new IllegalArgumentException("Invalid continuation token " + continuationToken);
+        return scanFrom(remaining[0], remaining[1], limit);
+    }
+
+    @Override
+    public ScanPage<T> scanPrefix(long prefix, int prefixBits, int limit) throws RemoteException {
+        if(prefixBits < 0 || prefixBits > M || (prefix >>> prefixBits) != 0)
+            throw new IllegalArgumentException("Invalid prefix " + prefix + "/" + prefixBits);
+        long count = 1L << (M - prefixBits);
+        return scanFrom(prefix << (M - prefixBits), count, limit);
+    }
+
+    /**
+     * Range scan od identifikatora start kroz count identifikatora u smjeru kazaljke na satu.
+     * Interval se dijeli na najviše dva linearna dijela (do kraja prstena i od nule), a svaki se čita
+     * vlasnik po vlasnik od početka, dok se ne skupi limit parova.
+     *
+     * @param start
+     * @param count - broj identifikatora (1..N)
+     * @param limit
+     * @return stranica s tokenom za nastavak
+     * @throws RemoteException
+     */
+    private ScanPage<T> scanFrom(long start, long count, int limit) throws RemoteException {
+        if(limit < 1)
+            throw new IllegalArgumentException("Limit must be positive");
+        List<Map.Entry<Long, T>> entries = new ArrayList<>();
+        long[][] parts = start + count <= N
+                ? new long[][] {{start - 1, start + count - 1}}
+                : new long[][] {{start - 1, N - 1}, {-1, start + count - 1 - N}};
         try {
-            String k = KeyService.generateNodeIndex(key, N);
-            Node<T> node = lookupNodeResponsibleFor(k);
-            node.removeStored(k);
+            for(long[] part : parts) {
+                long cursor = part[0];
+                while(cursor < part[1]) {
+                    Node<T> owner = findOwner(cursor + 1);
+                    long ownerIndex = owner.getIndex();
+                    //vlasnik je odgovoran do svog indeksa, a prvi čvor u prstenu i za identifikatore iza zadnjeg čvora
+                    long end = ownerIndex > cursor ? Math.min(ownerIndex, part[1]) : part[1];
+                    int wanted = limit - entries.size();
+                    SortedMap<Long, T> chunk = scanChunk(owner, cursor, end, wanted);
+                    for(Map.Entry<Long, T> entry : chunk.entrySet())
+                        entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+                    if(chunk.size() >= wanted) {
+                        //stranica je puna: nastavak ide od identifikatora iza zadnjeg vraćenog
+                        long last = chunk.lastKey();
+                        long consumed = KeyService.distance(start, last, N) + 1;
+                        return new ScanPage<>(entries, consumed < count ? ScanPage.token((last + 1) & (N - 1), count - consumed) : null);
+                    }
+                    cursor = end;
+                }
+            }
         } catch (RemoteException e) {
-            e.printStackTrace();
+            throw e;
+        } catch (IOException e) {
+            throw new RemoteException("Can't decode scanned value", e);
         }
+        return new ScanPage<>(entries, null);
+    }
+
+    private static void checkIdentifier(long id) {
+        if(id < 0 || id >= N)
+            throw new IllegalArgumentException("Identifier " + id + " is outside of the ring [0, " + N + ")");
+    }
+
+    //jedan dio scana od vlasnika, kroz codec ako ga čvor koristi
+    SortedMap<Long, T> scanChunk(Node<T> owner, long from, long to, int limit) throws IOException {
+        ValueCodec<T> valueCodec = codec;
+        if(valueCodec == null)
+            return owner.scanStored(from, to, limit);
+        SortedMap<Long, T> chunk = new TreeMap<>();
+        for(Map.Entry<Long, byte[]> entry : owner.scanStoredEncoded(from, to, limit).toMap().entrySet())
+            chunk.put(entry.getKey(), valueCodec.decode(entry.getValue()));
+        return chunk;
     }
 
     @Override
@@ -372,8 +2879,11 @@ public class Node<T> extends UnicastRemoteObject implements Network<T> {
     @Override
     public void updateRoutingTable() throws RemoteException {
         List<Node<T>> nodes = getAllNodes();
+        long[] sortedIndexes = new long[nodes.size()];
+        for(int i=0; i<nodes.size(); i++)
+            sortedIndexes[i] = nodes.get(i).getIndex();
         for(Node<T> n : nodes)
-            n.updateFingers(nodes);
+            n.updateFingers(nodes, sortedIndexes);
     }
 
     @Override
@@ -393,17 +2903,7 @@ public class Node<T> extends UnicastRemoteObject implements Network<T> {
             @Override
             public int compare(Node<T> n1, Node<T> n2) {
                 try {
-                    String key1 = n1.getIndex();
-                    String key2 = n2.getIndex();
-                    int i1 = Integer.parseInt(key1, 2);
-                    int i2 = Integer.parseInt(key2, 2);
-
-                    if(i1 > i2)
-                        return 1;
-                    if(i1 < i2)
-                        return -1;
-                    else
-                        return 0;
+                    return Long.compare(n1.getIndex(), n2.getIndex());
                 }catch(RemoteException e) {
                     return 0;
                 }
@@ -422,15 +2922,26 @@ public class Node<T> extends UnicastRemoteObject implements Network<T> {
 
     @Override
     public boolean equals(Object other) {
-        if(other instanceof Node<?>)
-            try {
-                return this.getIndex().equals(((Node<?>) other).getIndex());
-            } catch (RemoteException e) {
-                e.printStackTrace();
-                return false;
-            }
-        else
-            return false;
+        //indeks se ne mijenja, pa se uspoređuje bez poziva drugog čvora
+        return other instanceof Node<?> && index == ((Node<?>) other).index;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(index);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] newNodeArray(int size) {
+        return (Node<T>[]) new Node<?>[size];
+    }
+
+    private static long[] toLongArray(Collection<Long> values) {
+        long[] array = new long[values.size()];
+        int i = 0;
+        for(long value : values)
+            array[i++] = value;
+        return array;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package project_package.network;
+
+import java.io.Serializable;
+
+/**
+ * Referenca na čvor zajedno s atributima koji se ne mijenjaju (indeks, ime) i adresom transporta,
+ * pa ih onaj tko drži referencu ne mora tražiti od čvora posebnim pozivom
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti koja se posprema u DHT
+ *
+ */
+public final class NodeHandle<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Node<T> node;
+
+    private final long index;
+
+    private final String name;
+
+    /**
+     * Adresa transporta čvora u trenutku stvaranja (null ako ga nema)
+     */
+    private final String address;
+
+    NodeHandle(Node<T> node, long index, String name, String address) {
+        this.node = node;
+        this.index = index;
+        this.name = name;
+        this.address = address;
+    }
+
+    public Node<T> getNode() {
+        return node;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof NodeHandle<?> && index == ((NodeHandle<?>) other).index;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(index);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
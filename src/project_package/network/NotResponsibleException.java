@@ -0,0 +1,23 @@
+package project_package.network;
+
+/**
+ * Baca ju čvor kojem je poslan zahtjev za ključ za koji (više) nije odgovoran
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class NotResponsibleException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public NotResponsibleException(String nodeName, long key) {
+        super(nodeName + " is not responsible for key " + key);
+    }
+
+    /**
+     * @param message - poruka iznimke koju je vlasnik poslao preko transporta
+     */
+    public NotResponsibleException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,144 @@
+package project_package.network;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ograničeni (LRU) cache kratkotrajnih kopija popularnih vrijednosti na čvoru koji ih traži.
+ * Svaka kopija pamti verziju koju je vlasnik imao kad ju je poslao. Kad se vrijednost promijeni,
+ * vlasnik šalje invalidaciju s novom verzijom; ona se pamti i nakon brisanja kopije, pa se odbije
+ * i kopija starije verzije koja stigne tek nakon invalidacije.
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti koja se posprema u DHT
+ *
+ */
+public class PathCache<T> {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final long DEFAULT_TTL = 1000;
+
+    /**
+     * Kopija vrijednosti (value == null: samo zapamćena verzija invalidacije)
+     */
+    private static final class Entry<T> {
+        private final T value;
+        private final long version;
+        private final long expiresAt;
+
+        private Entry(T value, long version, long expiresAt) {
+            this.value = value;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int capacity;
+    private volatile long ttl = DEFAULT_TTL;
+
+    private final LinkedHashMap<Long, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public PathCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity - maksimalan broj kopija u cacheu
+     */
+    public PathCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param key
+     * @return kopija vrijednosti ili null ako je nema ili je istekla
+     */
+    public synchronized T get(long key) {
+        Entry<T> entry = entries.get(key);
+        if(entry == null || entry.value == null || entry.expiresAt <= System.currentTimeMillis()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    /**
+     * Spremi kopiju, osim ako je u međuvremenu stigla invalidacija novije verzije
+     *
+     * @param key
+     * @param value
+     * @param version - verzija vrijednosti kod vlasnika
+     * @return true ako je kopija spremljena
+     */
+    public synchronized boolean put(long key, T value, long version) {
+        if(capacity <= 0 || value == null)
+            return false;
+        Entry<T> old = entries.get(key);
+        long now = System.currentTimeMillis();
+        if(old != null && old.version > version && old.expiresAt > now)
+            return false;
+        entries.put(key, new Entry<>(value, version, now + ttl));
+        if(entries.size() > capacity)
+            entries.remove(entries.keySet().iterator().next());
+        return true;
+    }
+
+    /**
+     * Vlasnik je promijenio vrijednost: makni kopije starije od version
+     *
+     * @param key
+     * @param version - nova verzija vrijednosti kod vlasnika
+     */
+    public synchronized void invalidate(long key, long version) {
+        Entry<T> old = entries.get(key);
+        if(old == null || old.version < version) {
+            entries.put(key, new Entry<>(null, version, System.currentTimeMillis() + ttl));
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @param ttl - koliko dugo je kopija valjana u milisekundama (granica zastarjelosti ako invalidacija ne stigne)
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * @return udio čitanja posluženih iz cachea
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+}
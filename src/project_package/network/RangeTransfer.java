@@ -0,0 +1,192 @@
+package project_package.network;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import project_package.storage.EncodedEntries;
+
+/**
+ * Prijenos intervala prstena (from, to] u dijelovima (kod join/leave).
+ * Interval se dijeli na nekoliko podintervala koji se prenose paralelno; svaki podinterval se čita
+ * po chunkSize parova i pamti dokle je stigao (checkpoint). Ako dio ne uspije ni nakon ponovljenih
+ * pokušaja, run() baca grešku, a sljedeći run() nastavlja od checkpointa.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class RangeTransfer {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+    public static final int DEFAULT_STREAMS = 4;
+
+    /**
+     * Koliko puta se ponavlja čitanje/pisanje jednog dijela prije nego se prijenos prekine
+     */
+    private static final int MAX_CHUNK_ATTEMPTS = 3;
+
+    /**
+     * Izvor dijelova: najviše limit parova s ključem u (from, to], sortirano (from < to)
+     */
+    public interface ChunkSource {
+        EncodedEntries read(long from, long to, int limit) throws RemoteException;
+    }
+
+    /**
+     * Odredište dijelova
+     */
+    public interface ChunkSink {
+        void write(EncodedEntries chunk) throws RemoteException;
+    }
+
+    /**
+     * Podinterval (cursor, end] koji jedan stream još treba prenijeti
+     */
+    private static final class Stream {
+        private volatile long cursor;
+        private final long end;
+
+        private Stream(long cursor, long end) {
+            this.cursor = cursor;
+            this.end = end;
+        }
+    }
+
+    private final List<Stream> streams = new ArrayList<>();
+    private final int chunkSize;
+    private final ChunkSource source;
+    private final ChunkSink sink;
+
+    private final AtomicLong entries = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * @param from
+     * @param to - interval prstena (from, to], cijeli prsten ako je from == to
+     * @param ringSize - broj identifikatora u prstenu
+     * @param chunkSize - najviše parova po dijelu
+     * @param parallelism - broj podintervala koji se prenose paralelno
+     * @param source
+     * @param sink
+     */
+    public RangeTransfer(long from, long to, long ringSize, int chunkSize, int parallelism, ChunkSource source, ChunkSink sink) {
+        if(chunkSize < 1 || parallelism < 1)
+            throw new IllegalArgumentException("Chunk size and parallelism must be positive");
+        this.chunkSize = chunkSize;
+        this.source = source;
+        this.sink = sink;
+        //interval koji prelazi preko nule se dijeli na dva linearna dijela
+        long[][] parts = from < to
+                ? new long[][] {{from, to}}
+                : new long[][] {{from, ringSize - 1}, {-1, to}};
+        for(long[] part : parts) {
+            long length = part[1] - part[0];
+            int count = (int) Math.max(1, Math.min(parallelism, length));
+            for(int i=0; i<count; i++) {
+                long start = part[0] + length * i / count;
+                long end = part[0] + length * (i + 1) / count;
+                if(start < end)
+                    streams.add(new Stream(start, end));
+            }
+        }
+    }
+
+    /**
+     * Prenesi interval (ili ostatak od checkpointa)
+     *
+     * @param executor - izvršitelj na kojem se streamovi izvode paralelno
+     * @throws RemoteException ako neki dio ne uspije ni nakon ponovljenih pokušaja
+     */
+    public void run(ExecutorService executor) throws RemoteException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for(Stream stream : streams)
+            if(stream.cursor < stream.end)
+                tasks.add(() -> {
+                    transfer(stream);
+                    return null;
+                });
+        try {
+            if(tasks.size() == 1)
+                tasks.get(0).call();
+            else {
+                List<Future<Void>> futures = executor.invokeAll(tasks);
+                for(Future<Void> future : futures)
+                    future.get();
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RemoteException
+                    ? (RemoteException) e.getCause()
+                    : new RemoteException("Range transfer failed", e.getCause());
+        } catch (RemoteException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Range transfer interrupted", e);
+        } catch (Exception e) {
+            throw new RemoteException("Range transfer failed", e);
+        }
+    }
+
+    /**
+     * @return true ako su svi podintervali preneseni
+     */
+    public boolean isComplete() {
+        for(Stream stream : streams)
+            if(stream.cursor < stream.end)
+                return false;
+        return true;
+    }
+
+    /**
+     * @return checkpoint: za svaki podinterval zadnji preneseni identifikator i kraj podintervala
+     */
+    public long[][] getCheckpoint() {
+        long[][] checkpoint = new long[streams.size()][];
+        for(int i=0; i<streams.size(); i++)
+            checkpoint[i] = new long[] {streams.get(i).cursor, streams.get(i).end};
+        return checkpoint;
+    }
+
+    public long getEntries() {
+        return entries.get();
+    }
+
+    public long getChunks() {
+        return chunks.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    //prenesi podinterval dio po dio; cursor se pomiče tek kad je dio zapisan
+    private void transfer(Stream stream) throws RemoteException {
+        while(stream.cursor < stream.end) {
+            RemoteException failure = null;
+            EncodedEntries chunk = null;
+            for(int attempt=0; attempt<MAX_CHUNK_ATTEMPTS; attempt++) {
+                try {
+                    chunk = source.read(stream.cursor, stream.end, chunkSize);
+                    if(chunk.size() > 0)
+                        sink.write(chunk);
+                    failure = null;
+                    break;
+                } catch (RemoteException e) {
+                    failure = e;
+                }
+            }
+            if(failure != null)
+                throw failure;
+            stream.cursor = chunk.size() < chunkSize ? stream.end : chunk.maxKey();
+            entries.addAndGet(chunk.size());
+            chunks.incrementAndGet();
+            bytes.addAndGet(chunk.getDataLength());
+        }
+    }
+}
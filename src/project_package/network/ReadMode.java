@@ -0,0 +1,26 @@
+package project_package.network;
+
+/**
+ * S kojih kopija (vlasnik i njegovih R-1 nasljednika koji drže replike) se čita vrijednost
+ *
+ * @author Iva Tutiš
+ *
+ */
+public enum ReadMode {
+
+    /**
+     * Čita se samo kod vlasnika ključa
+     */
+    PRIMARY,
+
+    /**
+     * Čita se s manje opterećene od dvije nasumično odabrane kopije (opterećenje = zahtjevi ovog čvora u tijeku),
+     * pa se čitanja popularnog ključa raspodijele na R čvorova
+     */
+    LEAST_LOADED,
+
+    /**
+     * Čita se s većine kopija (R/2 + 1) i vraća vrijednost koju ima većina; kod neodlučenog stanja pobjeđuje vlasnik
+     */
+    QUORUM
+}
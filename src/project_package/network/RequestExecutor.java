@@ -0,0 +1,191 @@
+package project_package.network;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Izvršava dolazne zahtjeve jednog čvora (vidi ExecutionMode).
+ * U BOUNDED načinu najviše workers zahtjeva se izvršava istovremeno, a najviše queueCapacity ih čeka u redu;
+ * zahtjev koji ne stane u red ili je u njemu čekao dulje od maxQueueMillis se odbija s BusyException,
+ * pa latencija prihvaćenih zahtjeva ostaje ograničena i kod preopterećenja.
+ * Zahtjev koji se već izvršava na dretvi ovog izvršitelja izvršava ostale zahtjeve na istoj dretvi.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class RequestExecutor {
+
+    public static final int DEFAULT_WORKERS = 8;
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    public static final long DEFAULT_MAX_QUEUE_MILLIS = 1000;
+
+    /**
+     * Dolazni zahtjev
+     *
+     * @param <R> tip odgovora
+     * @param <E> iznimka koju zahtjev baca osim RemoteException (npr. NotResponsibleException)
+     */
+    public interface Request<R, E extends Exception> {
+        R call() throws RemoteException, E;
+    }
+
+    //izvršitelj čiji zahtjev ova dretva trenutno izvršava
+    private static final ThreadLocal<RequestExecutor> running = new ThreadLocal<>();
+
+    private final ExecutionMode mode;
+    private final int workers;
+    private final int queueCapacity;
+    private final long maxQueueNanos;
+    private final ThreadPoolExecutor pool;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    /**
+     * Izvršitelj u DIRECT načinu
+     */
+    public RequestExecutor() {
+        this(ExecutionMode.DIRECT, DEFAULT_WORKERS, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_QUEUE_MILLIS);
+    }
+
+    /**
+     * @param mode
+     * @param workers - broj dretvi koje izvršavaju zahtjeve (BOUNDED)
+     * @param queueCapacity - najviše zahtjeva koji čekaju slobodnu dretvu (BOUNDED)
+     * @param maxQueueMillis - najdulje čekanje u redu, nakon kojeg se zahtjev odbija (BOUNDED)
+     */
+    public RequestExecutor(ExecutionMode mode, int workers, int queueCapacity, long maxQueueMillis) {
+        if(mode == ExecutionMode.BOUNDED && (workers < 1 || queueCapacity < 1))
+            throw new IllegalArgumentException("Workers and queue capacity must be positive");
+        this.mode = mode;
+        this.workers = workers;
+        this.queueCapacity = queueCapacity;
+        this.maxQueueNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueMillis);
+        if(mode == ExecutionMode.BOUNDED) {
+            this.pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), r -> {
+                        Thread thread = new Thread(r, "dht-request");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.prestartAllCoreThreads();
+        } else
+            this.pool = null;
+    }
+
+    /**
+     * Izvrši zahtjev i pričekaj odgovor
+     *
+     * @param <R>
+     * @param <E>
+     * @param request
+     * @return odgovor zahtjeva
+     * @throws BusyException ako je zahtjev odbijen zbog preopterećenja
+     * @throws RemoteException
+     * @throws E
+     */
+    @SuppressWarnings("unchecked")
+    public <R, E extends Exception> R execute(Request<R, E> request) throws RemoteException, E {
+        if(pool == null || running.get() == this) {
+            R reply = request.call();
+            completed.incrementAndGet();
+            return reply;
+        }
+
+        CompletableFuture<R> future = new CompletableFuture<>();
+        long admitted = System.nanoTime();
+        try {
+            pool.execute(() -> {
+                //zahtjev koji je predugo čekao se ne izvršava (pozivatelj je vjerojatno već odustao)
+                if(System.nanoTime() - admitted > maxQueueNanos) {
+                    expired.incrementAndGet();
+                    future.completeExceptionally(new BusyException("Request waited in the queue for more than "
+                            + TimeUnit.NANOSECONDS.toMillis(maxQueueNanos) + " ms"));
+                    return;
+                }
+                running.set(this);
+                try {
+                    future.complete(request.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    running.remove();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new BusyException(queueCapacity + " requests are already waiting");
+        }
+
+        try {
+            R reply = future.get();
+            completed.incrementAndGet();
+            return reply;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if(cause instanceof Error)
+                throw (Error) cause;
+            if(cause instanceof RemoteException)
+                throw (RemoteException) cause;
+            //jedina preostala provjerena iznimka je E
+            throw (E) cause;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while waiting for the request", e);
+        }
+    }
+
+    /**
+     * Zaustavi dretve kad izvrše zahtjeve koji su već u redu (novi zahtjevi se odbijaju)
+     */
+    public void shutdown() {
+        if(pool != null)
+            pool.shutdown();
+    }
+
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return broj zahtjeva koji čekaju u redu
+     */
+    public int getQueued() {
+        return pool == null ? 0 : pool.getQueue().size();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return broj zahtjeva odbijenih jer je red bio pun
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return broj zahtjeva odbijenih jer su predugo čekali u redu
+     */
+    public long getExpired() {
+        return expired.get();
+    }
+}
@@ -0,0 +1,169 @@
+package project_package.network;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streaming scan cijelog prstena.
+ * Prostor identifikatora se dijeli na parallelism jednakih segmenata i svaki segment čita jedna dretva:
+ * nađe vlasnika početka segmenta, od njega čita parove u dijelovima od najviše chunkSize parova
+ * i prelazi na sljedećeg vlasnika dok ne dođe do kraja segmenta.
+ * Pročitani parovi idu u ograničeni red, pa dretve čekaju kad potrošač zaostaje
+ * (klijent u memoriji drži O(parallelism * chunkSize) parova).
+ *
+ * Parovi nisu sortirani po identifikatoru. Scan je slabo konzistentan: parovi koji se sele
+ * tijekom join/leave mogu biti preskočeni ili pročitani dvaput.
+ * Scan koji se ne pročita do kraja treba zatvoriti (close), inače dretve ostaju blokirane.
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti koja se posprema u DHT
+ *
+ */
+public class RingScan<T> implements Iterator<Map.Entry<Long, T>>, AutoCloseable {
+
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    /**
+     * Oznaka kraja segmenta u redu
+     */
+    private static final Object END = new Object();
+
+    /**
+     * Greška dretve segmenta u redu
+     */
+    private static final class Failure {
+        private final Exception error;
+
+        private Failure(Exception error) {
+            this.error = error;
+        }
+    }
+
+    private final Node<T> client;
+    private final int parallelism;
+    private final int chunkSize;
+    private final BlockingQueue<Object> queue;
+
+    private volatile boolean closed = false;
+    private int finishedSegments = 0;
+    private Map.Entry<Long, T> next;
+
+    /**
+     * @param client - čvor preko kojeg se traže vlasnici
+     * @param ringSize - broj identifikatora u prstenu
+     * @param parallelism - broj segmenata koji se čitaju paralelno
+     * @param chunkSize - najviše parova po jednom zahtjevu vlasniku
+     * @param executor - dretve za segmente
+     */
+    RingScan(Node<T> client, long ringSize, int parallelism, int chunkSize, ExecutorService executor) {
+        if(parallelism < 1 || chunkSize < 1)
+            throw new IllegalArgumentException("Parallelism and chunk size must be positive");
+        this.client = client;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.queue = new ArrayBlockingQueue<>(parallelism * chunkSize + parallelism);
+        for(int i=0; i<parallelism; i++) {
+            //segment i je (from, to], a prvi počinje od -1 da uključi identifikator 0
+            long from = ringSize * i / parallelism - 1;
+            long to = ringSize * (i + 1) / parallelism - 1;
+            executor.execute(() -> scanSegment(from, to));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while(next == null) {
+            if(finishedSegments == parallelism || closed)
+                return false;
+            Object item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new IllegalStateException("Scan interrupted", e);
+            }
+            if(item == END)
+                finishedSegments++;
+            else if(item instanceof Failure) {
+                close();
+                throw new IllegalStateException("Scan failed", ((Failure) item).error);
+            } else {
+                @SuppressWarnings("unchecked")
+                Map.Entry<Long, T> entry = (Map.Entry<Long, T>) item;
+                next = entry;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Map.Entry<Long, T> next() {
+        if(!hasNext())
+            throw new NoSuchElementException();
+        Map.Entry<Long, T> entry = next;
+        next = null;
+        return entry;
+    }
+
+    /**
+     * Zaustavi scan (dretve segmenata staju nakon trenutnog dijela)
+     */
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    /**
+     * @return parovi kao Stream; zatvaranje streama zatvara scan
+     */
+    public Stream<Map.Entry<Long, T>> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    //pročitaj segment (from, to] vlasnik po vlasnik, u dijelovima
+    private void scanSegment(long from, long to) {
+        try {
+            long cursor = from;
+            while(cursor < to && !closed) {
+                Node<T> owner = client.findOwner(cursor + 1);
+                long ownerIndex = owner.getIndex();
+                //vlasnik je odgovoran do svog indeksa, a prvi čvor u prstenu i za identifikatore iza zadnjeg čvora
+                long end = ownerIndex > cursor ? Math.min(ownerIndex, to) : to;
+                SortedMap<Long, T> chunk = client.scanChunk(owner, cursor, end, chunkSize);
+                for(Map.Entry<Long, T> entry : chunk.entrySet())
+                    if(!offer(entry))
+                        return;
+                cursor = chunk.size() >= chunkSize ? chunk.lastKey() : end;
+            }
+            offer(END);
+        } catch (Exception e) {
+            offer(new Failure(e));
+        }
+    }
+
+    //stavi u red, ali odustani ako je scan zatvoren
+    private boolean offer(Object item) {
+        try {
+            while(!closed)
+                if(queue.offer(item, 100, TimeUnit.MILLISECONDS))
+                    return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+}
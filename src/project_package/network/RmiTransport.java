@@ -0,0 +1,144 @@
+package project_package.network;
+
+import java.io.IOException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Transport preko Java RMI: svaki zahtjev je jedan blokirajući poziv stuba (argumenti se serijaliziraju Java serijalizacijom,
+ * a RMI poslužuje dolazne konekcije dretvom po konekciji). Future vraćen iz send je već završen.
+ * Handler se objavljuje u RMI registryju pod imenom "transport/" + ime čvora.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class RmiTransport implements Transport {
+
+    public static final String SCHEME = "rmi://";
+
+    /**
+     * Udaljeno sučelje handlera
+     */
+    public interface Endpoint extends Remote {
+        byte[] handle(byte operation, long key, byte[] payload) throws RemoteException, NotResponsibleException;
+    }
+
+    private static final class HandlerEndpoint implements Endpoint {
+        private final Handler handler;
+
+        private HandlerEndpoint(Handler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public byte[] handle(byte operation, long key, byte[] payload) throws RemoteException, NotResponsibleException {
+            return handler.handle(operation, key, payload);
+        }
+    }
+
+    private final String host;
+    private final int registryPort;
+
+    /**
+     * Stubovi po adresi (lookup u registryju samo kod prvog zahtjeva)
+     */
+    private final Map<String, Endpoint> stubs = new ConcurrentHashMap<>();
+
+    private HandlerEndpoint endpoint;
+    private Registry registry;
+    private String boundName;
+
+    public RmiTransport() {
+        this("localhost", Node.DEFAULT_PORT);
+    }
+
+    /**
+     * @param host - host koji se objavljuje u adresi
+     * @param registryPort - port RMI registryja
+     */
+    public RmiTransport(String host, int registryPort) {
+        this.host = host;
+        this.registryPort = registryPort;
+    }
+
+    @Override
+    public synchronized String start(String name, Handler handler) throws IOException {
+        if(endpoint != null)
+            throw new IllegalStateException("Transport is already started");
+        endpoint = new HandlerEndpoint(handler);
+        //u registry ide stub, pa i pozivi iz istog procesa idu preko RMI-ja
+        Endpoint stub = (Endpoint) UnicastRemoteObject.exportObject(endpoint, 0);
+        try {
+            registry = LocateRegistry.createRegistry(registryPort);
+        } catch (Exception e) {
+            registry = LocateRegistry.getRegistry(registryPort);
+        }
+        boundName = "transport/" + name;
+        registry.rebind(boundName, stub);
+        return SCHEME + host + ":" + registryPort + "/" + boundName;
+    }
+
+    @Override
+    public boolean supports(String address) {
+        return address != null && address.startsWith(SCHEME);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> send(String address, byte operation, long key, byte[] payload) {
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        try {
+            future.complete(stub(address).handle(operation, key, payload));
+        } catch (RemoteException | NotResponsibleException e) {
+            //stub čvora koji je prestao primati zahtjeve se ponovno traži kod sljedećeg zahtjeva
+            if(e instanceof RemoteException)
+                stubs.remove(address);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public synchronized void close() {
+        if(endpoint == null)
+            return;
+        try {
+            registry.unbind(boundName);
+        } catch (RemoteException | NotBoundException e) {
+            //već je maknut
+        }
+        try {
+            UnicastRemoteObject.unexportObject(endpoint, true);
+        } catch (RemoteException e) {
+            e.printStackTrace();
+        }
+        endpoint = null;
+        stubs.clear();
+    }
+
+    //adresa: rmi://host:port/ime
+    private Endpoint stub(String address) throws RemoteException {
+        Endpoint stub = stubs.get(address);
+        if(stub != null)
+            return stub;
+        if(!supports(address))
+            throw new RemoteException("Not an RMI address: " + address);
+        String rest = address.substring(SCHEME.length());
+        int slash = rest.indexOf('/');
+        int colon = rest.lastIndexOf(':', slash);
+        try {
+            Registry remote = LocateRegistry.getRegistry(rest.substring(0, colon), Integer.parseInt(rest.substring(colon + 1, slash)));
+            stub = (Endpoint) remote.lookup(rest.substring(slash + 1));
+        } catch (NotBoundException | RuntimeException e) {
+            throw new RemoteException("Can't find " + address, e);
+        }
+        stubs.put(address, stub);
+        return stub;
+    }
+}
@@ -0,0 +1,22 @@
+package project_package.network;
+
+/**
+ * Način održavanja routing tablica u mreži
+ *
+ * @author Iva Tutiš
+ *
+ */
+public enum RoutingMode {
+
+    /**
+     * Nakon svakog join/leave se prolazi cijeli prsten i svim čvorovima se ponovno grade fingeri.
+     * Svaka promjena košta O(N) poziva - samo za male demonstracije.
+     */
+    EAGER,
+
+    /**
+     * Chord stabilizacija: join gradi samo vlastite fingere (O(log² N) poruka),
+     * a stabilize / notify / fix_fingers / check_predecessor se periodično izvršavaju u pozadini.
+     */
+    STABILIZED
+}
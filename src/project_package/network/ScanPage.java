@@ -0,0 +1,69 @@
+package project_package.network;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Jedna stranica range scana: parovi u redoslijedu prstena i token za nastavak.
+ * Token opisuje ostatak intervala kao "početak:broj identifikatora" (heksadecimalno),
+ * pa se scan može nastaviti na bilo kojem čvoru mreže.
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti koja se posprema u DHT
+ *
+ */
+public class ScanPage<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Map.Entry<Long, T>> entries;
+
+    /**
+     * Token za nastavak, null ako je interval pročitan do kraja
+     */
+    private final String continuationToken;
+
+    public ScanPage(List<Map.Entry<Long, T>> entries, String continuationToken) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.continuationToken = continuationToken;
+    }
+
+    public List<Map.Entry<Long, T>> getEntries() {
+        return entries;
+    }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasMore() {
+        return continuationToken != null;
+    }
+
+    /**
+     * @param start - prvi identifikator ostatka intervala
+     * @param count - broj identifikatora u ostatku intervala
+     * @return token
+     */
+    static String token(long start, long count) {
+        return Long.toHexString(start) + ":" + Long.toHexString(count);
+    }
+
+    /**
+     * @param token
+     * @return {početak, broj identifikatora}
+     */
+    static long[] parseToken(String token) {
+        int separator = token.indexOf(':');
+        if(separator < 0)
+            throw new IllegalArgumentException("Invalid continuation token " + token);
+        try {
+            return new long[] {Long.parseLong(token.substring(0, separator), 16),
+                    Long.parseLong(token.substring(separator + 1), 16)};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid continuation token " + token, e);
+        }
+    }
+}
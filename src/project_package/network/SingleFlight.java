@@ -0,0 +1,97 @@
+package project_package.network;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spajanje istovremenih zahtjeva za isti ključ (single-flight): prvi zahtjev se stvarno izvršava,
+ * a zahtjevi koji stignu dok je on u tijeku čekaju i dobiju njegov rezultat (ili grešku).
+ * Zahtjev koji stigne nakon što je prvi završio (ili nakon forget) pokreće novo izvršavanje.
+ *
+ * @author Iva Tutiš
+ * @param <V> tip rezultata
+ *
+ */
+public class SingleFlight<V> {
+
+    /**
+     * Operacija koja se izvršava jednom za sve istovremene zahtjeve
+     *
+     * @param <V> tip rezultata
+     * @param <E> iznimka koju operacija baca
+     */
+    public interface Call<V, E extends Exception> {
+        V call() throws E;
+    }
+
+    private final ConcurrentHashMap<Long, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Izvrši operaciju ili se pridruži onoj koja je za isti ključ već u tijeku
+     *
+     * @param <E>
+     * @param key
+     * @param call
+     * @return rezultat operacije
+     * @throws E
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends Exception> V execute(long key, Call<V, E> call) throws E {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if(existing != null) {
+            coalesced.incrementAndGet();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if(cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                if(cause instanceof Error)
+                    throw (Error) cause;
+                //operacija baca samo E
+                throw (E) cause;
+            }
+        }
+
+        executed.incrementAndGet();
+        try {
+            V result = call.call();
+            flight.complete(result);
+            return result;
+        } catch (Exception | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Zahtjevi za ključ od sada ne čekaju operaciju koja je u tijeku (npr. jer je ključ upravo promijenjen)
+     *
+     * @param key
+     */
+    public void forget(long key) {
+        inFlight.remove(key);
+    }
+
+    /**
+     * @return broj stvarno izvršenih operacija
+     */
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    /**
+     * @return broj zahtjeva koji su dobili rezultat operacije koja je već bila u tijeku
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+}
@@ -0,0 +1,124 @@
+package project_package.network;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pozadinsko održavanje jednog čvora (Chord stabilizacija).
+ * Svaki čvor ima svoj scheduler koji periodično poziva
+ * stabilize(), fixFingers() i checkPredecessor() nad čvorom.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class Stabilizer {
+
+    public static final long DEFAULT_STABILIZE_PERIOD = 500;
+    public static final long DEFAULT_FIX_FINGERS_PERIOD = 100;
+    public static final long DEFAULT_CHECK_PREDECESSOR_PERIOD = 1000;
+
+    /**
+     * Čvor kojeg održavamo
+     */
+    private final Node<?> node;
+
+    /**
+     * Periodi u milisekundama
+     */
+    private long stabilizePeriod = DEFAULT_STABILIZE_PERIOD;
+    private long fixFingersPeriod = DEFAULT_FIX_FINGERS_PERIOD;
+    private long checkPredecessorPeriod = DEFAULT_CHECK_PREDECESSOR_PERIOD;
+
+    /**
+     * Scheduler, null dok održavanje nije pokrenuto
+     */
+    private volatile ScheduledExecutorService scheduler;
+
+    public Stabilizer(Node<?> node) {
+        this.node = node;
+    }
+
+    /**
+     * Pokreni održavanje (ako već nije pokrenuto i čvor nije simuliran)
+     */
+    public void start() {
+        //simulirani čvor održava simulator
+        if(scheduler != null || node.isSimulated())
+            return;
+        synchronized (this) {
+            if(scheduler != null)
+                return;
+            ScheduledExecutorService newScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, node.getName() + "-stabilizer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            newScheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    node.stabilize();
+                } catch (Exception e) {
+                    System.err.println(node.getName() + ": stabilize failed (" + e + ")");
+                }
+            }, stabilizePeriod, stabilizePeriod, TimeUnit.MILLISECONDS);
+            newScheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    node.fixFingers();
+                } catch (Exception e) {
+                    System.err.println(node.getName() + ": fix_fingers failed (" + e + ")");
+                }
+            }, fixFingersPeriod, fixFingersPeriod, TimeUnit.MILLISECONDS);
+            newScheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    node.checkPredecessor();
+                } catch (Exception e) {
+                    System.err.println(node.getName() + ": check_predecessor failed (" + e + ")");
+                }
+            }, checkPredecessorPeriod, checkPredecessorPeriod, TimeUnit.MILLISECONDS);
+            scheduler = newScheduler;
+        }
+    }
+
+    /**
+     * Zaustavi održavanje
+     */
+    public synchronized void stop() {
+        if(scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+
+    /**
+     * Postavi periode održavanja (u milisekundama). Ako je održavanje pokrenuto, ponovno se pokreće.
+     *
+     * @param stabilizePeriod
+     * @param fixFingersPeriod
+     * @param checkPredecessorPeriod
+     */
+    public synchronized void setPeriods(long stabilizePeriod, long fixFingersPeriod, long checkPredecessorPeriod) {
+        this.stabilizePeriod = stabilizePeriod;
+        this.fixFingersPeriod = fixFingersPeriod;
+        this.checkPredecessorPeriod = checkPredecessorPeriod;
+        if(isRunning()) {
+            stop();
+            start();
+        }
+    }
+
+    public long getStabilizePeriod() {
+        return stabilizePeriod;
+    }
+
+    public long getFixFingersPeriod() {
+        return fixFingersPeriod;
+    }
+
+    public long getCheckPredecessorPeriod() {
+        return checkPredecessorPeriod;
+    }
+}
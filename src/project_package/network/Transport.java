@@ -0,0 +1,71 @@
+package project_package.network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transport kojim čvorovi šalju CRUD zahtjeve vlasniku ključa (vrijednosti su kodirane codecom, kao kod *Encoded metoda).
+ * Čvor pokrene transport sa svojim handlerom i objavi adresu; drugi čvorovi svojim transportom šalju zahtjeve na tu adresu.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public interface Transport extends Closeable {
+
+    byte GET = 1;
+    byte PUT = 2;
+    byte DELETE = 3;
+
+    /**
+     * Zastavica operacije: vlasnik ne provjerava je li odgovoran za ključ
+     */
+    byte UNCHECKED = 0x10;
+
+    /**
+     * Obrada zahtjeva koji je stigao na ovaj čvor
+     */
+    interface Handler {
+        /**
+         * @param operation - GET, PUT ili DELETE (s UNCHECKED zastavicom ili bez nje)
+         * @param key
+         * @param payload - kodirana vrijednost (prazno polje ako je operacija nema)
+         * @return kodirana vrijednost ili null
+         */
+        byte[] handle(byte operation, long key, byte[] payload) throws RemoteException, NotResponsibleException;
+    }
+
+    /**
+     * Počni primati zahtjeve
+     *
+     * @param name - ime čvora
+     * @param handler
+     * @return adresa na kojoj drugi čvorovi šalju zahtjeve ovom čvoru
+     * @throws IOException
+     */
+    String start(String name, Handler handler) throws IOException;
+
+    /**
+     * @param address
+     * @return true ako ovaj transport može slati zahtjeve na adresu
+     */
+    boolean supports(String address);
+
+    /**
+     * Pošalji zahtjev čvoru na adresi
+     *
+     * @param address
+     * @param operation
+     * @param key
+     * @param payload - kodirana vrijednost ili null
+     * @return future s odgovorom; završava s NotResponsibleException ili RemoteException ako zahtjev ne uspije
+     */
+    CompletableFuture<byte[]> send(String address, byte operation, long key, byte[] payload);
+
+    /**
+     * Zatvori konekcije i prestani primati zahtjeve
+     */
+    @Override
+    void close();
+}
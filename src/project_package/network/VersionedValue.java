@@ -0,0 +1,42 @@
+package project_package.network;
+
+import java.io.Serializable;
+
+/**
+ * Odgovor vlasnika na čitanje: vrijednost, njezina verzija i smije li je čvor koji čita držati kao kopiju
+ *
+ * @author Iva Tutiš
+ * @param <V> tip vrijednosti (T ili kodirani byte[])
+ *
+ */
+public class VersionedValue<V> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final V value;
+
+    private final long version;
+
+    private final boolean hot;
+
+    public VersionedValue(V value, long version, boolean hot) {
+        this.value = value;
+        this.version = version;
+        this.hot = hot;
+    }
+
+    public V getValue() {
+        return value;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return true ako je ključ popularan kod vlasnika (vlasnik je zapamtio čitatelja i poslat će mu invalidaciju)
+     */
+    public boolean isHot() {
+        return hot;
+    }
+}
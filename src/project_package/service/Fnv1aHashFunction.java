@@ -0,0 +1,32 @@
+package project_package.service;
+
+/**
+ * Brza nekriptografska hash funkcija: 64-bitni FNV-1a nad znakovima stringa,
+ * s miješanjem bitova na kraju (da donji bitovi koje prsten koristi budu dobro raspoređeni).
+ * Ne alocira ništa.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class Fnv1aHashFunction implements HashFunction {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    @Override
+    public long hash(String s) {
+        long h = FNV_OFFSET_BASIS;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            h = (h ^ (c & 0xFF)) * FNV_PRIME;
+            h = (h ^ (c >>> 8)) * FNV_PRIME;
+        }
+        //fmix64 iz MurmurHash3
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,19 @@
+package project_package.service;
+
+/**
+ * Sučelje za hash funkciju koja ključ (String) preslikava u 64-bitni identifikator.
+ * KeyService od rezultata uzima onoliko donjih bitova koliko ima prsten.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public interface HashFunction {
+
+    /**
+     * Hashiraj string s
+     *
+     * @param s
+     * @return 64-bitni hash
+     */
+    public long hash(String s);
+}
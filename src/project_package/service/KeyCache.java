@@ -0,0 +1,62 @@
+package project_package.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ograničeni (LRU) cache koji pamti hash za često korištene ključeve.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class KeyCache {
+
+    private final LinkedHashMap<String, Long> cache;
+
+    /**
+     * @param capacity - maksimalan broj ključeva u cacheu
+     */
+    public KeyCache(final int capacity) {
+        cache = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Vrati hash ključa, ako ga nema u cacheu izračunaj ga danom hash funkcijom i zapamti
+     *
+     * @param key
+     * @param hashFunction
+     * @return hash ključa
+     */
+    public long hash(String key, HashFunction hashFunction) {
+        Long cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if(cached != null)
+            return cached;
+        long hash = hashFunction.hash(key);
+        synchronized (cache) {
+            cache.put(key, hash);
+        }
+        return hash;
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+}
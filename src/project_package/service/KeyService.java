@@ -1,77 +1,119 @@
 package project_package.service;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-
 /**
- * Klasa koja ključ i omogućava usporedbu ključeva i veze njih i indeksa čvorova
+ * Klasa koja ključ i omogućava usporedbu ključeva i veze njih i indeksa čvorova.
+ * Indeksi čvorova i ključeva su primitivni long identifikatori u prstenu veličine 2^m,
+ * gdje je m = log2(maxNumberOfNodesInNetwork).
+ *
  * @author Iva Tutiš
  *
  */
 public class KeyService {
 
+    /**
+     * Hash funkcija kojom se ključevi preslikavaju u prsten
+     */
+    private static volatile HashFunction hashFunction = new Sha1HashFunction();
+
+    /**
+     * Opcionalni cache ključ -> hash (null ako je isključen)
+     */
+    private static volatile KeyCache cache = null;
+
     /**
      * Generiraj indeks čvora ovisno o imenu ključa i # mogućih ključeva.
      * Ovisno o prostoru ključa, ključ može/ ne mora biti unikatan.
      *
      * @param keyName
-     * @param maxNumberOfNodesInNetwork
-     * @return
+     * @param maxNumberOfNodesInNetwork - veličina prstena (potencija broja 2)
+     * @return identifikator u intervalu [0, maxNumberOfNodesInNetwork)
      */
-    public static String generateNodeIndex(String keyName, int maxNumberOfNodesInNetwork) {
+    public static long generateNodeIndex(String keyName, int maxNumberOfNodesInNetwork) {
+        return hashString(keyName) & ringMask(maxNumberOfNodesInNetwork);
+    }
 
-        String hashedKeyName = hashString(keyName);
+    /**
+     * Maska koja odsijeca identifikator na m = log2(maxNumberOfNodesInNetwork) bitova
+     *
+     * @param maxNumberOfNodesInNetwork
+     * @return maska oblika 2^m - 1
+     */
+    public static long ringMask(int maxNumberOfNodesInNetwork) {
+        int bits = 31 - Integer.numberOfLeadingZeros(maxNumberOfNodesInNetwork);
+        return (1L << bits) - 1;
+    }
 
+    /**
+     * Udaljenost od indexFrom do indexTo u smjeru kazaljke na satu
+     *
+     * @param indexFrom
+     * @param indexTo
+     * @param maxNumberOfNodesInNetwork
+     * @return (indexTo - indexFrom) mod 2^m
+     */
+    public static long distance(long indexFrom, long indexTo, int maxNumberOfNodesInNetwork) {
+        return (indexTo - indexFrom) & ringMask(maxNumberOfNodesInNetwork);
+    }
 
-        int characters = (int) (Math.log(maxNumberOfNodesInNetwork)/Math.log(2));
-        characters = Math.min(characters, hashedKeyName.length());
+    /**
+     * Odluči je li ključ key između indexFrom i indexTo u prstenu
+     * @param key -> KEY
+     * @param indexFrom -> FROM
+     * @param indexTo -> TO
+     * @return true ako key element u intervalu (indexFrom, indexTo]
+     */
+    public static boolean isKeyInbetween(long key, long indexFrom, long indexTo) {
+        //provjera je li u intervalu
+        if(indexFrom > indexTo) {
+            return key > indexFrom || key <= indexTo;
+        }else if(indexFrom < indexTo)
+            return key > indexFrom && key <= indexTo;
+        else
+            return true;
+    }
 
+    /**
+     * Postavi hash funkciju kojom se generiraju indeksi (defaultno SHA1).
+     * Cache ključeva se pritom briše.
+     *
+     * @param newHashFunction
+     */
+    public static void setHashFunction(HashFunction newHashFunction) {
+        hashFunction = newHashFunction;
+        KeyCache currentCache = cache;
+        if(currentCache != null)
+            currentCache.clear();
+    }
 
-        return hashedKeyName.substring(hashedKeyName.length()-characters-1);
+    public static HashFunction getHashFunction() {
+        return hashFunction;
+    }
 
+    /**
+     * Uključi ograničeni cache ključ -> hash za često korištene ključeve
+     *
+     * @param capacity - maksimalan broj ključeva u cacheu
+     */
+    public static void enableCache(int capacity) {
+        cache = new KeyCache(capacity);
     }
 
     /**
-     * Odluči je li ključ keyString između IndexFrom i IndexTo u prstenu
-     * @param keyString -> KEY
-     * @param IndexFrom -> FROM
-     * @param IndexTo -> TO
-     * @return true ako keyString element u intervalu (IndexFrom, IndexTo]
+     * Isključi cache ključeva
      */
-    public static boolean isKeyInbetween(String keyString, String IndexFrom, String IndexTo) {
-        //iz Stringa u Float u float
-        float key = Float.parseFloat(keyString);
-        float from = Float.parseFloat(IndexFrom);
-        float to = Float.parseFloat(IndexTo);
-        //provjera je li u intervalu
-        if(from > to) {
-            return key > from || key <= to;
-        }else if(from < to)
-            return key > from && key <= to;
-        else
-            return true;
+    public static void disableCache() {
+        cache = null;
     }
 
     /**
-     * Generira SHA1-hash ulaznog stringa s
+     * Hashira string s trenutnom hash funkcijom (kroz cache ako je uključen)
      * @param s
-     * @return String koji predstavlja SHA1-hash u bazi 2.
+     * @return 64-bitni hash
      */
-    private static String hashString(String s) {
-        String resultString = null;
-        //hashiraj string algoritmom SHA1
-        try {
-            MessageDigest mDigest = MessageDigest.getInstance("SHA1");
-            byte[] result = mDigest.digest(s.getBytes());
-            StringBuffer sb = new StringBuffer();
-            for (int i = 0; i < result.length; i++) {
-                sb.append(Integer.toString(result[i], 2).substring(1));
-            }
-            resultString = sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            e.printStackTrace();
-        }
-        //vrati vrijednost
-        return resultString;
+    private static long hashString(String s) {
+        KeyCache currentCache = cache;
+        if(currentCache != null)
+            return currentCache.hash(s, hashFunction);
+        return hashFunction.hash(s);
     }
 }
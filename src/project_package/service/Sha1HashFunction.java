@@ -0,0 +1,38 @@
+package project_package.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA1 hash funkcija (kompatibilna s originalnim Chord-om).
+ * Svaka dretva ima svoj MessageDigest pa se on ne stvara pri svakom pozivu.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class Sha1HashFunction implements HashFunction {
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA1 is not available", e);
+        }
+    });
+
+    /**
+     * @param s
+     * @return zadnjih 64 bita SHA1-hasha kao long
+     */
+    @Override
+    public long hash(String s) {
+        MessageDigest mDigest = DIGEST.get();
+        byte[] digest = mDigest.digest(s.getBytes(StandardCharsets.UTF_8));
+        long result = 0;
+        for (int i = digest.length - 8; i < digest.length; i++) {
+            result = (result << 8) | (digest[i] & 0xFF);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,115 @@
+package project_package.simulation;
+
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Diskretni scheduler događaja s virtualnim vremenom (u milisekundama).
+ * Događaji se izvršavaju jedan po jedan u dretvi koja pozove run, po vremenu pa po redoslijedu zakazivanja.
+ * Vrijeme skače na trenutak sljedećeg događaja, pa simulacija ne čeka stvarno vrijeme.
+ * Nije thread-safe: događaje zakazuju samo događaji i dretva koja vodi simulaciju.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class EventScheduler {
+
+    private static final class Event implements Comparable<Event> {
+        private final double time;
+        private final long sequence;
+        private final Runnable action;
+
+        private Event(double time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Double.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final PriorityQueue<Event> queue = new PriorityQueue<>();
+    private double now = 0;
+    private long nextSequence = 0;
+    private long executed = 0;
+
+    /**
+     * @return trenutno virtualno vrijeme
+     */
+    public double now() {
+        return now;
+    }
+
+    /**
+     * @param delay - za koliko milisekundi virtualnog vremena
+     * @param action
+     */
+    public void schedule(double delay, Runnable action) {
+        if(delay < 0)
+            throw new IllegalArgumentException("Delay can't be negative");
+        queue.add(new Event(now + delay, nextSequence++, action));
+    }
+
+    /**
+     * Periodični događaj: prvi put nakon delay, a zatim svakih period dok action vraća true
+     *
+     * @param delay
+     * @param period
+     * @param action
+     */
+    public void schedulePeriodic(double delay, double period, BooleanSupplier action) {
+        schedule(delay, () -> {
+            if(action.getAsBoolean())
+                schedulePeriodic(period, period, action);
+        });
+    }
+
+    /**
+     * Izvrši sve događaje do trenutka time (uključivo), pa pomakni vrijeme na time
+     *
+     * @param time
+     */
+    public void runUntil(double time) {
+        while(!queue.isEmpty() && queue.peek().time <= time)
+            runNext();
+        now = Math.max(now, time);
+    }
+
+    /**
+     * Izvršavaj događaje dok uvjet ne bude ispunjen ili vrijeme ne dođe do deadline
+     *
+     * @param condition
+     * @param deadline
+     * @return true ako je uvjet ispunjen
+     */
+    public boolean runUntil(BooleanSupplier condition, double deadline) {
+        while(!condition.getAsBoolean()) {
+            if(queue.isEmpty() || queue.peek().time > deadline)
+                return false;
+            runNext();
+        }
+        return true;
+    }
+
+    public int getPending() {
+        return queue.size();
+    }
+
+    /**
+     * @return broj izvršenih događaja
+     */
+    public long getExecuted() {
+        return executed;
+    }
+
+    private void runNext() {
+        Event event = queue.poll();
+        now = event.time;
+        executed++;
+        event.action.run();
+    }
+}
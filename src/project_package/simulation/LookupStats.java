@@ -0,0 +1,84 @@
+package project_package.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Rezultati lookupova u simulaciji
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class LookupStats {
+
+    private int lookups = 0;
+    private int failed = 0;
+    private int wrongOwner = 0;
+    private long hops = 0;
+    private long timeouts = 0;
+    private double[] latencies = new double[64];
+
+    void recordSuccess(double latency, int hops, boolean correct) {
+        if(lookups == latencies.length)
+            latencies = Arrays.copyOf(latencies, lookups * 2);
+        latencies[lookups++] = latency;
+        this.hops += hops;
+        if(!correct)
+            wrongOwner++;
+    }
+
+    void recordFailure() {
+        failed++;
+    }
+
+    void recordTimeout() {
+        timeouts++;
+    }
+
+    /**
+     * @return broj lookupova koji su vratili vlasnika
+     */
+    public int getLookups() {
+        return lookups;
+    }
+
+    /**
+     * @return broj lookupova koji nisu uspjeli (timeout nakon svih pokušaja ili previše skokova)
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return broj lookupova koji su vratili čvor koji nije stvarni vlasnik ključa
+     */
+    public int getWrongOwner() {
+        return wrongOwner;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public double getAverageHops() {
+        return lookups == 0 ? 0 : (double) hops / lookups;
+    }
+
+    /**
+     * @param percentile - između 0 i 100
+     * @return latencija uspješnih lookupova u milisekundama virtualnog vremena
+     */
+    public double getLatencyPercentile(double percentile) {
+        if(lookups == 0)
+            return 0;
+        double[] sorted = Arrays.copyOf(latencies, lookups);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(lookups - 1, Math.floor(percentile / 100 * (lookups - 1)))];
+    }
+
+    @Override
+    public String toString() {
+        return lookups + " lookups (" + failed + " failed, " + wrongOwner + " wrong owner, " + timeouts + " timeouts), "
+                + String.format("%.2f", getAverageHops()) + " hops, latency p50 " + String.format("%.1f", getLatencyPercentile(50))
+                + " ms, p99 " + String.format("%.1f", getLatencyPercentile(99)) + " ms";
+    }
+}
@@ -0,0 +1,132 @@
+package project_package.simulation;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Simulirana mreža između čvorova.
+ * Poruka stiže nakon latencije (minLatency + slučajni jitter) i izvršava se kao događaj schedulera u trenutku dolaska.
+ * Poruka se gubi s vjerojatnošću lossRate, ili ako su pošiljatelj i primatelj u različitim particijama.
+ * Poruka koju čvor šalje sam sebi stiže odmah i ne gubi se.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class MessageBus {
+
+    public static final double DEFAULT_MIN_LATENCY = 1;
+    public static final double DEFAULT_JITTER = 1;
+
+    private final EventScheduler scheduler;
+    private final Random random;
+
+    private double minLatency = DEFAULT_MIN_LATENCY;
+    private double jitter = DEFAULT_JITTER;
+    private double lossRate = 0;
+
+    /**
+     * Particija čvora (čvorovi kojih nema su u particiji 0)
+     */
+    private final Map<Object, Integer> partitions = new HashMap<>();
+    private int nextPartition = 0;
+
+    private long sent = 0;
+    private long lost = 0;
+    private long partitioned = 0;
+
+    /**
+     * @param scheduler
+     * @param random - izvor slučajnosti (s fiksnim seedom simulacija je ponovljiva)
+     */
+    public MessageBus(EventScheduler scheduler, Random random) {
+        this.scheduler = scheduler;
+        this.random = random;
+    }
+
+    /**
+     * Pošalji poruku
+     *
+     * @param from
+     * @param to
+     * @param delivery - što se događa kad poruka stigne
+     * @return false ako se poruka izgubila (pošiljatelj to saznaje samo timeoutom)
+     */
+    public boolean send(Object from, Object to, Runnable delivery) {
+        sent++;
+        if(from == to) {
+            scheduler.schedule(0, delivery);
+            return true;
+        }
+        if(!isReachable(from, to)) {
+            partitioned++;
+            return false;
+        }
+        if(lossRate > 0 && random.nextDouble() < lossRate) {
+            lost++;
+            return false;
+        }
+        scheduler.schedule(minLatency + (jitter > 0 ? random.nextDouble() * jitter : 0), delivery);
+        return true;
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return true ako su čvorovi u istoj particiji
+     */
+    public boolean isReachable(Object from, Object to) {
+        return partitions.getOrDefault(from, 0).equals(partitions.getOrDefault(to, 0));
+    }
+
+    /**
+     * Odvoji čvorove u novu particiju (poruke između njih i ostatka mreže se gube)
+     *
+     * @param nodes
+     */
+    public void partition(Collection<?> nodes) {
+        int partition = ++nextPartition;
+        for(Object node : nodes)
+            partitions.put(node, partition);
+    }
+
+    /**
+     * Spoji sve particije
+     */
+    public void heal() {
+        partitions.clear();
+    }
+
+    /**
+     * @param minLatency - najmanja latencija poruke u milisekundama
+     * @param jitter - najveće slučajno dodatno kašnjenje u milisekundama
+     */
+    public void setLatency(double minLatency, double jitter) {
+        this.minLatency = minLatency;
+        this.jitter = jitter;
+    }
+
+    /**
+     * @param lossRate - vjerojatnost da se poruka izgubi
+     */
+    public void setLossRate(double lossRate) {
+        this.lossRate = lossRate;
+    }
+
+    public double getLossRate() {
+        return lossRate;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getLost() {
+        return lost;
+    }
+
+    public long getPartitioned() {
+        return partitioned;
+    }
+}
@@ -0,0 +1,453 @@
+package project_package.simulation;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import project_package.network.LookupStep;
+import project_package.network.Node;
+import project_package.network.Stabilizer;
+import project_package.service.KeyService;
+
+/**
+ * Simulacija velikog prstena u jednom JVM-u, u virtualnom vremenu.
+ * Čvorovi su pravi Node objekti u simuliranom načinu (bez RMI-ja i bez dretvi za održavanje).
+ * Održavanje (stabilize, fixFingers, checkPredecessor) i lookupovi se izvršavaju kao događaji: svaki krug
+ * održavanja je poruka čvora susjedu, a svaki korak iterativnog lookupa zahtjev i odgovor preko MessageBusa,
+ * pa na njih djeluju latencija, gubitak poruka i particije. Pozivi unutar jednog kruga održavanja
+ * te join i leave izvršavaju se odmah, izravno nad čvorovima.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class Simulation {
+
+    public static final double DEFAULT_TIMEOUT = 200;
+    public static final int MAX_LOOKUP_ATTEMPTS = 3;
+    public static final int MAX_LOOKUP_HOPS = 64;
+
+    /**
+     * Veličina prstena (kao u Node)
+     */
+    private static final int N = 1048576;
+
+    /**
+     * Jedan krug održavanja čvora
+     */
+    private interface Maintenance {
+        void run(Node<String> node) throws RemoteException;
+    }
+
+    private final Random random;
+    private final EventScheduler scheduler = new EventScheduler();
+    private final MessageBus bus;
+
+    /**
+     * Čvorovi koji su trenutno u prstenu, po indeksu (stvarno stanje s kojim se uspoređuju pokazivači čvorova)
+     */
+    private final TreeMap<Long, Node<String>> ring = new TreeMap<>();
+
+    /**
+     * Isti čvorovi u listi, za nasumičan odabir
+     */
+    private final List<Node<String>> members = new ArrayList<>();
+    private final Map<Node<String>, Integer> positions = new HashMap<>();
+
+    private double stabilizePeriod = Stabilizer.DEFAULT_STABILIZE_PERIOD;
+    private double fixFingersPeriod = Stabilizer.DEFAULT_FIX_FINGERS_PERIOD;
+    private double checkPredecessorPeriod = Stabilizer.DEFAULT_CHECK_PREDECESSOR_PERIOD;
+    private double timeout = DEFAULT_TIMEOUT;
+
+    private int nextName = 0;
+    private long nextRequest = 0;
+    private long rounds = 0;
+    private long lostRounds = 0;
+    private long failedRounds = 0;
+
+    /**
+     * @param seed - ista simulacija s istim seedom daje iste rezultate
+     */
+    public Simulation(long seed) {
+        this.random = new Random(seed);
+        this.bus = new MessageBus(scheduler, random);
+    }
+
+    //-------------------------------------------------RING------------------------------------------------
+
+    /**
+     * Izgradi već stabilan prsten od n čvorova (nasljednici, prethodnici i fingeri su točni) i pokreni održavanje
+     *
+     * @param n
+     * @return čvorovi prstena
+     */
+    public List<Node<String>> createRing(int n) {
+        List<Node<String>> created = new ArrayList<>(n);
+        try {
+            for(int i=0; i<n; i++) {
+                Node<String> node = newNode();
+                ring.put(node.getIndex(), node);
+                created.add(node);
+            }
+            for(Node<String> node : ring.values()) {
+                node.setSuccessor(successorOf(node.getIndex()));
+                node.setPredecessor(predecessorOf(node.getIndex()));
+                node.initFingers(ring);
+            }
+        } catch (RemoteException e) {
+            throw new IllegalStateException(e);
+        }
+        for(Node<String> node : created) {
+            add(node);
+            startMaintenance(node);
+        }
+        return created;
+    }
+
+    /**
+     * Novi čvor se pridruži preko nasumičnog čvora prstena
+     *
+     * @return novi čvor
+     */
+    public Node<String> join() {
+        Node<String> bootstrap = randomMember();
+        Node<String> node = newNode();
+        node.joinNetworkWithNode(bootstrap);
+        try {
+            ring.put(node.getIndex(), node);
+        } catch (RemoteException e) {
+            throw new IllegalStateException(e);
+        }
+        add(node);
+        startMaintenance(node);
+        return node;
+    }
+
+    /**
+     * Čvor napusti prsten (njegovo održavanje prestaje)
+     *
+     * @param node
+     */
+    public void leave(Node<String> node) {
+        if(!remove(node))
+            return;
+        node.leaveCurrentNetwork();
+    }
+
+    /**
+     * @return nasumičan čvor prstena
+     */
+    public Node<String> randomMember() {
+        return members.get(random.nextInt(members.size()));
+    }
+
+    public List<Node<String>> getMembers() {
+        return new ArrayList<>(members);
+    }
+
+    //-------------------------------------------------FAULTS----------------------------------------------
+
+    /**
+     * Odvoji nasumični dio čvorova u particiju
+     *
+     * @param fraction - udio čvorova u novoj particiji
+     * @return odvojeni čvorovi
+     */
+    public List<Node<String>> partition(double fraction) {
+        List<Node<String>> separated = new ArrayList<>();
+        for(Node<String> node : members)
+            if(random.nextDouble() < fraction)
+                separated.add(node);
+        bus.partition(separated);
+        return separated;
+    }
+
+    public void heal() {
+        bus.heal();
+    }
+
+    //-------------------------------------------------RUNNING---------------------------------------------
+
+    /**
+     * Pusti simulaciju da radi (održavanje) duration milisekundi virtualnog vremena
+     *
+     * @param duration
+     */
+    public void run(double duration) {
+        scheduler.runUntil(scheduler.now() + duration);
+    }
+
+    /**
+     * Pokreni count lookupova nasumičnih ključeva s nasumičnih čvorova, jedan svakih interval milisekundi,
+     * i pričekaj da svi završe (održavanje za to vrijeme radi dalje)
+     *
+     * @param count
+     * @param interval
+     * @return rezultati
+     */
+    public LookupStats runLookups(int count, double interval) {
+        LookupStats stats = new LookupStats();
+        int[] finished = {0};
+        for(int i=0; i<count; i++)
+            scheduler.schedule(i * interval, () -> lookup(randomMember(), random.nextInt(N), stats, () -> finished[0]++));
+        scheduler.runUntil(() -> finished[0] == count, Double.MAX_VALUE);
+        return stats;
+    }
+
+    /**
+     * Iterativni lookup preko MessageBusa; izgubljen zahtjev ili odgovor se ponavlja nakon timeouta
+     *
+     * @param client - čvor koji traži vlasnika
+     * @param key
+     * @param stats - ovdje se bilježi rezultat
+     * @param done - poziva se kad lookup završi (uspješno ili ne)
+     */
+    public void lookup(Node<String> client, long key, LookupStats stats, Runnable done) {
+        new Lookup(client, key, stats, done).ask(client);
+    }
+
+    /**
+     * @return udio čvorova prstena čiji je nasljednik stvarni nasljednik
+     */
+    public double getSuccessorAccuracy() {
+        int correct = 0;
+        try {
+            for(Node<String> node : members)
+                if(node.getSuccessor() == successorOf(node.getIndex()))
+                    correct++;
+        } catch (RemoteException e) {
+            throw new IllegalStateException(e);
+        }
+        return members.isEmpty() ? 1 : (double) correct / members.size();
+    }
+
+    /**
+     * @return udio čvorova prstena čiji je prethodnik stvarni prethodnik
+     */
+    public double getPredecessorAccuracy() {
+        int correct = 0;
+        try {
+            for(Node<String> node : members)
+                if(node.getPredecessor() == predecessorOf(node.getIndex()))
+                    correct++;
+        } catch (RemoteException e) {
+            throw new IllegalStateException(e);
+        }
+        return members.isEmpty() ? 1 : (double) correct / members.size();
+    }
+
+    /**
+     * Periodi održavanja u milisekundama virtualnog vremena (za čvorove koji se stvore nakon poziva)
+     *
+     * @param stabilizePeriod
+     * @param fixFingersPeriod
+     * @param checkPredecessorPeriod
+     */
+    public void setMaintenancePeriods(double stabilizePeriod, double fixFingersPeriod, double checkPredecessorPeriod) {
+        this.stabilizePeriod = stabilizePeriod;
+        this.fixFingersPeriod = fixFingersPeriod;
+        this.checkPredecessorPeriod = checkPredecessorPeriod;
+    }
+
+    /**
+     * @param timeout - nakon koliko milisekundi se zahtjev lookupa bez odgovora ponavlja
+     */
+    public void setTimeout(double timeout) {
+        this.timeout = timeout;
+    }
+
+    public EventScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public MessageBus getBus() {
+        return bus;
+    }
+
+    public long getMaintenanceRounds() {
+        return rounds;
+    }
+
+    /**
+     * @return krugovi održavanja čija se poruka izgubila
+     */
+    public long getLostRounds() {
+        return lostRounds;
+    }
+
+    /**
+     * @return krugovi održavanja koji su završili greškom
+     */
+    public long getFailedRounds() {
+        return failedRounds;
+    }
+
+    //-------------------------------------------------HELPERS---------------------------------------------
+
+    //simulirani čvor s imenom čiji indeks još nije zauzet
+    private Node<String> newNode() {
+        boolean simulated = Node.isDefaultSimulated();
+        Node.setDefaultSimulated(true);
+        try {
+            String name;
+            do {
+                name = "sim" + nextName++;
+            } while(ring.containsKey(KeyService.generateNodeIndex(name, N)));
+            return new Node<>(name);
+        } catch (RemoteException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            Node.setDefaultSimulated(simulated);
+        }
+    }
+
+    private void add(Node<String> node) {
+        positions.put(node, members.size());
+        members.add(node);
+    }
+
+    //makni čvor iz prstena (zadnji čvor liste dolazi na njegovo mjesto)
+    private boolean remove(Node<String> node) {
+        Integer position = positions.remove(node);
+        if(position == null)
+            return false;
+        Node<String> last = members.remove(members.size() - 1);
+        if(last != node) {
+            members.set(position, last);
+            positions.put(last, position);
+        }
+        try {
+            ring.remove(node.getIndex());
+        } catch (RemoteException e) {
+            throw new IllegalStateException(e);
+        }
+        return true;
+    }
+
+    private Node<String> successorOf(long index) {
+        Map.Entry<Long, Node<String>> entry = ring.higherEntry(index);
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    private Node<String> predecessorOf(long index) {
+        Map.Entry<Long, Node<String>> entry = ring.lowerEntry(index);
+        return (entry != null ? entry : ring.lastEntry()).getValue();
+    }
+
+    //stvarni vlasnik ključa
+    private Node<String> ownerOf(long key) {
+        Map.Entry<Long, Node<String>> entry = ring.ceilingEntry(key);
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    //krugovi održavanja počinju u nasumičnom trenutku perioda, da ne budu svi u istom trenutku
+    private void startMaintenance(Node<String> node) {
+        scheduler.schedulePeriodic(random.nextDouble() * stabilizePeriod, stabilizePeriod,
+                () -> round(node, false, Node::stabilize));
+        scheduler.schedulePeriodic(random.nextDouble() * fixFingersPeriod, fixFingersPeriod,
+                () -> round(node, false, Node::fixFingers));
+        scheduler.schedulePeriodic(random.nextDouble() * checkPredecessorPeriod, checkPredecessorPeriod,
+                () -> round(node, true, Node::checkPredecessor));
+    }
+
+    //krug održavanja je poruka nasljedniku (ili prethodniku); vraća false kad čvor napusti prsten
+    private boolean round(Node<String> node, boolean toPredecessor, Maintenance maintenance) {
+        if(!positions.containsKey(node))
+            return false;
+        rounds++;
+        Node<String> neighbour;
+        try {
+            neighbour = toPredecessor ? node.getPredecessor() : node.getSuccessor();
+        } catch (RemoteException e) {
+            failedRounds++;
+            return true;
+        }
+        boolean delivered = bus.send(node, neighbour != null ? neighbour : node, () -> {
+            try {
+                maintenance.run(node);
+            } catch (RemoteException | RuntimeException e) {
+                failedRounds++;
+            }
+        });
+        if(!delivered)
+            lostRounds++;
+        return true;
+    }
+
+    /**
+     * Iterativni lookup u tijeku
+     */
+    private final class Lookup {
+        private final Node<String> client;
+        private final long key;
+        private final LookupStats stats;
+        private final Runnable done;
+        private final double start = scheduler.now();
+        private long request;
+        private int hops = 0;
+        private int attempts = 0;
+        private boolean finished = false;
+
+        private Lookup(Node<String> client, long key, LookupStats stats, Runnable done) {
+            this.client = client;
+            this.key = key;
+            this.stats = stats;
+            this.done = done;
+        }
+
+        //pitaj target za sljedeći korak (odgovor ide natrag klijentu)
+        private void ask(Node<String> target) {
+            long id = ++nextRequest;
+            request = id;
+            bus.send(client, target, () -> {
+                LookupStep<String> step;
+                try {
+                    step = target.nextLookupStep(key);
+                } catch (RemoteException e) {
+                    return;
+                }
+                bus.send(target, client, () -> reply(id, target, step));
+            });
+            scheduler.schedule(timeout, () -> timeout(id, target));
+        }
+
+        private void reply(long id, Node<String> target, LookupStep<String> step) {
+            if(finished || id != request)
+                return;
+            attempts = 0;
+            if(target != client)
+                hops++;
+            if(step.isFinal())
+                finish(step.getNode());
+            else if(hops >= MAX_LOOKUP_HOPS)
+                fail();
+            else
+                ask(step.getNode());
+        }
+
+        private void timeout(long id, Node<String> target) {
+            if(finished || id != request)
+                return;
+            stats.recordTimeout();
+            if(++attempts >= MAX_LOOKUP_ATTEMPTS)
+                fail();
+            else
+                ask(target);
+        }
+
+        private void finish(Node<String> owner) {
+            finished = true;
+            stats.recordSuccess(scheduler.now() - start, hops, owner == ownerOf(key));
+            done.run();
+        }
+
+        private void fail() {
+            finished = true;
+            stats.recordFailure();
+            done.run();
+        }
+    }
+}
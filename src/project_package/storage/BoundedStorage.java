@@ -0,0 +1,394 @@
+package project_package.storage;
+
+import java.io.Closeable;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Spremište s limitom broja parova i/ili bajtova (za cache način rada).
+ * Kad novi par ne stane, politika izbacivanja (LRU, približni LFU, ...) bira parove koji se izbacuju.
+ * Parovi mogu imati TTL: istekli par se briše kad ga netko pročita (lazy), a pozadinska dretva
+ * periodično briše parove kojima je istekao TTL.
+ *
+ * Veličina para je procjena (objekt u mapi + procjena veličine vrijednosti), pa je računanje jeftino.
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti
+ */
+public class BoundedStorage<T> extends Storage<T> implements Closeable {
+
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    public static final long DEFAULT_EXPIRY_PERIOD = 1000;
+
+    /**
+     * Procjena memorije jednog para bez same vrijednosti (čvor skip liste, Long ključ, metapodaci)
+     */
+    private static final long ENTRY_OVERHEAD = 96;
+
+    /**
+     * Metapodaci jednog para
+     */
+    private static final class Meta {
+        private final long bytes;
+        private final long expiresAt;
+
+        private Meta(long bytes, long expiresAt) {
+            this.bytes = bytes;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Trenutak isteka para, sortirano po vremenu
+     */
+    private static final class Expiry implements Comparable<Expiry> {
+        private final long expiresAt;
+        private final long key;
+
+        private Expiry(long expiresAt, long key) {
+            this.expiresAt = expiresAt;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(Expiry other) {
+            int byTime = Long.compare(expiresAt, other.expiresAt);
+            return byTime != 0 ? byTime : Long.compare(key, other.key);
+        }
+    }
+
+    private final long maxEntries;
+    private final long maxBytes;
+    private final EvictionPolicy policy;
+    private volatile ToLongFunction<? super T> sizeEstimator = BoundedStorage::estimateSize;
+    private volatile long defaultTtl = 0;
+    private volatile long expiryPeriod = DEFAULT_EXPIRY_PERIOD;
+
+    private final ConcurrentHashMap<Long, Meta> metas = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Expiry> expiries = new ConcurrentSkipListSet<>();
+    private long usedBytes = 0;
+
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    private ScheduledExecutorService expirer;
+
+    /**
+     * @param maxEntries - maksimalan broj parova (ili UNLIMITED)
+     * @param maxBytes - maksimalna procijenjena memorija (ili UNLIMITED)
+     * @param policy - politika izbacivanja
+     */
+    public BoundedStorage(long maxEntries, long maxBytes, EvictionPolicy policy) {
+        this(maxEntries, maxBytes, policy, Codecs.java());
+    }
+
+    /**
+     * @param maxEntries - maksimalan broj parova (ili UNLIMITED)
+     * @param maxBytes - maksimalna procijenjena memorija (ili UNLIMITED)
+     * @param policy - politika izbacivanja
+     * @param codec - codec za *Encoded metode (isti kao codec čvora)
+     */
+    public BoundedStorage(long maxEntries, long maxBytes, EvictionPolicy policy, ValueCodec<T> codec) {
+        super(true, codec);
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.policy = policy;
+    }
+
+    //-------------------------------------------------STORAGE API-----------------------------------------
+
+    @Override
+    public T getStored(long key) throws RemoteException {
+        T value = super.getStored(key);
+        if(value == null)
+            return null;
+        Meta meta = metas.get(key);
+        if(meta != null && isExpired(meta, System.currentTimeMillis())) {
+            expire(key, meta);
+            return null;
+        }
+        policy.recordAccess(key);
+        return value;
+    }
+
+    @Override
+    public void addStored(long key, T value) throws RemoteException {
+        addStored(key, value, defaultTtl);
+    }
+
+    /**
+     * Add/update vrijednosti na ključ s vremenom života
+     *
+     * @param key
+     * @param value
+     * @param ttl - vrijeme života u milisekundama (0 za neograničeno)
+     * @throws RemoteException
+     */
+    public void addStored(long key, T value, long ttl) throws RemoteException {
+        long bytes = ENTRY_OVERHEAD + sizeEstimator.applyAsLong(value);
+        if(bytes > maxBytes || maxEntries < 1)
+            throw new StorageFullException("Value of ~" + bytes + " bytes does not fit into the storage limit");
+        long expiresAt = ttl > 0 ? System.currentTimeMillis() + ttl : 0;
+        synchronized (this) {
+            //postojeći par se mijenja na mjestu: čitatelji ga ne vide nestati, a politika zadrži njegovu povijest
+            Meta old = metas.get(key);
+            while((metas.size() + (old == null ? 1 : 0) > maxEntries || usedBytes - (old == null ? 0 : old.bytes) + bytes > maxBytes)
+                    && !policy.isEmpty()) {
+                long victim = policy.victim();
+                if(victim == key) {
+                    //politika je izabrala baš ovaj par: stara vrijednost se zaboravi, a nova je prepiše
+                    forget(key);
+                    old = null;
+                    continue;
+                }
+                removeEntry(victim);
+                evictions.incrementAndGet();
+            }
+            super.addStored(key, value);
+            if(old != null) {
+                usedBytes += bytes - old.bytes;
+                if(old.expiresAt > 0)
+                    expiries.remove(new Expiry(old.expiresAt, key));
+                metas.put(key, new Meta(bytes, expiresAt));
+                policy.recordAccess(key);
+            } else {
+                metas.put(key, new Meta(bytes, expiresAt));
+                usedBytes += bytes;
+                policy.recordInsert(key);
+            }
+            if(expiresAt > 0) {
+                expiries.add(new Expiry(expiresAt, key));
+                startExpirer();
+            }
+        }
+    }
+
+    @Override
+    public void removeStored(long key) throws RemoteException {
+        remove(key);
+    }
+
+    //nova vrijednost dobiva zadano vrijeme života
+    @Override
+    public synchronized T compute(long key, UnaryOperator<T> update) throws RemoteException {
+        T current = getStored(key);
+        T next = update.apply(current);
+        if(next == null) {
+            if(current != null)
+                removeEntry(key);
+        } else if(next != current)
+            addStored(key, next);
+        return next;
+    }
+
+    @Override
+    public synchronized T remove(long key) {
+        return removeEntry(key);
+    }
+
+    @Override
+    public void addAll(Map<Long, T> entries) throws RemoteException {
+        for(Map.Entry<Long, T> entry : entries.entrySet())
+            addStored(entry.getKey(), entry.getValue());
+    }
+
+    @Override
+    public synchronized SortedMap<Long, T> removeRange(long from, long to) {
+        SortedMap<Long, T> removed = super.removeRange(from, to);
+        for(long key : removed.keySet())
+            forget(key);
+        return removed;
+    }
+
+    @Override
+    public List<T> getAllStored() throws RemoteException {
+        List<T> values = new ArrayList<>();
+        forEach((key, value) -> values.add(value));
+        return values;
+    }
+
+    //istekli parovi se preskaču
+    @Override
+    public void forEach(BiConsumer<Long, T> action) {
+        long now = System.currentTimeMillis();
+        super.forEach((key, value) -> {
+            Meta meta = metas.get(key);
+            if(meta == null || !isExpired(meta, now))
+                action.accept(key, value);
+        });
+    }
+
+    //istekli parovi se preskaču, pa se čita dok se ne skupi limit živih parova
+    @Override
+    public SortedMap<Long, T> scanRange(long from, long to, int limit) {
+        SortedMap<Long, T> chunk = new TreeMap<>();
+        long now = System.currentTimeMillis();
+        long cursor = from;
+        while(chunk.size() < limit && cursor < to) {
+            SortedMap<Long, T> read = super.scanRange(cursor, to, limit - chunk.size());
+            if(read.isEmpty())
+                break;
+            for(Map.Entry<Long, T> entry : read.entrySet()) {
+                Meta meta = metas.get(entry.getKey());
+                if(meta == null || !isExpired(meta, now))
+                    chunk.put(entry.getKey(), entry.getValue());
+            }
+            cursor = read.lastKey();
+        }
+        return chunk;
+    }
+
+    @Override
+    public SortedMap<Long, T> snapshot() {
+        SortedMap<Long, T> snapshot = new TreeMap<>();
+        forEach(snapshot::put);
+        return snapshot;
+    }
+
+    //-------------------------------------------------CONFIGURATION & STATS-------------------------------
+
+    /**
+     * @param defaultTtl - TTL u milisekundama za addStored bez TTL-a (0 za neograničeno)
+     */
+    public void setDefaultTtl(long defaultTtl) {
+        this.defaultTtl = defaultTtl;
+    }
+
+    public long getDefaultTtl() {
+        return defaultTtl;
+    }
+
+    /**
+     * @param sizeEstimator - procjena veličine vrijednosti u bajtovima
+     */
+    public void setSizeEstimator(ToLongFunction<? super T> sizeEstimator) {
+        this.sizeEstimator = sizeEstimator;
+    }
+
+    /**
+     * @param expiryPeriod - period pozadinskog brisanja isteklih parova u milisekundama
+     */
+    public synchronized void setExpiryPeriod(long expiryPeriod) {
+        this.expiryPeriod = expiryPeriod;
+        if(expirer != null) {
+            expirer.shutdownNow();
+            expirer = null;
+            startExpirer();
+        }
+    }
+
+    public long getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * Zaustavi pozadinsko brisanje isteklih parova
+     */
+    @Override
+    public synchronized void close() {
+        if(expirer != null) {
+            expirer.shutdownNow();
+            expirer = null;
+        }
+    }
+
+    /**
+     * Jeftina procjena veličine vrijednosti u bajtovima
+     *
+     * @param value
+     * @return procijenjena veličina
+     */
+    public static long estimateSize(Object value) {
+        if(value instanceof String)
+            return 40 + 2L * ((String) value).length();
+        if(value instanceof byte[])
+            return 16 + ((byte[]) value).length;
+        if(value instanceof Number || value instanceof Boolean || value instanceof Character)
+            return 16;
+        return 64;
+    }
+
+    //-------------------------------------------------EXPIRY & EVICTION-----------------------------------
+
+    //makni par i njegove metapodatke (pod lockom)
+    private T removeEntry(long key) {
+        forget(key);
+        return super.remove(key);
+    }
+
+    //makni metapodatke para (pod lockom)
+    private void forget(long key) {
+        Meta meta = metas.remove(key);
+        if(meta != null) {
+            usedBytes -= meta.bytes;
+            policy.recordRemove(key);
+            if(meta.expiresAt > 0)
+                expiries.remove(new Expiry(meta.expiresAt, key));
+        }
+    }
+
+    private synchronized void expire(long key, Meta meta) {
+        if(metas.get(key) == meta) {
+            removeEntry(key);
+            expirations.incrementAndGet();
+        }
+    }
+
+    private static boolean isExpired(Meta meta, long now) {
+        return meta.expiresAt > 0 && meta.expiresAt <= now;
+    }
+
+    //pozadinsko brisanje: parovi su sortirani po vremenu isteka, pa se gleda samo početak skupa
+    private void expireDue() {
+        long now = System.currentTimeMillis();
+        Expiry first;
+        while((first = expiries.isEmpty() ? null : expiries.first()) != null && first.expiresAt <= now) {
+            Meta meta = metas.get(first.key);
+            if(meta != null && meta.expiresAt == first.expiresAt)
+                expire(first.key, meta);
+            else
+                expiries.remove(first);
+        }
+    }
+
+    //pokreni pozadinsko brisanje (pod lockom)
+    private void startExpirer() {
+        if(expirer != null)
+            return;
+        expirer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "storage-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        expirer.scheduleWithFixedDelay(this::expireDue, expiryPeriod, expiryPeriod, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,161 @@
+package project_package.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Ugrađeni codeci. Kompaktni codeci zapisuju samo sadržaj vrijednosti (bez zaglavlja i opisa klase),
+ * a java() je Java serijalizacija za sve ostale Serializable tipove.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public final class Codecs {
+
+    /**
+     * String kao UTF-8 bajtovi
+     */
+    public static final ValueCodec<String> STRING = new ValueCodec<String>() {
+        @Override
+        public byte[] encode(String value) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * Kopija polja bajtova (spremište ne dijeli polje s pozivateljem)
+     */
+    public static final ValueCodec<byte[]> BYTES = new ValueCodec<byte[]>() {
+        @Override
+        public byte[] encode(byte[] value) {
+            return value.clone();
+        }
+
+        @Override
+        public byte[] decode(byte[] bytes) {
+            return bytes.clone();
+        }
+    };
+
+    public static final ValueCodec<Long> LONG = new ValueCodec<Long>() {
+        @Override
+        public byte[] encode(Long value) {
+            return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+        }
+
+        @Override
+        public Long decode(byte[] bytes) throws IOException {
+            return ByteBuffer.wrap(checkLength(bytes, Long.BYTES)).getLong();
+        }
+    };
+
+    public static final ValueCodec<Integer> INTEGER = new ValueCodec<Integer>() {
+        @Override
+        public byte[] encode(Integer value) {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(value).array();
+        }
+
+        @Override
+        public Integer decode(byte[] bytes) throws IOException {
+            return ByteBuffer.wrap(checkLength(bytes, Integer.BYTES)).getInt();
+        }
+    };
+
+    public static final ValueCodec<Double> DOUBLE = new ValueCodec<Double>() {
+        @Override
+        public byte[] encode(Double value) {
+            return ByteBuffer.allocate(Double.BYTES).putDouble(value).array();
+        }
+
+        @Override
+        public Double decode(byte[] bytes) throws IOException {
+            return ByteBuffer.wrap(checkLength(bytes, Double.BYTES)).getDouble();
+        }
+    };
+
+    public static final ValueCodec<Boolean> BOOLEAN = new ValueCodec<Boolean>() {
+        @Override
+        public byte[] encode(Boolean value) {
+            return new byte[] {(byte) (value ? 1 : 0)};
+        }
+
+        @Override
+        public Boolean decode(byte[] bytes) throws IOException {
+            return checkLength(bytes, 1)[0] != 0;
+        }
+    };
+
+    private static final ValueCodec<Object> JAVA = new ValueCodec<Object>() {
+        @Override
+        public byte[] encode(Object value) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(value);
+            }
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public Object decode(byte[] bytes) throws IOException {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                return in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+        }
+    };
+
+    private Codecs() {
+    }
+
+    /**
+     * Java serijalizacija (vrijednosti moraju biti Serializable)
+     *
+     * @param <T>
+     * @return codec
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ValueCodec<T> java() {
+        return (ValueCodec<T>) JAVA;
+    }
+
+    /**
+     * Kompaktni codec za danu klasu, ili Java serijalizacija ako ugrađeni ne postoji
+     *
+     * @param <T>
+     * @param type
+     * @return codec
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ValueCodec<T> forClass(Class<T> type) {
+        if(type == String.class)
+            return (ValueCodec<T>) STRING;
+        if(type == byte[].class)
+            return (ValueCodec<T>) BYTES;
+        if(type == Long.class)
+            return (ValueCodec<T>) LONG;
+        if(type == Integer.class)
+            return (ValueCodec<T>) INTEGER;
+        if(type == Double.class)
+            return (ValueCodec<T>) DOUBLE;
+        if(type == Boolean.class)
+            return (ValueCodec<T>) BOOLEAN;
+        return java();
+    }
+
+    private static byte[] checkLength(byte[] bytes, int length) throws IOException {
+        if(bytes.length != length)
+            throw new IOException("Expected " + length + " bytes, got " + bytes.length);
+        return bytes;
+    }
+}
@@ -0,0 +1,86 @@
+package project_package.storage;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Parovi (ključ, kodirana vrijednost) spakirani u tri primitivna polja za prijenos mrežom.
+ * Java serijalizacija primitivna polja zapisuje kao jedan blok, pa predaja velikog spremišta
+ * ne plaća zaglavlje i opis objekta po svakom paru.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class EncodedEntries implements Serializable {
+
+    private static final long serialVersionUID = 4146378225174817610L;
+
+    private final long[] keys;
+    //kraj vrijednosti i u data (vrijednost i je data[ends[i-1], ends[i]) )
+    private final int[] ends;
+    private final byte[] data;
+
+    /**
+     * @param entries - parovi (ključ, kodirana vrijednost)
+     */
+    public EncodedEntries(Map<Long, byte[]> entries) {
+        keys = new long[entries.size()];
+        ends = new int[entries.size()];
+        long total = 0;
+        for(byte[] bytes : entries.values())
+            total += bytes.length;
+        if(total > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Too many bytes to pack: " + total);
+        data = new byte[(int) total];
+        int i = 0;
+        int position = 0;
+        for(Map.Entry<Long, byte[]> entry : entries.entrySet()) {
+            byte[] bytes = entry.getValue();
+            System.arraycopy(bytes, 0, data, position, bytes.length);
+            position += bytes.length;
+            keys[i] = entry.getKey();
+            ends[i++] = position;
+        }
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * @return bajtovi svih vrijednosti zajedno
+     */
+    public int getDataLength() {
+        return data.length;
+    }
+
+    /**
+     * @return najveći ključ (za nastavak čitanja iza spakiranog dijela)
+     */
+    public long maxKey() {
+        if(keys.length == 0)
+            throw new IllegalStateException("No entries");
+        long max = keys[0];
+        for(long key : keys)
+            max = Math.max(max, key);
+        return max;
+    }
+
+    /**
+     * Raspakiraj parove
+     *
+     * @return parovi sortirani po ključu
+     */
+    public SortedMap<Long, byte[]> toMap() {
+        SortedMap<Long, byte[]> entries = new TreeMap<>();
+        int start = 0;
+        for(int i=0; i<keys.length; i++) {
+            entries.put(keys[i], Arrays.copyOfRange(data, start, ends[i]));
+            start = ends[i];
+        }
+        return entries;
+    }
+}
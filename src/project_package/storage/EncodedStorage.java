@@ -0,0 +1,161 @@
+package project_package.storage;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Spremište koje vrijednosti drži već kodirane codecom (polja bajtova sortirana po identifikatoru).
+ * Čitanja preko mreže i predaja intervala novom prethodniku samo kopiraju bajtove,
+ * a vrijednost se dekodira tek kod onoga tko je zatražio.
+ *
+ * Polja bajtova predana u addEncoded spremište preuzima, a ona vraćena iz getEncoded dijeli,
+ * pa ih pozivatelj ne smije mijenjati.
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti
+ */
+public class EncodedStorage<T> extends Storage<T> {
+
+    private final Storage<byte[]> encoded = new Storage<>(true);
+
+    /**
+     * @param codec - codec kojim se vrijednosti kodiraju
+     */
+    public EncodedStorage(ValueCodec<T> codec) {
+        super(true, codec);
+    }
+
+    //-------------------------------------------------STORAGE API-----------------------------------------
+
+    @Override
+    public T getStored(long key) throws RemoteException {
+        byte[] bytes = encoded.getStored(key);
+        return bytes == null ? null : decode(bytes);
+    }
+
+    @Override
+    public List<T> getAllStored() throws RemoteException {
+        List<T> values = new ArrayList<>(encoded.size());
+        for(byte[] bytes : encoded.getAllStored())
+            values.add(decode(bytes));
+        return values;
+    }
+
+    @Override
+    public void addStored(long key, T value) throws RemoteException {
+        encoded.addStored(key, encode(value));
+    }
+
+    @Override
+    public void removeStored(long key) throws RemoteException {
+        encoded.removeStored(key);
+    }
+
+    @Override
+    public T compute(long key, UnaryOperator<T> update) throws RemoteException {
+        Object[] result = new Object[1];
+        encoded.compute(key, bytes -> {
+            T current = bytes == null ? null : decodeUnchecked(bytes);
+            T next = update.apply(current);
+            result[0] = next;
+            //nepromijenjena vrijednost se ne kodira ponovno
+            return next == current ? bytes : next == null ? null : encodeUnchecked(next);
+        });
+        @SuppressWarnings("unchecked")
+        T next = (T) result[0];
+        return next;
+    }
+
+    @Override
+    public Set<Long> keySet() {
+        return encoded.keySet();
+    }
+
+    @Override
+    public void forEach(BiConsumer<Long, T> action) {
+        encoded.forEach((key, bytes) -> action.accept(key, decodeUnchecked(bytes)));
+    }
+
+    @Override
+    public int size() {
+        return encoded.size();
+    }
+
+    @Override
+    public T remove(long key) {
+        byte[] bytes = encoded.remove(key);
+        return bytes == null ? null : decodeUnchecked(bytes);
+    }
+
+    @Override
+    public void addAll(Map<Long, T> entries) throws RemoteException {
+        for(Map.Entry<Long, T> entry : entries.entrySet())
+            encoded.addStored(entry.getKey(), encode(entry.getValue()));
+    }
+
+    @Override
+    public SortedMap<Long, T> snapshot() {
+        return decodeAll(encoded.snapshot());
+    }
+
+    @Override
+    public SortedMap<Long, T> removeRange(long from, long to) {
+        return decodeAll(encoded.removeRange(from, to));
+    }
+
+    @Override
+    public SortedMap<Long, T> scanRange(long from, long to, int limit) {
+        return decodeAll(encoded.scanRange(from, to, limit));
+    }
+
+    //-------------------------------------------------ENCODED API-----------------------------------------
+
+    @Override
+    public boolean isEncoded() {
+        return true;
+    }
+
+    @Override
+    public byte[] getEncoded(long key) throws RemoteException {
+        return encoded.getStored(key);
+    }
+
+    @Override
+    public void addEncoded(long key, byte[] bytes) throws RemoteException {
+        encoded.addStored(key, bytes);
+    }
+
+    @Override
+    public void addAllEncoded(Map<Long, byte[]> entries) throws RemoteException {
+        encoded.addAll(entries);
+    }
+
+    @Override
+    public SortedMap<Long, byte[]> snapshotEncoded() {
+        return encoded.snapshot();
+    }
+
+    @Override
+    public SortedMap<Long, byte[]> removeRangeEncoded(long from, long to) {
+        return encoded.removeRange(from, to);
+    }
+
+    @Override
+    public SortedMap<Long, byte[]> scanRangeEncoded(long from, long to, int limit) {
+        return encoded.scanRange(from, to, limit);
+    }
+
+    private SortedMap<Long, T> decodeAll(Map<Long, byte[]> entries) {
+        SortedMap<Long, T> values = new TreeMap<>();
+        for(Map.Entry<Long, byte[]> entry : entries.entrySet())
+            values.put(entry.getKey(), decodeUnchecked(entry.getValue()));
+        return values;
+    }
+}
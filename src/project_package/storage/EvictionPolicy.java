@@ -0,0 +1,24 @@
+package project_package.storage;
+
+/**
+ * Politika koja odlučuje koji ključ izbaciti kad spremište dosegne limit.
+ * Implementacije moraju biti thread-safe (recordAccess se zove iz dretvi koje čitaju).
+ *
+ * @author Iva Tutiš
+ *
+ */
+public interface EvictionPolicy {
+
+    public void recordInsert(long key);
+
+    public void recordAccess(long key);
+
+    public void recordRemove(long key);
+
+    public boolean isEmpty();
+
+    /**
+     * @return ključ kojeg treba izbaciti (politika ga ne briše sama, nego čeka recordRemove)
+     */
+    public long victim();
+}
@@ -0,0 +1,94 @@
+package project_package.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Približni LFU: svaki ključ ima 8-bitni logaritamski brojač pristupa (raste sve sporije),
+ * a žrtva je ključ s najmanjim brojačem među nekoliko nasumično odabranih ključeva.
+ * Brojači se povremeno prepolove da stari popularni ključevi ne ostanu zauvijek.
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class LfuEvictionPolicy implements EvictionPolicy {
+
+    private static final int INITIAL_COUNTER = 5;
+    private static final int SAMPLES = 5;
+    private static final int DECAY_INTERVAL = 1 << 16;
+
+    private long[] keys = new long[16];
+    private int[] counters = new int[16];
+    private int size = 0;
+    private final HashMap<Long, Integer> positions = new HashMap<>();
+    private final Random random = new Random();
+    private int accessesSinceDecay = 0;
+
+    @Override
+    public synchronized void recordInsert(long key) {
+        Integer position = positions.get(key);
+        if(position != null) {
+            increment(position);
+            return;
+        }
+        if(size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            counters = Arrays.copyOf(counters, size * 2);
+        }
+        keys[size] = key;
+        counters[size] = INITIAL_COUNTER;
+        positions.put(key, size);
+        size++;
+    }
+
+    @Override
+    public synchronized void recordAccess(long key) {
+        Integer position = positions.get(key);
+        if(position != null)
+            increment(position);
+        if(++accessesSinceDecay >= DECAY_INTERVAL) {
+            accessesSinceDecay = 0;
+            for(int i=0; i<size; i++)
+                counters[i] >>= 1;
+        }
+    }
+
+    @Override
+    public synchronized void recordRemove(long key) {
+        Integer position = positions.remove(key);
+        if(position == null)
+            return;
+        //zadnji ključ prebaci na oslobođeno mjesto
+        size--;
+        if(position != size) {
+            keys[position] = keys[size];
+            counters[position] = counters[size];
+            positions.put(keys[position], position);
+        }
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public synchronized long victim() {
+        int best = random.nextInt(size);
+        for(int i=1; i<Math.min(SAMPLES, size); i++) {
+            int candidate = random.nextInt(size);
+            if(counters[candidate] < counters[best])
+                best = candidate;
+        }
+        return keys[best];
+    }
+
+    //logaritamski brojač: što je veći, to je manja vjerojatnost da se poveća
+    private void increment(int position) {
+        int counter = counters[position];
+        int base = Math.max(0, counter - INITIAL_COUNTER);
+        if(counter < 255 && random.nextDouble() < 1.0 / (base * 10.0 + 1))
+            counters[position] = counter + 1;
+    }
+}
@@ -0,0 +1,617 @@
+package project_package.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Trajno spremište: vrijednosti su u memoriji (uređena mapa iz Storage), a svaka promjena se
+ * prije potvrde zapisuje u append-only write-ahead log (wal-G.log).
+ *
+ * Kad log naraste preko checkpointLogBytes, log se rotira (wal-G+1.log) i u pozadini se zapisuje
+ * kompaktni snapshot stanja (snapshot-G+1.dat), nakon čega se stari log i snapshot brišu.
+ * Pri pokretanju se zadnji snapshot memorijski mapira i učita, a zatim se ponavlja samo log nakon njega.
+ *
+ * Zapis u logu: [byte operacija][long ključ][int duljina][kodirana vrijednost][int CRC32], a nepotpuni
+ * zapis na kraju loga (pad usred pisanja) se odbacuje.
+ * U GROUP_COMMIT načinu jedna dretva zapisuje i fsync-a sve zapise koji su se skupili dok je trajao prethodni fsync.
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti
+ */
+public class LogStructuredStorage<T> extends Storage<T> implements Closeable {
+
+    public static final long DEFAULT_CHECKPOINT_LOG_BYTES = 64L << 20;
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final int SNAPSHOT_MAGIC = 0x43484f52;
+    private static final long MAP_WINDOW = 1L << 30;
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.dat");
+    private static final Pattern LOG_NAME = Pattern.compile("wal-(\\d+)\\.log");
+
+    private final File directory;
+    private final SyncMode syncMode;
+    private final long checkpointLogBytes;
+
+    /**
+     * Štiti pending, brojače i redoslijed promjena u mapi (promjena i njen zapis se rade zajedno)
+     */
+    private final Object commitLock = new Object();
+
+    /**
+     * Štiti wal kanal i generaciju; uzima se uvijek prije commitLock-a
+     */
+    private final ReentrantLock channelLock = new ReentrantLock();
+
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSeq = 0;
+    private long durableSeq = 0;
+    private IOException commitError;
+
+    private FileChannel wal;
+    private long generation;
+    private volatile long walBytes;
+
+    private volatile boolean closed = false;
+    private Thread committer;
+    private final ExecutorService checkpointer;
+    private final AtomicBoolean checkpointRunning = new AtomicBoolean();
+
+    /**
+     * Otvori (ili stvori) trajno spremište u direktoriju i vrati stanje iz snapshota i loga
+     *
+     * @param directory
+     * @param syncMode
+     * @throws IOException
+     */
+    public LogStructuredStorage(File directory, SyncMode syncMode) throws IOException {
+        this(directory, syncMode, DEFAULT_CHECKPOINT_LOG_BYTES);
+    }
+
+    /**
+     * @param directory
+     * @param syncMode
+     * @param checkpointLogBytes - veličina loga nakon koje se radi novi snapshot
+     * @throws IOException
+     */
+    public LogStructuredStorage(File directory, SyncMode syncMode, long checkpointLogBytes) throws IOException {
+        this(directory, syncMode, checkpointLogBytes, Codecs.java());
+    }
+
+    /**
+     * @param directory
+     * @param syncMode
+     * @param checkpointLogBytes - veličina loga nakon koje se radi novi snapshot
+     * @param codec - codec kojim se vrijednosti zapisuju u log i snapshot
+     * @throws IOException
+     */
+    public LogStructuredStorage(File directory, SyncMode syncMode, long checkpointLogBytes, ValueCodec<T> codec) throws IOException {
+        super(true, codec);
+        this.directory = directory;
+        this.syncMode = syncMode;
+        this.checkpointLogBytes = checkpointLogBytes;
+        if(!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Can't create " + directory);
+
+        recover();
+        wal = openLog(generation);
+        walBytes = wal.size();
+
+        checkpointer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "checkpoint-" + directory.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if(syncMode == SyncMode.GROUP_COMMIT) {
+            committer = new Thread(this::commitLoop, "group-commit-" + directory.getName());
+            committer.setDaemon(true);
+            committer.start();
+        }
+    }
+
+    //-------------------------------------------------STORAGE API-----------------------------------------
+
+    @Override
+    public void addStored(long key, T value) throws RemoteException {
+        try {
+            byte[] bytes = getCodec().encode(value);
+            mutate(log -> {
+                super.addStored(key, value);
+                writeRecord(log, PUT, key, bytes);
+                return null;
+            });
+        } catch (IOException e) {
+            throw new RemoteException("Can't write to the log", e);
+        }
+    }
+
+    @Override
+    public void removeStored(long key) throws RemoteException {
+        try {
+            mutate(log -> {
+                super.removeStored(key);
+                writeRecord(log, DELETE, key, null);
+                return null;
+            });
+        } catch (IOException e) {
+            throw new RemoteException("Can't write to the log", e);
+        }
+    }
+
+    @Override
+    public T remove(long key) {
+        try {
+            return mutate(log -> {
+                T value = super.remove(key);
+                writeRecord(log, DELETE, key, null);
+                return value;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //nova vrijednost se kodira prije nego se mapa promijeni, pa greška codeca ne ostavlja par bez zapisa u logu
+    @Override
+    public T compute(long key, UnaryOperator<T> update) throws RemoteException {
+        try {
+            return mutate(log -> {
+                byte[][] bytes = new byte[1][];
+                boolean[] changed = new boolean[1];
+                T next = super.compute(key, current -> {
+                    T value = update.apply(current);
+                    changed[0] = value != current;
+                    if(changed[0] && value != null)
+                        bytes[0] = encodeUnchecked(value);
+                    return value;
+                });
+                if(changed[0])
+                    writeRecord(log, next == null ? DELETE : PUT, key, bytes[0]);
+                return next;
+            });
+        } catch (IOException e) {
+            throw new RemoteException("Can't write to the log", e);
+        }
+    }
+
+    //sve vrijednosti idu u log zajedno, s jednim fsync-om
+    @Override
+    public void addAll(Map<Long, T> entries) throws RemoteException {
+        try {
+            List<byte[]> encoded = new ArrayList<>(entries.size());
+            for(T value : entries.values())
+                encoded.add(getCodec().encode(value));
+            mutate(log -> {
+                int i = 0;
+                for(Map.Entry<Long, T> entry : entries.entrySet()) {
+                    super.addStored(entry.getKey(), entry.getValue());
+                    writeRecord(log, PUT, entry.getKey(), encoded.get(i++));
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            throw new RemoteException("Can't write to the log", e);
+        }
+    }
+
+    //kodirani bajtovi idu u log kakvi jesu, dekodira se samo vrijednost za memoriju
+    @Override
+    public void addEncoded(long key, byte[] bytes) throws RemoteException {
+        try {
+            T value = getCodec().decode(bytes);
+            mutate(log -> {
+                super.addStored(key, value);
+                writeRecord(log, PUT, key, bytes);
+                return null;
+            });
+        } catch (IOException e) {
+            throw new RemoteException("Can't write to the log", e);
+        }
+    }
+
+    @Override
+    public void addAllEncoded(Map<Long, byte[]> entries) throws RemoteException {
+        try {
+            List<T> decoded = new ArrayList<>(entries.size());
+            for(byte[] bytes : entries.values())
+                decoded.add(getCodec().decode(bytes));
+            mutate(log -> {
+                int i = 0;
+                for(Map.Entry<Long, byte[]> entry : entries.entrySet()) {
+                    super.addStored(entry.getKey(), decoded.get(i++));
+                    writeRecord(log, PUT, entry.getKey(), entry.getValue());
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            throw new RemoteException("Can't write to the log", e);
+        }
+    }
+
+    @Override
+    public SortedMap<Long, T> removeRange(long from, long to) {
+        try {
+            return mutate(log -> {
+                SortedMap<Long, T> removed = super.removeRange(from, to);
+                for(long key : removed.keySet())
+                    writeRecord(log, DELETE, key, null);
+                return removed;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    //-------------------------------------------------WRITE PATH------------------------------------------
+
+    /**
+     * Promjena mape koja svoje zapise piše u dani log buffer
+     */
+    private interface Mutation<R> {
+        R apply(DataOutputStream log) throws IOException;
+    }
+
+    /**
+     * Izvrši promjenu i vrati se tek kad su njeni zapisi trajno u logu
+     */
+    private <R> R mutate(Mutation<R> mutation) throws IOException {
+        if(closed)
+            throw new IOException("Storage is closed");
+        R result;
+        if(syncMode == SyncMode.PER_OPERATION) {
+            channelLock.lock();
+            try {
+                ByteArrayOutputStream records = new ByteArrayOutputStream();
+                synchronized (commitLock) {
+                    result = mutation.apply(new DataOutputStream(records));
+                }
+                writeToLog(records.toByteArray());
+            } finally {
+                channelLock.unlock();
+            }
+        } else {
+            long seq;
+            synchronized (commitLock) {
+                result = mutation.apply(new DataOutputStream(pending));
+                seq = ++appendedSeq;
+                commitLock.notifyAll();
+            }
+            awaitDurable(seq);
+        }
+        if(walBytes > checkpointLogBytes && checkpointRunning.compareAndSet(false, true))
+            checkpointer.execute(() -> {
+                try {
+                    checkpoint();
+                } catch (IOException e) {
+                    System.err.println("Checkpoint of " + directory + " failed.");
+                    e.printStackTrace();
+                } finally {
+                    checkpointRunning.set(false);
+                }
+            });
+        return result;
+    }
+
+    private void awaitDurable(long seq) throws IOException {
+        synchronized (commitLock) {
+            while(durableSeq < seq && commitError == null) {
+                try {
+                    commitLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for commit", e);
+                }
+            }
+            if(durableSeq < seq)
+                throw commitError;
+        }
+    }
+
+    /**
+     * Group commit dretva: čeka zapise, pa ih sve odjednom zapiše i fsync-a
+     */
+    private void commitLoop() {
+        while(true) {
+            synchronized (commitLock) {
+                while(pending.size() == 0 && !closed) {
+                    try {
+                        commitLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if(pending.size() == 0 && closed)
+                    return;
+            }
+            channelLock.lock();
+            try {
+                flushPending();
+            } catch (IOException e) {
+                synchronized (commitLock) {
+                    commitError = e;
+                    commitLock.notifyAll();
+                }
+                return;
+            } finally {
+                channelLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Zapiši i fsync-aj sve skupljene zapise (pod channelLock-om)
+     */
+    private void flushPending() throws IOException {
+        byte[] batch;
+        long seq;
+        synchronized (commitLock) {
+            batch = pending.toByteArray();
+            pending.reset();
+            seq = appendedSeq;
+        }
+        if(batch.length > 0)
+            writeToLog(batch);
+        synchronized (commitLock) {
+            durableSeq = Math.max(durableSeq, seq);
+            commitLock.notifyAll();
+        }
+    }
+
+    private void writeToLog(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while(buffer.hasRemaining())
+            wal.write(buffer);
+        wal.force(false);
+        walBytes += bytes.length;
+    }
+
+    private static void writeRecord(DataOutputStream log, byte operation, long key, byte[] bytes) throws IOException {
+        int length = bytes == null ? 0 : bytes.length;
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.put(operation).putLong(key).putInt(length);
+        crc.update(header.array());
+        if(bytes != null)
+            crc.update(bytes);
+        log.write(header.array());
+        if(bytes != null)
+            log.write(bytes);
+        log.writeInt((int) crc.getValue());
+    }
+
+    //-------------------------------------------------CHECKPOINT------------------------------------------
+
+    /**
+     * Rotiraj log i zapiši kompaktni snapshot stanja u trenutku rotacije.
+     * Promjene nakon rotacije idu u novi log, pa ih ponavljanje nakon snapshota ispravno primijeni.
+     *
+     * @throws IOException
+     */
+    public void checkpoint() throws IOException {
+        long newGeneration;
+        channelLock.lock();
+        try {
+            flushPending();
+            wal.close();
+            newGeneration = generation + 1;
+            wal = openLog(newGeneration);
+            generation = newGeneration;
+            walBytes = 0;
+        } finally {
+            channelLock.unlock();
+        }
+
+        File temporary = new File(directory, "snapshot-" + newGeneration + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            try {
+                super.forEach((key, value) -> {
+                    try {
+                        byte[] bytes = getCodec().encode(value);
+                        out.writeLong(key);
+                        out.writeInt(bytes.length);
+                        out.write(bytes);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary.toPath(), new File(directory, "snapshot-" + newGeneration + ".dat").toPath(),
+                StandardCopyOption.ATOMIC_MOVE);
+
+        //stari snapshotovi i logovi više nisu potrebni
+        for(long old : generations(SNAPSHOT_NAME))
+            if(old < newGeneration)
+                Files.deleteIfExists(new File(directory, "snapshot-" + old + ".dat").toPath());
+        for(long old : generations(LOG_NAME))
+            if(old < newGeneration)
+                Files.deleteIfExists(new File(directory, "wal-" + old + ".log").toPath());
+    }
+
+    /**
+     * Zapiši sve što je ostalo u logu i zatvori spremište
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (commitLock) {
+            closed = true;
+            commitLock.notifyAll();
+        }
+        if(committer != null) {
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        checkpointer.shutdown();
+        channelLock.lock();
+        try {
+            flushPending();
+            wal.close();
+        } finally {
+            channelLock.unlock();
+        }
+    }
+
+    public SyncMode getSyncMode() {
+        return syncMode;
+    }
+
+    //-------------------------------------------------RECOVERY--------------------------------------------
+
+    /**
+     * Učitaj zadnji snapshot i ponovi logove nastale nakon njega
+     */
+    private void recover() throws IOException {
+        List<Long> snapshots = generations(SNAPSHOT_NAME);
+        long snapshotGeneration = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+        if(!snapshots.isEmpty())
+            loadSnapshot(new File(directory, "snapshot-" + snapshotGeneration + ".dat"));
+
+        generation = snapshotGeneration;
+        List<Long> logs = generations(LOG_NAME);
+        for(int i=0; i<logs.size(); i++) {
+            long logGeneration = logs.get(i);
+            if(logGeneration < snapshotGeneration)
+                continue;
+            replayLog(new File(directory, "wal-" + logGeneration + ".log"), i == logs.size() - 1);
+            generation = logGeneration;
+        }
+
+        File[] temporary = directory.listFiles((dir, name) -> name.endsWith(".tmp"));
+        if(temporary != null)
+            for(File file : temporary)
+                Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Memorijski mapiraj snapshot (u prozorima od najviše MAP_WINDOW bajtova) i učitaj parove
+     */
+    private void loadSnapshot(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long windowStart = 0;
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAP_WINDOW));
+            if(window.getInt() != SNAPSHOT_MAGIC)
+                throw new IOException(file + " is not a snapshot");
+            long position = 4;
+            while(position < size) {
+                if(position + 12 > windowStart + window.limit()) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(size - windowStart, MAP_WINDOW));
+                }
+                int offset = (int) (position - windowStart);
+                long key = window.getLong(offset);
+                int length = window.getInt(offset + 8);
+                if(position + 12 + length > windowStart + window.limit()) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(size - windowStart, MAP_WINDOW));
+                    offset = 0;
+                }
+                byte[] bytes = new byte[length];
+                window.get(offset + 12, bytes);
+                super.addStored(key, getCodec().decode(bytes));
+                position += 12 + length;
+            }
+        }
+    }
+
+    /**
+     * Ponovi log; na prvom nepotpunom ili oštećenom zapisu stani (i odreži ga ako je to zadnji log)
+     */
+    private void replayLog(File file, boolean truncateTail) throws IOException {
+        long valid = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16))) {
+            byte[] header = new byte[13];
+            while(true) {
+                byte[] bytes;
+                try {
+                    in.readFully(header);
+                    ByteBuffer parsed = ByteBuffer.wrap(header);
+                    byte operation = parsed.get();
+                    long key = parsed.getLong();
+                    int length = parsed.getInt();
+                    if((operation != PUT && operation != DELETE) || length < 0)
+                        break;
+                    bytes = new byte[length];
+                    in.readFully(bytes);
+                    int expected = in.readInt();
+                    CRC32 crc = new CRC32();
+                    crc.update(header);
+                    crc.update(bytes);
+                    if((int) crc.getValue() != expected)
+                        break;
+                    if(operation == PUT)
+                        super.addStored(key, getCodec().decode(bytes));
+                    else
+                        super.removeStored(key);
+                } catch (EOFException e) {
+                    break;
+                }
+                valid += 13 + bytes.length + 4;
+            }
+        }
+        if(truncateTail && valid < file.length())
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+    }
+
+    private FileChannel openLog(long logGeneration) throws IOException {
+        return FileChannel.open(new File(directory, "wal-" + logGeneration + ".log").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    //sortirane generacije datoteka čije ime odgovara uzorku
+    private List<Long> generations(Pattern pattern) {
+        List<Long> generations = new ArrayList<>();
+        String[] names = directory.list();
+        if(names != null)
+            for(String name : names) {
+                Matcher matcher = pattern.matcher(name);
+                if(matcher.matches())
+                    generations.add(Long.parseLong(matcher.group(1)));
+            }
+        Collections.sort(generations);
+        return generations;
+    }
+}
@@ -0,0 +1,39 @@
+package project_package.storage;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Izbacuje ključ kojem se najdulje nije pristupalo
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class LruEvictionPolicy implements EvictionPolicy {
+
+    private final LinkedHashMap<Long, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Override
+    public synchronized void recordInsert(long key) {
+        order.put(key, Boolean.TRUE);
+    }
+
+    @Override
+    public synchronized void recordAccess(long key) {
+        order.get(key);
+    }
+
+    @Override
+    public synchronized void recordRemove(long key) {
+        order.remove(key);
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return order.isEmpty();
+    }
+
+    @Override
+    public synchronized long victim() {
+        return order.keySet().iterator().next();
+    }
+}
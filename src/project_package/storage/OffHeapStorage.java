@@ -0,0 +1,521 @@
+package project_package.storage;
+
+import java.nio.ByteBuffer;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+import project_package.service.KeyService;
+
+/**
+ * Spremište koje kodirane vrijednosti drži izvan heapa, u direktnim ByteBuffer slabovima,
+ * pa milijuni malih vrijednosti ne opterećuju GC.
+ *
+ * Zapis u slabu: [long ključ][int duljina][kodirana vrijednost].
+ * Indeks je open-addressing tablica nad primitivnim ključevima (long[] ključeva, long[] adresa),
+ * adresa je (redni broj slaba << 32) | pomak u slabu.
+ * Prepisane i obrisane vrijednosti ostaju kao smeće dok ih kompakcija ne ukloni;
+ * kompakcija pomiče žive zapise prema početku na mjestu, bez dodatne memorije.
+ * Ukupna memorija slabova nikad ne prelazi maxBytes.
+ *
+ * Ključevi Long.MIN_VALUE i Long.MIN_VALUE + 1 su rezervirani (identifikatori u prstenu su nenegativni).
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti
+ */
+public class OffHeapStorage<T> extends Storage<T> {
+
+    public static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    private static final int HEADER_SIZE = 12;
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final long TOMBSTONE = Long.MIN_VALUE + 1;
+
+    private final long maxBytes;
+    private final int slabSize;
+
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    //pozicija na koju se piše sljedeći zapis
+    private int writeSlab = 0;
+    private int writeOffset = 0;
+    //bajtovi u slabovima koje zauzimaju obrisani/prepisani zapisi
+    private long garbageBytes = 0;
+
+    //open-addressing indeks
+    private long[] keys;
+    private long[] addresses;
+    private int size = 0;
+    private int tombstones = 0;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param maxBytes - maksimalna memorija slabova u bajtovima
+     */
+    public OffHeapStorage(long maxBytes) {
+        this(maxBytes, DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * @param maxBytes - maksimalna memorija slabova u bajtovima
+     * @param slabSize - veličina jednog slaba (ujedno najveći zapis)
+     */
+    public OffHeapStorage(long maxBytes, int slabSize) {
+        this(maxBytes, slabSize, Codecs.java());
+    }
+
+    /**
+     * @param maxBytes - maksimalna memorija slabova u bajtovima
+     * @param slabSize - veličina jednog slaba (ujedno najveći zapis)
+     * @param codec - codec kojim se vrijednosti zapisuju u slabove
+     */
+    public OffHeapStorage(long maxBytes, int slabSize, ValueCodec<T> codec) {
+        super(false, codec);
+        this.maxBytes = maxBytes;
+        this.slabSize = slabSize;
+        this.keys = newKeys(16);
+        this.addresses = new long[16];
+    }
+
+    //-------------------------------------------------STORAGE API-----------------------------------------
+
+    @Override
+    public T getStored(long key) throws RemoteException {
+        byte[] bytes;
+        lock.readLock().lock();
+        try {
+            int slot = find(key);
+            if(slot < 0)
+                return null;
+            bytes = read(addresses[slot]);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return decode(bytes);
+    }
+
+    @Override
+    public List<T> getAllStored() throws RemoteException {
+        List<T> values = new ArrayList<>();
+        for(byte[] bytes : readAll().values())
+            values.add(decode(bytes));
+        return values;
+    }
+
+    @Override
+    public void addStored(long key, T value) throws RemoteException {
+        addEncoded(key, encode(value));
+    }
+
+    @Override
+    public void addEncoded(long key, byte[] bytes) throws RemoteException {
+        checkKey(key);
+        if(bytes.length + HEADER_SIZE > slabSize)
+            throw new StorageFullException("Value of " + bytes.length + " bytes is larger than the slab size " + slabSize);
+        lock.writeLock().lock();
+        try {
+            put(key, bytes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeStored(long key) throws RemoteException {
+        lock.writeLock().lock();
+        try {
+            delete(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public T compute(long key, UnaryOperator<T> update) throws RemoteException {
+        checkKey(key);
+        lock.writeLock().lock();
+        try {
+            int slot = find(key);
+            T current = slot < 0 ? null : decode(read(addresses[slot]));
+            T next = update.apply(current);
+            if(next == null) {
+                if(current != null)
+                    delete(key);
+            } else if(next != current) {
+                byte[] bytes = encode(next);
+                if(bytes.length + HEADER_SIZE > slabSize)
+                    throw new StorageFullException("Value of " + bytes.length + " bytes is larger than the slab size " + slabSize);
+                put(key, bytes);
+            }
+            return next;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public T remove(long key) {
+        byte[] bytes;
+        lock.writeLock().lock();
+        try {
+            bytes = delete(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return bytes == null ? null : decodeUnchecked(bytes);
+    }
+
+    @Override
+    public Set<Long> keySet() {
+        Set<Long> keySet = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            for(long key : keys)
+                if(key != EMPTY && key != TOMBSTONE)
+                    keySet.add(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return Collections.unmodifiableSet(keySet);
+    }
+
+    @Override
+    public void forEach(BiConsumer<Long, T> action) {
+        for(Map.Entry<Long, byte[]> entry : readAll().entrySet())
+            action.accept(entry.getKey(), decodeUnchecked(entry.getValue()));
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isOrdered() {
+        return false;
+    }
+
+    @Override
+    public void addAll(Map<Long, T> entries) throws RemoteException {
+        for(Map.Entry<Long, T> entry : entries.entrySet())
+            addStored(entry.getKey(), entry.getValue());
+    }
+
+    @Override
+    public SortedMap<Long, T> snapshot() {
+        SortedMap<Long, T> snapshot = new TreeMap<>();
+        for(Map.Entry<Long, byte[]> entry : readAll().entrySet())
+            snapshot.put(entry.getKey(), decodeUnchecked(entry.getValue()));
+        return snapshot;
+    }
+
+    @Override
+    public SortedMap<Long, T> removeRange(long from, long to) {
+        SortedMap<Long, T> values = new TreeMap<>();
+        for(Map.Entry<Long, byte[]> entry : removeRangeEncoded(from, to).entrySet())
+            values.put(entry.getKey(), decodeUnchecked(entry.getValue()));
+        return values;
+    }
+
+    @Override
+    public SortedMap<Long, T> scanRange(long from, long to, int limit) {
+        SortedMap<Long, T> values = new TreeMap<>();
+        for(Map.Entry<Long, byte[]> entry : scanRangeEncoded(from, to, limit).entrySet())
+            values.put(entry.getKey(), decodeUnchecked(entry.getValue()));
+        return values;
+    }
+
+    //-------------------------------------------------ENCODED API-----------------------------------------
+
+    @Override
+    public boolean isEncoded() {
+        return true;
+    }
+
+    @Override
+    public byte[] getEncoded(long key) throws RemoteException {
+        lock.readLock().lock();
+        try {
+            int slot = find(key);
+            return slot < 0 ? null : read(addresses[slot]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void addAllEncoded(Map<Long, byte[]> entries) throws RemoteException {
+        for(Map.Entry<Long, byte[]> entry : entries.entrySet())
+            addEncoded(entry.getKey(), entry.getValue());
+    }
+
+    @Override
+    public SortedMap<Long, byte[]> snapshotEncoded() {
+        return readAll();
+    }
+
+    @Override
+    public SortedMap<Long, byte[]> removeRangeEncoded(long from, long to) {
+        SortedMap<Long, byte[]> removed = new TreeMap<>();
+        lock.writeLock().lock();
+        try {
+            for(long key : keys.clone())
+                if(key != EMPTY && key != TOMBSTONE && KeyService.isKeyInbetween(key, from, to))
+                    removed.put(key, delete(key));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return removed;
+    }
+
+    //indeks nije uređen, pa se prolazi kroz cijeli indeks i pamti samo limit najmanjih ključeva
+    @Override
+    public SortedMap<Long, byte[]> scanRangeEncoded(long from, long to, int limit) {
+        checkScanRange(from, to);
+        SortedMap<Long, byte[]> chunk = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            TreeMap<Long, Long> smallest = new TreeMap<>();
+            for(int i=0; i<keys.length; i++) {
+                long key = keys[i];
+                if(key != EMPTY && key != TOMBSTONE && key > from && key <= to) {
+                    smallest.put(key, addresses[i]);
+                    if(smallest.size() > limit)
+                        smallest.pollLastEntry();
+                }
+            }
+            for(Map.Entry<Long, Long> entry : smallest.entrySet())
+                chunk.put(entry.getKey(), read(entry.getValue()));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return chunk;
+    }
+
+    //-------------------------------------------------MEMORY STATS----------------------------------------
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return memorija zauzeta slabovima
+     */
+    public long getAllocatedBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) slabs.size() * slabSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return bajtovi koje zauzimaju obrisani/prepisani zapisi
+     */
+    public long getGarbageBytes() {
+        lock.readLock().lock();
+        try {
+            return garbageBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //-------------------------------------------------SLABS-----------------------------------------------
+
+    //upiši zapis i ažuriraj indeks (pod write lockom)
+    private void put(long key, byte[] bytes) throws StorageFullException {
+        int recordSize = HEADER_SIZE + bytes.length;
+        long address = allocate(recordSize);
+        ByteBuffer slab = slabs.get((int) (address >>> 32));
+        int offset = (int) address;
+        slab.putLong(offset, key);
+        slab.putInt(offset + 8, bytes.length);
+        slab.put(offset + HEADER_SIZE, bytes);
+
+        int slot = find(key);
+        if(slot >= 0) {
+            garbageBytes += recordSize(addresses[slot]);
+            addresses[slot] = address;
+        } else
+            insert(key, address);
+    }
+
+    //makni ključ iz indeksa i vrati stare bajtove (pod write lockom)
+    private byte[] delete(long key) {
+        int slot = find(key);
+        if(slot < 0)
+            return null;
+        byte[] bytes = read(addresses[slot]);
+        garbageBytes += HEADER_SIZE + bytes.length;
+        keys[slot] = TOMBSTONE;
+        size--;
+        tombstones++;
+        return bytes;
+    }
+
+    //nađi mjesto za zapis: u trenutnom slabu, u novom slabu, ili nakon kompakcije (najviše jedne)
+    private long allocate(int recordSize) throws StorageFullException {
+        boolean compacted = false;
+        while(true) {
+            while(writeSlab < slabs.size()) {
+                if(writeOffset + recordSize <= slabSize) {
+                    long address = ((long) writeSlab << 32) | writeOffset;
+                    writeOffset += recordSize;
+                    return address;
+                }
+                writeSlab++;
+                writeOffset = 0;
+            }
+            if((long) (slabs.size() + 1) * slabSize <= maxBytes) {
+                slabs.add(ByteBuffer.allocateDirect(slabSize));
+                continue;
+            }
+            if(compacted || garbageBytes == 0)
+                throw new StorageFullException("Off-heap storage is full (" + maxBytes + " bytes)");
+            compact();
+            compacted = true;
+        }
+    }
+
+    /**
+     * Pomakni sve žive zapise prema početku (po redu adresa), pa se nijedan zapis ne prepisuje prije nego je pomaknut.
+     * Prazni slabovi na kraju se otpuštaju.
+     */
+    private void compact() {
+        int[] slots = new int[size];
+        int live = 0;
+        for(int i=0; i<keys.length; i++)
+            if(keys[i] != EMPTY && keys[i] != TOMBSTONE)
+                slots[live++] = i;
+        //sortiraj slotove po adresi zapisa
+        Integer[] order = new Integer[live];
+        for(int i=0; i<live; i++)
+            order[i] = slots[i];
+        Arrays.sort(order, (a, b) -> Long.compare(addresses[a], addresses[b]));
+
+        int targetSlab = 0, targetOffset = 0;
+        byte[] buffer = new byte[0];
+        for(int slot : order) {
+            long address = addresses[slot];
+            int recordSize = recordSize(address);
+            if(targetOffset + recordSize > slabSize) {
+                targetSlab++;
+                targetOffset = 0;
+            }
+            long newAddress = ((long) targetSlab << 32) | targetOffset;
+            if(newAddress != address) {
+                if(buffer.length < recordSize)
+                    buffer = new byte[recordSize];
+                slabs.get((int) (address >>> 32)).get((int) address, buffer, 0, recordSize);
+                slabs.get(targetSlab).put(targetOffset, buffer, 0, recordSize);
+                addresses[slot] = newAddress;
+            }
+            targetOffset += recordSize;
+        }
+        writeSlab = targetSlab;
+        writeOffset = targetOffset;
+        while(slabs.size() > writeSlab + 1)
+            slabs.remove(slabs.size() - 1);
+        garbageBytes = 0;
+    }
+
+    private int recordSize(long address) {
+        return HEADER_SIZE + slabs.get((int) (address >>> 32)).getInt((int) address + 8);
+    }
+
+    private byte[] read(long address) {
+        ByteBuffer slab = slabs.get((int) (address >>> 32));
+        int offset = (int) address;
+        byte[] bytes = new byte[slab.getInt(offset + 8)];
+        slab.get(offset + HEADER_SIZE, bytes);
+        return bytes;
+    }
+
+    //kopija svih parova (ključ, bajtovi) pod read lockom
+    private SortedMap<Long, byte[]> readAll() {
+        SortedMap<Long, byte[]> all = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            for(int i=0; i<keys.length; i++)
+                if(keys[i] != EMPTY && keys[i] != TOMBSTONE)
+                    all.put(keys[i], read(addresses[i]));
+        } finally {
+            lock.readLock().unlock();
+        }
+        return all;
+    }
+
+    //-------------------------------------------------INDEX-----------------------------------------------
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while(true) {
+            long current = keys[slot];
+            if(current == key)
+                return slot;
+            if(current == EMPTY)
+                return -1;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void insert(long key, long address) {
+        if((size + tombstones + 1) * 2 > keys.length)
+            rehash(size + 1 > keys.length / 4 ? keys.length * 2 : keys.length);
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while(keys[slot] != EMPTY && keys[slot] != TOMBSTONE)
+            slot = (slot + 1) & mask;
+        if(keys[slot] == TOMBSTONE)
+            tombstones--;
+        keys[slot] = key;
+        addresses[slot] = address;
+        size++;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldAddresses = addresses;
+        keys = newKeys(capacity);
+        addresses = new long[capacity];
+        size = 0;
+        tombstones = 0;
+        for(int i=0; i<oldKeys.length; i++)
+            if(oldKeys[i] != EMPTY && oldKeys[i] != TOMBSTONE)
+                insert(oldKeys[i], oldAddresses[i]);
+    }
+
+    private static long[] newKeys(int capacity) {
+        long[] newKeys = new long[capacity];
+        Arrays.fill(newKeys, EMPTY);
+        return newKeys;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static void checkKey(long key) {
+        if(key == EMPTY || key == TOMBSTONE)
+            throw new IllegalArgumentException("Reserved key " + key);
+    }
+}
@@ -1,26 +1,82 @@
 package project_package.storage;
 
+import java.io.IOException;
 import java.rmi.RemoteException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
 
+import project_package.service.KeyService;
+
+/**
+ * Spremište jednog čvora.
+ * Thread-safe: čitanja su bez zaključavanja, a pisanja zaključavaju samo jedan segment mape,
+ * pa RMI dretve mogu istovremeno čitati i pisati.
+ * Iteracija (keySet, forEach, getAllStored) je slabo konzistentna - ne baca
+ * ConcurrentModificationException i vidi stanje iz nekog trenutka tijekom iteracije.
+ *
+ * U uređenom načinu (ordered) ključevi su sortirani po identifikatoru u skip listi,
+ * pa se interval prstena (from, to] može izdvojiti bez prolaska kroz cijelo spremište.
+ *
+ * Codec spremišta se koristi za *Encoded metode kojima čvorovi prenose vrijednosti kao bajtove.
+ * Ovo spremište drži objekte pa ih kodira pri svakom pozivu; spremišta koja već drže bajtove
+ * (isEncoded()) te metode nadjačavaju i samo kopiraju bajtove.
+ *
+ * @param <T> tip vrijednosti
+ */
 public class Storage<T> {
 
-    private HashMap<String, T> storage;
+    private final ConcurrentMap<Long, T> storage;
+
+    private final ValueCodec<T> codec;
 
+    /**
+     * Spremište bez uređaja (hash mapa)
+     */
     public Storage(){
-        storage = new HashMap<>();
+        this(false);
+    }
+
+    /**
+     * @param ordered - true za spremište sortirano po identifikatoru
+     */
+    public Storage(boolean ordered){
+        this(ordered, Codecs.java());
     }
 
-    public HashMap<String, T> getStorage() {
-        return storage;
+    /**
+     * @param ordered - true za spremište sortirano po identifikatoru
+     * @param codec - codec za *Encoded metode
+     */
+    public Storage(boolean ordered, ValueCodec<T> codec){
+        if(ordered)
+            storage = new ConcurrentSkipListMap<>();
+        else
+            storage = new ConcurrentHashMap<>();
+        this.codec = codec;
     }
 
-    public void setStorage(HashMap<String, T> storage) {
-        this.storage = storage;
+    public boolean isOrdered() {
+        return storage instanceof ConcurrentNavigableMap;
+    }
+
+    public ValueCodec<T> getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return true ako spremište drži vrijednosti kodirane codecom
+     */
+    public boolean isEncoded() {
+        return false;
     }
 
     //Vrati vrijednost mapiranu na dani ključ
-    public T getStored(String key) throws RemoteException {
+    public T getStored(long key) throws RemoteException {
         return storage.get(key);
     }
 
@@ -31,21 +87,229 @@ public class Storage<T> {
     }
 
     //Add/update vrijednosti na ključ
-    public void addStored(String key, T value) throws RemoteException {
+    public void addStored(long key, T value) throws RemoteException {
         storage.put(key, value);
     }
 
     //Delete vrijednosti na ključ
-    public void removeStored(String key) throws RemoteException {
+    public void removeStored(long key) throws RemoteException {
         storage.remove(key);
     }
 
-    //varca set kljuceva
-    public Set<String> keySet(){
-        return storage.keySet();
+    /**
+     * Atomarno izračunaj novu vrijednost iz trenutne (nijedno drugo pisanje na isti ključ ne može
+     * se dogoditi između čitanja i pisanja)
+     *
+     * @param key
+     * @param update - trenutna vrijednost (null ako para nema) -> nova vrijednost (null briše par)
+     * @return nova vrijednost
+     * @throws RemoteException
+     */
+    public T compute(long key, UnaryOperator<T> update) throws RemoteException {
+        return storage.compute(key, (k, current) -> update.apply(current));
+    }
+
+    //vraca set kljuceva (slabo konzistentan, samo za čitanje)
+    public Set<Long> keySet(){
+        return Collections.unmodifiableSet(storage.keySet());
     }
 
-    public T remove(String key){
+    //prođi kroz sve parove (slabo konzistentno)
+    public void forEach(BiConsumer<Long, T> action) {
+        storage.forEach(action);
+    }
+
+    public int size() {
+        return storage.size();
+    }
+
+    public T remove(long key){
         return storage.remove(key);
     }
+
+    //Add/update više vrijednosti odjednom (ograničena spremišta bacaju StorageFullException)
+    public void addAll(Map<Long, T> entries) throws RemoteException {
+        storage.putAll(entries);
+    }
+
+    /**
+     * Kopija cijelog spremišta sortirana po identifikatoru
+     *
+     * @return sortirana kopija
+     */
+    public SortedMap<Long, T> snapshot() {
+        return new TreeMap<>(storage);
+    }
+
+    /**
+     * Izdvoji (makni i vrati) sve parove čiji je ključ u intervalu prstena (from, to].
+     * U uređenom načinu se prolazi samo kroz taj interval (O(log n + k)), inače kroz cijelo spremište.
+     *
+     * @param from
+     * @param to
+     * @return izdvojeni parovi sortirani po identifikatoru
+     */
+    public SortedMap<Long, T> removeRange(long from, long to) {
+        SortedMap<Long, T> removed = new TreeMap<>();
+        if(storage instanceof ConcurrentNavigableMap) {
+            ConcurrentNavigableMap<Long, T> ordered = (ConcurrentNavigableMap<Long, T>) storage;
+            if(from < to)
+                moveAll(ordered.subMap(from, false, to, true), removed);
+            else {
+                //interval prelazi preko nule (ili je cijeli prsten kad je from == to)
+                moveAll(ordered.tailMap(from, false), removed);
+                moveAll(ordered.headMap(to, true), removed);
+            }
+        } else {
+            for(long key : storage.keySet())
+                if(KeyService.isKeyInbetween(key, from, to)) {
+                    T value = storage.remove(key);
+                    if(value != null)
+                        removed.put(key, value);
+                }
+        }
+        return removed;
+    }
+
+    /**
+     * Najviše limit parova s ključem u intervalu (from, to], sortirano po identifikatoru (za scan u dijelovima).
+     * U uređenom načinu se čita samo traženi dio, inače se prolazi kroz cijelo spremište (uz najviše limit parova u memoriji).
+     *
+     * @param from - mora biti manji od to (interval ne prelazi preko nule)
+     * @param to
+     * @param limit
+     * @return parovi sortirani po identifikatoru
+     */
+    public SortedMap<Long, T> scanRange(long from, long to, int limit) {
+        checkScanRange(from, to);
+        TreeMap<Long, T> chunk = new TreeMap<>();
+        if(storage instanceof ConcurrentNavigableMap) {
+            ConcurrentNavigableMap<Long, T> ordered = (ConcurrentNavigableMap<Long, T>) storage;
+            for(Map.Entry<Long, T> entry : ordered.subMap(from, false, to, true).entrySet()) {
+                if(chunk.size() >= limit)
+                    break;
+                chunk.put(entry.getKey(), entry.getValue());
+            }
+        } else {
+            //čuva se najviše limit najmanjih ključeva, pa dio ne zauzima memoriju cijelog spremišta
+            storage.forEach((key, value) -> {
+                if(key > from && key <= to) {
+                    chunk.put(key, value);
+                    if(chunk.size() > limit)
+                        chunk.pollLastEntry();
+                }
+            });
+        }
+        return chunk;
+    }
+
+    protected static void checkScanRange(long from, long to) {
+        if(from >= to)
+            throw new IllegalArgumentException("Scan range (" + from + ", " + to + "] is empty or wraps around zero");
+    }
+
+    //-------------------------------------------------ENCODED API-----------------------------------------
+
+    //Vrati kodiranu vrijednost mapiranu na dani ključ (null ako je nema)
+    public byte[] getEncoded(long key) throws RemoteException {
+        T value = getStored(key);
+        return value == null ? null : encode(value);
+    }
+
+    //Add/update kodirane vrijednosti na ključ
+    public void addEncoded(long key, byte[] bytes) throws RemoteException {
+        addStored(key, decode(bytes));
+    }
+
+    //Add/update više kodiranih vrijednosti odjednom
+    public void addAllEncoded(Map<Long, byte[]> entries) throws RemoteException {
+        Map<Long, T> decoded = new TreeMap<>();
+        for(Map.Entry<Long, byte[]> entry : entries.entrySet())
+            decoded.put(entry.getKey(), decodeUnchecked(entry.getValue()));
+        addAll(decoded);
+    }
+
+    /**
+     * Kodirana kopija cijelog spremišta sortirana po identifikatoru
+     *
+     * @return sortirana kopija
+     */
+    public SortedMap<Long, byte[]> snapshotEncoded() {
+        return encodeAll(snapshot());
+    }
+
+    /**
+     * Izdvoji parove u intervalu prstena (from, to] kao kodirane vrijednosti
+     *
+     * @param from
+     * @param to
+     * @return izdvojeni parovi sortirani po identifikatoru
+     */
+    public SortedMap<Long, byte[]> removeRangeEncoded(long from, long to) {
+        return encodeAll(removeRange(from, to));
+    }
+
+    /**
+     * Kao scanRange, ali s kodiranim vrijednostima
+     *
+     * @param from
+     * @param to
+     * @param limit
+     * @return parovi sortirani po identifikatoru
+     */
+    public SortedMap<Long, byte[]> scanRangeEncoded(long from, long to, int limit) {
+        return encodeAll(scanRange(from, to, limit));
+    }
+
+    protected byte[] encode(T value) throws RemoteException {
+        try {
+            return codec.encode(value);
+        } catch (IOException e) {
+            throw new RemoteException("Can't encode value", e);
+        }
+    }
+
+    protected T decode(byte[] bytes) throws RemoteException {
+        try {
+            return codec.decode(bytes);
+        } catch (IOException e) {
+            throw new RemoteException("Can't decode value", e);
+        }
+    }
+
+    protected byte[] encodeUnchecked(T value) {
+        try {
+            return codec.encode(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    protected T decodeUnchecked(byte[] bytes) {
+        try {
+            return codec.decode(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private SortedMap<Long, byte[]> encodeAll(Map<Long, T> values) {
+        SortedMap<Long, byte[]> encoded = new TreeMap<>();
+        try {
+            for(Map.Entry<Long, T> entry : values.entrySet())
+                encoded.put(entry.getKey(), codec.encode(entry.getValue()));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return encoded;
+    }
+
+    //prebaci sve parove iz view-a u target
+    private void moveAll(ConcurrentNavigableMap<Long, T> view, Map<Long, T> target) {
+        for(long key : view.keySet()) {
+            T value = view.remove(key);
+            if(value != null)
+                target.put(key, value);
+        }
+    }
 }
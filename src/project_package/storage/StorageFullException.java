@@ -0,0 +1,18 @@
+package project_package.storage;
+
+import java.rmi.RemoteException;
+
+/**
+ * Baca ju spremište kad nova vrijednost ne stane u zadani memorijski limit
+ *
+ * @author Iva Tutiš
+ *
+ */
+public class StorageFullException extends RemoteException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StorageFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package project_package.storage;
+
+/**
+ * Kada trajno spremište radi fsync write-ahead loga
+ *
+ * @author Iva Tutiš
+ *
+ */
+public enum SyncMode {
+
+    /**
+     * Svaka operacija sama zapisuje i fsync-a svoj zapis
+     */
+    PER_OPERATION,
+
+    /**
+     * Operacije koje stignu dok traje jedan fsync se zapisuju i fsync-aju zajedno (group commit)
+     */
+    GROUP_COMMIT
+}
@@ -0,0 +1,19 @@
+package project_package.storage;
+
+import java.io.IOException;
+
+/**
+ * Pretvara vrijednosti u bajtove i natrag.
+ * Spremišta koja drže bajtove (EncodedStorage, OffHeapStorage, LogStructuredStorage) ih koriste za
+ * zapis vrijednosti, a čvorovi za prijenos vrijednosti mrežom bez Java serijalizacije objekata.
+ * Svi čvorovi u mreži moraju koristiti isti codec.
+ *
+ * @author Iva Tutiš
+ * @param <T> tip vrijednosti
+ */
+public interface ValueCodec<T> {
+
+    public byte[] encode(T value) throws IOException;
+
+    public T decode(byte[] bytes) throws IOException;
+}
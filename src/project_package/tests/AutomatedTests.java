@@ -1,15 +1,61 @@
 package project_package.tests;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.rmi.RemoteException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
 
+import project_package.network.AsyncExecutor;
+import project_package.network.AtomicOperation;
+import project_package.network.BatchResult;
+import project_package.network.BusyException;
+import project_package.network.ExecutionMode;
+import project_package.network.LookupResult;
 import project_package.network.Network;
+import project_package.network.NioTransport;
 import project_package.network.Node;
+import project_package.network.NotResponsibleException;
+import project_package.network.RangeTransfer;
+import project_package.network.ReadMode;
+import project_package.network.RingScan;
+import project_package.network.RmiTransport;
+import project_package.network.ScanPage;
+import project_package.network.Transport;
+import project_package.service.Fnv1aHashFunction;
+import project_package.service.HashFunction;
+import project_package.service.KeyService;
+import project_package.service.Sha1HashFunction;
+import project_package.simulation.LookupStats;
+import project_package.simulation.Simulation;
+import project_package.storage.Codecs;
+import project_package.storage.EncodedEntries;
+import project_package.storage.LogStructuredStorage;
+import project_package.storage.Storage;
+import project_package.storage.SyncMode;
+import project_package.storage.ValueCodec;
 
 /**
  * This class provides some static methods to perform performance project_package.tests.
@@ -174,5 +220,1270 @@ public class AutomatedTests {
         }
     }
 
-}
+    /**
+     * Batch testovi
+     * Stvori n čvorova, insert/get/delete v vrijednosti jednu po jednu i kao jedan batch
+     *
+     * @param nodes - broj čvorova
+     * @param n - broj vrijednosti
+     */
+    public static void testBatch(int nodes, int n) {
+        try {
+            long start, end;
+            List<String> keys = new ArrayList<>();
+            Map<String, String> pairs = new HashMap<>();
+            for(int i=0; i<n; i++) {
+                keys.add("key" + i);
+                pairs.put("key" + i, "value" + i);
+            }
+
+            System.out.println("Starting batch test with " + nodes + " nodes and " + n + " keys.");
+            Network<String> network = new Node<>("node");
+            for(int i=0; i<nodes; i++)
+                new Node<>("node" +i, (Node<String>) network);
+
+            start = System.currentTimeMillis();
+            for(String key : keys)
+                network.addKeyValuePair(key, pairs.get(key));
+            end = System.currentTimeMillis();
+            System.out.println("Single put time: " + (int)(end-start) + " miliseconds");
+
+            start = System.currentTimeMillis();
+            for(String key : keys)
+                network.getValue(key);
+            end = System.currentTimeMillis();
+            System.out.println("Single get time: " + (int)(end-start) + " miliseconds");
+
+            start = System.currentTimeMillis();
+            BatchResult<String> put = network.addKeyValuePairs(pairs);
+            end = System.currentTimeMillis();
+            System.out.println("Batch put time: " + (int)(end-start) + " miliseconds (" + put + ")");
+
+            start = System.currentTimeMillis();
+            BatchResult<String> get = network.getValues(keys);
+            end = System.currentTimeMillis();
+            System.out.println("Batch get time: " + (int)(end-start) + " miliseconds (" + get + ")");
+
+            start = System.currentTimeMillis();
+            BatchResult<String> delete = network.deleteValues(keys);
+            end = System.currentTimeMillis();
+            System.out.println("Batch delete time: " + (int)(end-start) + " miliseconds (" + delete + ")");
+            System.out.println("Values left: " + network.getValues(keys).getValues().size());
+        } catch (RemoteException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Async testovi
+     *      sinkroni put/get iz 4 dretve klijenta
+     *      asinkroni put/get iz jedne dretve klijenta (zahtjevi u tijeku ograničeni limitom)
+     * Isprintaj propusnost i brojače izvršitelja
+     *
+     * @param nodes - broj čvorova
+     * @param n - broj vrijednosti
+     */
+    public static void testAsync(int nodes, int n) {
+        try {
+            final int threads = 4;
+            final String[] keys = new String[n];
+            for(int i=0; i<n; i++)
+                keys[i] = "key" + i;
+
+            System.out.println("Starting async test with " + nodes + " nodes and " + n + " operations.");
+            final Node<String> network = new Node<>("node");
+            for(int i=0; i<nodes; i++)
+                new Node<>("node" +i, network);
+
+            for(int phase=0; phase<2; phase++) {
+                final boolean put = phase == 0;
+                final CountDownLatch done = new CountDownLatch(threads);
+                long start = System.nanoTime();
+                for(int t=0; t<threads; t++) {
+                    final int thread = t;
+                    new Thread() {
+                        public void run() {
+                            for(int i=thread; i<n; i+=threads) {
+                                if(put)
+                                    network.addKeyValuePair(keys[i], "value" + i);
+                                else
+                                    network.getValue(keys[i]);
+                            }
+                            done.countDown();
+                        }
+                    }.start();
+                }
+                done.await();
+                long end = System.nanoTime();
+                System.out.println("Sync " + (put ? "put" : "get") + " (" + threads + " threads): "
+                        + (long)(n / ((end - start) / 1e9)) + " ops/s");
+            }
+
+            network.setAsyncLimits(16, 1024, AsyncExecutor.DEFAULT_TIMEOUT);
+            for(int phase=0; phase<2; phase++) {
+                boolean put = phase == 0;
+                List<CompletableFuture<?>> futures = new ArrayList<>(n);
+                long start = System.nanoTime();
+                for(int i=0; i<n; i++)
+                    futures.add(put ? network.addKeyValuePairAsync(keys[i], "value" + i) : network.getValueAsync(keys[i]));
+                int failed = 0;
+                for(CompletableFuture<?> future : futures) {
+                    try {
+                        future.join();
+                    } catch (RuntimeException e) {
+                        failed++;
+                    }
+                }
+                long end = System.nanoTime();
+                System.out.println("Async " + (put ? "put" : "get") + " (1 thread, 16 connections): "
+                        + (long)(n / ((end - start) / 1e9)) + " ops/s, " + failed + " failed");
+            }
+            AsyncExecutor executor = network.getAsyncExecutor();
+            System.out.println("Completed: " + executor.getCompleted() + ", timed out: " + executor.getTimedOut()
+                    + ", rejected: " + executor.getRejected());
+        } catch (RemoteException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Scan testovi
+     *      listAllValues (čvor po čvor, sve u jednoj listi)
+     *      streaming scan s 1, 4 i 16 paralelnih segmenata
+     *      scan prekinut nakon 10 parova
+     *      range scan jedne osmine prstena po stranicama
+     *
+     * @param nodes - broj čvorova
+     * @param n - broj vrijednosti
+     */
+    public static void testScan(int nodes, int n) {
+        try {
+            long start, end;
+            System.out.println("Starting scan test with " + nodes + " nodes and " + n + " values.");
+            Node<String> network = new Node<>("node");
+            for(int i=0; i<nodes; i++)
+                new Node<>("node" +i, network);
+            Map<String, String> pairs = new HashMap<>();
+            for(int i=0; i<n; i++)
+                pairs.put("key" + i, "value" + i);
+            network.addKeyValuePairs(pairs);
+
+            start = System.currentTimeMillis();
+            List<String> listed = network.listAllValues();
+            end = System.currentTimeMillis();
+            System.out.println("listAllValues: " + listed.size() + " values, " + (int)(end-start) + " miliseconds");
+
+            for(int parallelism : new int[] {1, 4, 16}) {
+                start = System.currentTimeMillis();
+                List<String> scanned = new ArrayList<>();
+                try (RingScan<String> scan = network.scan(parallelism, RingScan.DEFAULT_CHUNK_SIZE)) {
+                    while(scan.hasNext())
+                        scanned.add(scan.next().getValue());
+                }
+                end = System.currentTimeMillis();
+                System.out.println("Scan (parallelism " + parallelism + "): " + scanned.size() + " values, " + (int)(end-start) + " miliseconds, "
+                        + mismatches(listed, scanned) + " mismatched");
+            }
+
+            start = System.currentTimeMillis();
+            long first;
+            try (java.util.stream.Stream<Map.Entry<Long, String>> stream = network.scan().stream()) {
+                first = stream.limit(10).count();
+            }
+            end = System.currentTimeMillis();
+            System.out.println("Scan of first " + first + " values: " + (int)(end-start) + " miliseconds");
+
+            //range scan jedne osmine prstena, stranicu po stranicu
+            start = System.currentTimeMillis();
+            int pages = 1;
+            int ranged = 0;
+            ScanPage<String> page = network.scan(0, 1048576 / 8 - 1, RingScan.DEFAULT_CHUNK_SIZE);
+            while(true) {
+                ranged += page.getEntries().size();
+                if(!page.hasMore())
+                    break;
+                page = network.scan(page.getContinuationToken(), RingScan.DEFAULT_CHUNK_SIZE);
+                pages++;
+            }
+            end = System.currentTimeMillis();
+            System.out.println("Range scan of 1/8 of the ring: " + ranged + " values in " + pages + " pages, " + (int)(end-start) + " miliseconds");
+        } catch (RemoteException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //broj vrijednosti koje su samo u jednoj od dvije liste (s ponavljanjima)
+    private static int mismatches(List<String> expected, List<String> actual) {
+        Map<String, Integer> counts = new HashMap<>();
+        for(String value : expected)
+            counts.merge(value, 1, Integer::sum);
+        for(String value : actual)
+            counts.merge(value, -1, Integer::sum);
+        int mismatched = 0;
+        for(int count : counts.values())
+            mismatched += Math.abs(count);
+        return mismatched;
+    }
+
+    /**
+     * Replikacijski testovi (za R = 1, 2, 3)
+     *      put n vrijednosti (vlasnik šalje svaku i replikama)
+     *      4 dretve čitaju n puta, 90% čitanja ide na jedan popularni ključ (LEAST_LOADED)
+     *      koliko čitanja je poslužio najopterećeniji čvor
+     *      quorum čitanje i ispravnost nakon odlaska vlasnika popularnog ključa
+     *
+     * @param nodes - broj čvorova
+     * @param n - broj vrijednosti i čitanja
+     */
+    public static void testReplication(int nodes, int n) {
+        final int threads = 4;
+        int originalFactor = Node.getDefaultReplicationFactor();
+        ReadMode originalMode = Node.getDefaultReadMode();
+        System.out.println("Starting replication test with " + nodes + " nodes and " + n + " values.");
+        try {
+            for(int factor=1; factor<=3; factor++) {
+                Node.setDefaultReplicationFactor(factor);
+                Node.setDefaultReadMode(ReadMode.LEAST_LOADED);
+                final Node<String> network = new Node<>("replicated" + factor);
+                //čitanja moraju doći do kopija, a ne do kopije popularnog ključa na čvoru koji čita
+                network.setPathCaching(false);
+                List<Node<String>> ring = new ArrayList<>();
+                ring.add(network);
+                for(int i=0; i<nodes; i++)
+                    ring.add(new Node<>("replicated" + factor + "_" + i, network));
+
+                long start = System.nanoTime();
+                for(int i=0; i<n; i++)
+                    network.addKeyValuePair("key" + i, "value" + i);
+                long end = System.nanoTime();
+                System.out.println("R=" + factor + " put: " + (long)(n / ((end - start) / 1e9)) + " ops/s");
+
+                long[] servedBefore = new long[ring.size()];
+                for(int i=0; i<ring.size(); i++)
+                    servedBefore[i] = ring.get(i).getServedReads();
+                final CountDownLatch done = new CountDownLatch(threads);
+                final AtomicInteger misses = new AtomicInteger();
+                start = System.nanoTime();
+                for(int t=0; t<threads; t++) {
+                    final Random random = new Random(t);
+                    new Thread() {
+                        public void run() {
+                            for(int i=0; i<n/threads; i++) {
+                                int key = random.nextInt(10) < 9 ? 0 : random.nextInt(n);
+                                if(!("value" + key).equals(network.getValue("key" + key)))
+                                    misses.incrementAndGet();
+                            }
+                            done.countDown();
+                        }
+                    }.start();
+                }
+                done.await();
+                end = System.nanoTime();
+                long total = 0;
+                long hottest = 0;
+                for(int i=0; i<ring.size(); i++) {
+                    long served = ring.get(i).getServedReads() - servedBefore[i];
+                    total += served;
+                    hottest = Math.max(hottest, served);
+                }
+                System.out.println("R=" + factor + " skewed get (" + threads + " threads): "
+                        + (long)(n / ((end - start) / 1e9)) + " ops/s, hottest node served "
+                        + (total == 0 ? 0 : 100 * hottest / total) + "% of reads, " + misses.get() + " wrong");
+
+                if(factor > 1) {
+                    network.setReadMode(ReadMode.QUORUM);
+                    start = System.nanoTime();
+                    int wrong = 0;
+                    for(int i=0; i<n; i++)
+                        if(!("value" + i).equals(network.getValue("key" + i)))
+                            wrong++;
+                    end = System.nanoTime();
+                    System.out.println("R=" + factor + " quorum get: " + (long)(n / ((end - start) / 1e9)) + " ops/s, " + wrong + " wrong");
+
+                    //vlasnik popularnog ključa odlazi, replike ga moraju zamijeniti
+                    network.setReadMode(ReadMode.LEAST_LOADED);
+                    Node<String> owner = network.lookupNodeResponsibleFor(KeyService.generateNodeIndex("key0", 1048576));
+                    if(owner != network) {
+                        owner.leaveCurrentNetwork();
+                        wrong = 0;
+                        for(int i=0; i<n; i++)
+                            if(!("value" + i).equals(network.getValue("key" + i)))
+                                wrong++;
+                        System.out.println("R=" + factor + " after the owner of the hot key left: " + wrong + " wrong");
+                    }
+                }
+            }
+        } catch (RemoteException | InterruptedException e) {
+            e.printStackTrace();
+        } finally {
+            Node.setDefaultReplicationFactor(originalFactor);
+            Node.setDefaultReadMode(originalMode);
+        }
+    }
+
+    /**
+     * Testovi popularnih ključeva
+     *      4 klijentska čvora čitaju n puta po Zipfovoj razdiobi (1000 ključeva, s = 1)
+     *      bez i s kopijama popularnih vrijednosti na čvorovima koji ih čitaju
+     *      koliko čitanja je poslužio najopterećeniji čvor, hit rate cachea, popularni ključevi vlasnika
+     *      izmjena popularnog ključa i čitanje s drugog čvora odmah nakon nje (invalidacija)
+     *
+     * @param nodes - broj čvorova
+     * @param n - broj čitanja
+     */
+    public static void testHotKeys(int nodes, int n) {
+        final int threads = 4;
+        final int keys = 1000;
+        final double[] cdf = new double[keys];
+        double sum = 0;
+        for(int i=0; i<keys; i++) {
+            sum += 1.0 / (i + 1);
+            cdf[i] = sum;
+        }
+        for(int i=0; i<keys; i++)
+            cdf[i] /= sum;
+
+        try {
+            System.out.println("Starting hot key test with " + nodes + " nodes and " + n + " Zipf reads.");
+            final Node<String> network = new Node<>("node");
+            final List<Node<String>> ring = new ArrayList<>();
+            ring.add(network);
+            for(int i=0; i<nodes; i++)
+                ring.add(new Node<>("node" +i, network));
+            for(int i=0; i<keys; i++)
+                network.addKeyValuePair("key" + i, "value" + i);
+
+            for(int phase=0; phase<2; phase++) {
+                boolean caching = phase == 1;
+                for(Node<String> node : ring)
+                    node.setPathCaching(caching);
+                long[] servedBefore = new long[ring.size()];
+                for(int i=0; i<ring.size(); i++)
+                    servedBefore[i] = ring.get(i).getServedReads();
+                final CountDownLatch done = new CountDownLatch(threads);
+                long start = System.nanoTime();
+                for(int t=0; t<threads; t++) {
+                    final Node<String> client = ring.get(t % ring.size());
+                    final Random random = new Random(t);
+                    new Thread() {
+                        public void run() {
+                            for(int i=0; i<n/threads; i++) {
+                                int key = Arrays.binarySearch(cdf, random.nextDouble());
+                                client.getValue("key" + (key < 0 ? Math.min(keys - 1, -key - 1) : key));
+                            }
+                            done.countDown();
+                        }
+                    }.start();
+                }
+                done.await();
+                long end = System.nanoTime();
+                long total = 0;
+                long hottest = 0;
+                Node<String> hottestNode = network;
+                for(int i=0; i<ring.size(); i++) {
+                    long served = ring.get(i).getServedReads() - servedBefore[i];
+                    total += served;
+                    if(served > hottest) {
+                        hottest = served;
+                        hottestNode = ring.get(i);
+                    }
+                }
+                long hits = 0;
+                long misses = 0;
+                for(int t=0; t<threads; t++) {
+                    hits += ring.get(t % ring.size()).getPathCache().getHits();
+                    misses += ring.get(t % ring.size()).getPathCache().getMisses();
+                }
+                System.out.println((caching ? "Path caching" : "Owner only  ") + ": " + (long)(n / ((end - start) / 1e9)) + " ops/s, "
+                        + "hottest node served " + hottest + " of " + total + " owner reads, cache hit rate "
+                        + (hits + misses == 0 ? 0 : 100 * hits / (hits + misses)) + "%");
+                System.out.println("Hot keys of the hottest node: " + hottestNode.getHotKeys().getHotKeys());
+            }
+
+            //izmjena popularnog ključa kroz drugi čvor; klijenti s kopijom moraju odmah vidjeti novu vrijednost
+            int stale = 0;
+            Node<String> writer = ring.get(ring.size() - 1);
+            for(int i=0; i<100; i++) {
+                writer.addKeyValuePair("key0", "new" + i);
+                for(int t=0; t<threads; t++)
+                    if(!("new" + i).equals(ring.get(t % ring.size()).getValue("key0")))
+                        stale++;
+            }
+            System.out.println("Stale reads after updating a hot key: " + stale + " of " + (100 * threads));
+        } catch (RemoteException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Testovi prijenosa intervala kod join/leave
+     *      čvor s n parova, novi čvor se pridruži i napusti mrežu
+     *      jedan dio (staro ponašanje: sve u jednoj poruci) i dijelovi od 1000 parova s 1 i 4 streama
+     *      za vrijeme prijenosa druga dretva piše, pa se provjeri da nijedno pisanje nije izgubljeno
+     *
+     * @param n - broj parova
+     */
+    public static void testTransfer(int n) {
+        try {
+            System.out.println("Starting transfer test with " + n + " values.");
+            final Node<String> network = new Node<>("transfer");
+            Map<String, String> pairs = new HashMap<>();
+            for(int i=0; i<n; i++)
+                pairs.put("key" + i, "value" + i);
+            network.addKeyValuePairs(pairs);
+
+            int[][] options = {{Math.max(1, n), 1}, {1000, 1}, {1000, 4}};
+            for(int[] option : options) {
+                //pisanja za vrijeme join/leave idu preko prvog čvora
+                final AtomicInteger written = new AtomicInteger();
+                final CountDownLatch stop = new CountDownLatch(1);
+                Thread writer = new Thread() {
+                    public void run() {
+                        while(stop.getCount() > 0) {
+                            int i = written.get();
+                            network.addKeyValuePair("written" + (i % 1000), "round" + i);
+                            written.incrementAndGet();
+                        }
+                    }
+                };
+                writer.start();
+
+                Node<String> joining = new Node<>("transfer" + option[0] + "_" + option[1]);
+                joining.setTransferOptions(option[0], option[1]);
+                long start = System.nanoTime();
+                joining.joinNetworkWithNode(network);
+                long end = System.nanoTime();
+                RangeTransfer transfer = joining.getLastTransfer();
+                System.out.println("Join  (chunk " + option[0] + ", " + option[1] + " streams): " + (end - start) / 1000000 + " ms, "
+                        + transfer.getEntries() + " pairs in " + transfer.getChunks() + " chunks, " + transfer.getBytes() + " bytes");
+
+                start = System.nanoTime();
+                joining.leaveCurrentNetwork();
+                end = System.nanoTime();
+                transfer = joining.getLastTransfer();
+                System.out.println("Leave (chunk " + option[0] + ", " + option[1] + " streams): " + (end - start) / 1000000 + " ms, "
+                        + transfer.getEntries() + " pairs in " + transfer.getChunks() + " chunks");
+
+                stop.countDown();
+                writer.join();
+                int total = written.get();
+                int lost = 0;
+                for(int i=Math.max(0, total - 1000); i<total; i++)
+                    if(!("round" + i).equals(network.getValue("written" + (i % 1000))))
+                        lost++;
+                int missing = 0;
+                for(int i=0; i<n; i++)
+                    if(network.getValue("key" + i) == null)
+                        missing++;
+                System.out.println("Concurrent writes: " + total + ", lost: " + lost + ", missing pairs: " + missing);
+            }
+        } catch (RemoteException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Testovi atomarnih operacija
+     *      4 dretve povećavaju isti brojač n puta: get + put kod klijenta i increment kod vlasnika
+     *      compare-and-set petlja, putIfAbsent utrka za isti ključ, merge "append" s više dretvi
+     *      isprintaj propusnost i izgubljene izmjene
+     *
+     * @param nodes - broj čvorova
+     * @param n - broj izmjena
+     */
+    public static void testAtomic(int nodes, int n) {
+        final int threads = 4;
+        try {
+            System.out.println("Starting atomic operations test with " + nodes + " nodes and " + n + " updates.");
+            final Node<String> network = new Node<>("atomic");
+            final List<Node<String>> ring = new ArrayList<>();
+            ring.add(network);
+            for(int i=0; i<nodes; i++)
+                ring.add(new Node<>("atomic" + i, network));
+
+            for(int mode=0; mode<3; mode++) {
+                final int m = mode;
+                final String key = "counter" + mode;
+                //increment brojač stvara sam (od "0"), ostali načini čitaju postojeću vrijednost
+                if(m != 1)
+                    network.addKeyValuePair(key, "0");
+                final CountDownLatch done = new CountDownLatch(threads);
+                long start = System.nanoTime();
+                for(int t=0; t<threads; t++) {
+                    final Node<String> client = ring.get(t % ring.size());
+                    new Thread() {
+                        public void run() {
+                            try {
+                                for(int i=0; i<n/threads; i++) {
+                                    if(m == 0) {
+                                        long value = Long.parseLong(client.getValue(key));
+                                        client.addKeyValuePair(key, String.valueOf(value + 1));
+                                    } else if(m == 1)
+                                        client.increment(key, 1, "0");
+                                    else {
+                                        while(true) {
+                                            String value = client.getValue(key);
+                                            if(client.compareAndSet(key, value, String.valueOf(Long.parseLong(value) + 1)))
+                                                break;
+                                        }
+                                    }
+                                }
+                            } catch (RemoteException e) {
+                                e.printStackTrace();
+                            }
+                            done.countDown();
+                        }
+                    }.start();
+                }
+                done.await();
+                long end = System.nanoTime();
+                long expected = threads * (n / threads);
+                long actual = Long.parseLong(network.getValue(key));
+                System.out.println((m == 0 ? "get + put       " : m == 1 ? "increment       " : "compareAndSet   ")
+                        + ": " + (long)(expected / ((end - start) / 1e9)) + " ops/s, counter " + actual + " of " + expected
+                        + ", lost updates: " + (expected - actual));
+            }
+
+            //samo jedan putIfAbsent smije uspjeti
+            final AtomicInteger winners = new AtomicInteger();
+            final CountDownLatch raced = new CountDownLatch(threads);
+            for(int t=0; t<threads; t++) {
+                final Node<String> client = ring.get(t % ring.size());
+                final String value = "winner" + t;
+                new Thread() {
+                    public void run() {
+                        try {
+                            if(client.putIfAbsent("lock", value) == null)
+                                winners.incrementAndGet();
+                        } catch (RemoteException e) {
+                            e.printStackTrace();
+                        }
+                        raced.countDown();
+                    }
+                }.start();
+            }
+            raced.await();
+            System.out.println("putIfAbsent race: " + winners.get() + " winner(s), value " + network.getValue("lock"));
+
+            //svaka dretva doda svoje slovo n/threads puta
+            network.addKeyValuePair("log", "");
+            final CountDownLatch merged = new CountDownLatch(threads);
+            for(int t=0; t<threads; t++) {
+                final Node<String> client = ring.get(t % ring.size());
+                final String letter = String.valueOf((char) ('a' + t));
+                new Thread() {
+                    public void run() {
+                        try {
+                            for(int i=0; i<n/threads; i++)
+                                client.merge("log", letter, "append");
+                        } catch (RemoteException e) {
+                            e.printStackTrace();
+                        }
+                        merged.countDown();
+                    }
+                }.start();
+            }
+            merged.await();
+            System.out.println("merge append: " + network.getValue("log").length() + " of " + threads * (n / threads) + " letters");
+        } catch (RemoteException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Testovi transporta na localhostu: izravni pozivi (reference u istom procesu), RMI i NIO
+     *      put n vrijednosti, pa n get zahtjeva s 1 i 8 dretvi: ops/s i p99 latencija
+     *      NIO s najviše 256 zahtjeva u tijeku iz jedne dretve (bez čekanja na svaki odgovor)
+     *
+     * @param nodes - broj čvorova
+     * @param n - broj vrijednosti i zahtjeva
+     */
+    public static void testTransport(int nodes, int n) {
+        System.out.println("Starting transport test with " + nodes + " nodes and " + n + " values.");
+        for(String backend : new String[] {"direct", "rmi", "nio"}) {
+            final List<Node<String>> ring = new ArrayList<>();
+            try {
+                final Node<String> network = new Node<>(backend);
+                ring.add(network);
+                for(int i=0; i<nodes; i++)
+                    ring.add(new Node<>(backend + i, network));
+                for(Node<String> node : ring) {
+                    if(backend.equals("rmi"))
+                        node.startTransport(new RmiTransport());
+                    else if(backend.equals("nio"))
+                        node.startTransport(new NioTransport());
+                }
+
+                long start = System.nanoTime();
+                for(int i=0; i<n; i++)
+                    network.addKeyValuePair("key" + i, "value" + i);
+                long end = System.nanoTime();
+                System.out.println(backend + " put: " + (long)(n / ((end - start) / 1e9)) + " ops/s");
+
+                for(int threads : new int[] {1, 8}) {
+                    final long[][] latencies = new long[threads][n / threads];
+                    final AtomicInteger wrong = new AtomicInteger();
+                    final CountDownLatch done = new CountDownLatch(threads);
+                    start = System.nanoTime();
+                    for(int t=0; t<threads; t++) {
+                        final Node<String> client = ring.get(t % ring.size());
+                        final long[] latency = latencies[t];
+                        final Random random = new Random(t);
+                        new Thread() {
+                            public void run() {
+                                for(int i=0; i<latency.length; i++) {
+                                    int key = random.nextInt(n);
+                                    long begin = System.nanoTime();
+                                    String value = client.getValue("key" + key);
+                                    latency[i] = System.nanoTime() - begin;
+                                    if(!("value" + key).equals(value))
+                                        wrong.incrementAndGet();
+                                }
+                                done.countDown();
+                            }
+                        }.start();
+                    }
+                    done.await();
+                    end = System.nanoTime();
+                    long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+                    System.out.println(backend + " get (" + threads + " threads): " + (long)(all.length / ((end - start) / 1e9)) + " ops/s, p99 "
+                            + (all.length == 0 ? 0 : all[(int) (0.99 * (all.length - 1))] / 1000) + " us, " + wrong.get() + " wrong");
+                }
+
+                if(backend.equals("nio")) {
+                    //zahtjevi se šalju vlasnicima izravno preko transporta, bez čekanja na odgovor prethodnog
+                    Transport transport = network.getTransport();
+                    long[] ids = new long[n];
+                    String[] addresses = new String[n];
+                    for(int i=0; i<n; i++) {
+                        ids[i] = KeyService.generateNodeIndex("key" + i, 1048576);
+                        addresses[i] = network.lookupNodeResponsibleFor(ids[i]).getTransportAddress();
+                    }
+                    final int window = 256;
+                    final Semaphore outstanding = new Semaphore(window);
+                    final AtomicInteger missing = new AtomicInteger();
+                    start = System.nanoTime();
+                    for(int i=0; i<n; i++) {
+                        outstanding.acquire();
+                        transport.send(addresses[i], Transport.GET, ids[i], null).whenComplete((value, error) -> {
+                            if(value == null)
+                                missing.incrementAndGet();
+                            outstanding.release();
+                        });
+                    }
+                    outstanding.acquire(window);
+                    end = System.nanoTime();
+                    System.out.println(backend + " get (pipelined, " + window + " in flight): " + (long)(n / ((end - start) / 1e9))
+                            + " ops/s, " + missing.get() + " missing");
+                }
+            } catch (IOException | InterruptedException e) {
+                e.printStackTrace();
+            } finally {
+                for(Node<String> node : ring)
+                    node.stopTransport();
+            }
+        }
+    }
+
+    /**
+     * Test spajanja istovremenih čitanja: 32 dretve istog čvora čitaju ukupno n puta 8 popularnih ključeva
+     * preko RMI transporta (bez kopija popularnih vrijednosti), bez i sa spajanjem zahtjeva.
+     * Isprintaj ops/s, broj čitanja koja su vlasnici stvarno poslužili te izvršene i spojene lookupove i čitanja
+     *
+     * @param nodes - broj čvorova
+     * @param n - broj čitanja
+     */
+    public static void testCoalescing(int nodes, int n) {
+        System.out.println("Starting coalescing test with " + nodes + " nodes and " + n + " reads.");
+        final int threads = 32;
+        final int hot = 8;
+        final List<Node<String>> ring = new ArrayList<>();
+        try {
+            final Node<String> network = new Node<>("coalescing");
+            ring.add(network);
+            for(int i=0; i<nodes; i++)
+                ring.add(new Node<>("coalescing" + i, network));
+            for(Node<String> node : ring) {
+                node.setPathCaching(false);
+                node.startTransport(new RmiTransport());
+            }
+            for(int i=0; i<hot; i++)
+                network.addKeyValuePair("hot" + i, "value" + i);
+
+            for(boolean coalescing : new boolean[] {false, true}) {
+                network.setCoalescing(coalescing);
+                network.getLocationCache().clear();
+                long lookups = network.getOwnerLookups().getExecuted();
+                long coalescedLookups = network.getOwnerLookups().getCoalesced();
+                long reads = network.getOwnerReads().getExecuted();
+                long coalescedReads = network.getOwnerReads().getCoalesced();
+                long served = 0;
+                for(Node<String> node : ring)
+                    served -= node.getServedReads();
+
+                final AtomicInteger wrong = new AtomicInteger();
+                final CountDownLatch done = new CountDownLatch(threads);
+                long start = System.nanoTime();
+                for(int t=0; t<threads; t++) {
+                    final Random random = new Random(t);
+                    new Thread() {
+                        public void run() {
+                            for(int i=0; i<n / threads; i++) {
+                                int key = random.nextInt(hot);
+                                if(!("value" + key).equals(network.getValue("hot" + key)))
+                                    wrong.incrementAndGet();
+                            }
+                            done.countDown();
+                        }
+                    }.start();
+                }
+                done.await();
+                long end = System.nanoTime();
+                for(Node<String> node : ring)
+                    served += node.getServedReads();
+                System.out.println((coalescing ? "coalescing" : "no coalescing") + ": " + (long)((n / threads * threads) / ((end - start) / 1e9))
+                        + " ops/s, owners served " + served + " reads, lookups "
+                        + (network.getOwnerLookups().getExecuted() - lookups) + " executed / "
+                        + (network.getOwnerLookups().getCoalesced() - coalescedLookups) + " coalesced, reads "
+                        + (network.getOwnerReads().getExecuted() - reads) + " executed / "
+                        + (network.getOwnerReads().getCoalesced() - coalescedReads) + " coalesced, " + wrong.get() + " wrong");
+            }
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        } finally {
+            for(Node<String> node : ring)
+                node.stopTransport();
+        }
+    }
+
+    /**
+     * Test izvršavanja dolaznih zahtjeva kod preopterećenja. Svaki zahtjev je atomarna operacija koja kod vlasnika
+     * računa CRC32 vrijednosti od 256 KB (bez promjene vrijednosti). Prvo se izmjeri kapacitet (jedna dretva),
+     * a onda 512 klijentskih dretvi šalje n zahtjeva po rasporedu, dvostruko brže od kapaciteta, u DIRECT načinu
+     * i u BOUNDED načinu (4 dretve po čvoru, red od 64 zahtjeva, najviše 100 ms u redu).
+     * Isprintaj ops/s, p50/p99 latenciju prihvaćenih zahtjeva i broj odbijenih (busy) zahtjeva
+     *
+     * @param nodes - broj čvorova
+     * @param n - broj zahtjeva
+     */
+    public static void testRequestExecution(int nodes, int n) {
+        System.out.println("Starting request execution test with " + nodes + " nodes and " + n + " requests.");
+        final int clients = 512;
+        try {
+            final List<Node<String>> ring = new ArrayList<>();
+            final Node<String> network = new Node<>("execution");
+            ring.add(network);
+            for(int i=0; i<nodes; i++)
+                ring.add(new Node<>("execution" + i, network));
+            final int values = 100;
+            final long[] ids = new long[values];
+            final List<Node<String>> owners = new ArrayList<>();
+            char[] chars = new char[256 << 10];
+            Arrays.fill(chars, 'v');
+            final String value = new String(chars);
+            for(int i=0; i<values; i++) {
+                network.addKeyValuePair("key" + i, value);
+                ids[i] = KeyService.generateNodeIndex("key" + i, 1048576);
+                owners.add(network.lookupNodeResponsibleFor(ids[i]));
+            }
+            final AtomicOperation<String> checksum = current -> {
+                CRC32 crc = new CRC32();
+                crc.update(current.getBytes(StandardCharsets.UTF_8));
+                return crc.getValue() == 0 ? current + " " : current;
+            };
+
+            //prvi krug zagrijava JIT, drugi mjeri kapacitet
+            Random random = new Random(42);
+            int calibration = Math.max(100, n / 10);
+            long start = 0;
+            for(int round=0; round<2; round++) {
+                start = System.nanoTime();
+                for(int i=0; i<calibration; i++) {
+                    int key = random.nextInt(values);
+                    owners.get(key).applyAtomic(ids[key], checksum, false);
+                }
+            }
+            final double capacity = calibration / ((System.nanoTime() - start) / 1e9);
+            final long interval = (long) (1e9 / (2 * capacity));
+            System.out.println("Capacity: " + (long) capacity + " ops/s, offered load: " + (long) (2 * capacity) + " ops/s");
+
+            for(ExecutionMode mode : ExecutionMode.values()) {
+                for(Node<String> node : ring)
+                    node.setRequestExecution(mode, 4, 64, 100);
+                final long[][] latencies = new long[clients][n / clients + 1];
+                final int[] accepted = new int[clients];
+                final AtomicInteger busy = new AtomicInteger();
+                final CountDownLatch done = new CountDownLatch(clients);
+                final long begin = System.nanoTime() + 10000000;
+                for(int t=0; t<clients; t++) {
+                    final int client = t;
+                    final Random keys = new Random(t);
+                    new Thread() {
+                        public void run() {
+                            //zahtjev i ide u trenutku begin + i * interval, od dretve i % clients
+                            for(int i=client; i<n; i+=clients) {
+                                long scheduled = begin + i * interval;
+                                long wait = scheduled - System.nanoTime();
+                                if(wait > 0)
+                                    LockSupport.parkNanos(wait);
+                                int key = keys.nextInt(values);
+                                long sent = System.nanoTime();
+                                try {
+                                    owners.get(key).applyAtomic(ids[key], checksum, false);
+                                    latencies[client][accepted[client]++] = System.nanoTime() - sent;
+                                } catch (BusyException e) {
+                                    busy.incrementAndGet();
+                                } catch (RemoteException | NotResponsibleException e) {
+                                    e.printStackTrace();
+                                }
+                            }
+                            done.countDown();
+                        }
+                    }.start();
+                }
+                done.await();
+                long end = System.nanoTime();
+                int total = 0;
+                for(int count : accepted)
+                    total += count;
+                long[] all = new long[total];
+                int position = 0;
+                for(int t=0; t<clients; t++) {
+                    System.arraycopy(latencies[t], 0, all, position, accepted[t]);
+                    position += accepted[t];
+                }
+                Arrays.sort(all);
+                System.out.println(mode + ": " + (long)(all.length / ((end - begin) / 1e9)) + " ops/s, p50 "
+                        + (all.length == 0 ? 0 : all[all.length / 2] / 1000) + " us, p99 "
+                        + (all.length == 0 ? 0 : all[(int) (0.99 * (all.length - 1))] / 1000) + " us, " + busy.get() + " busy");
+            }
+            for(Node<String> node : ring)
+                node.setRequestExecution(ExecutionMode.DIRECT, 0, 0, 0);
+        } catch (RemoteException | NotResponsibleException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Simulacija prstena od n čvorova u virtualnom vremenu (bez RMI-ja), u fazama:
+     *      stabilan prsten, churn (1% čvorova ode i 1% dođe), particija 10% čvorova i oporavak, 5% izgubljenih poruka
+     * Za svaku fazu isprintaj lookupove (skokovi, virtualna latencija, krivi vlasnici), točnost nasljednika i stvarno trajanje
+     *
+     * @param n - broj čvorova
+     * @param l - broj lookupova po fazi
+     */
+    public static void testSimulation(int n, int l) {
+        System.out.println("Starting simulation with " + n + " nodes and " + l + " lookups per phase.");
+        long start = System.nanoTime();
+        Simulation simulation = new Simulation(42);
+        //kod velikog prstena fixFingers popravlja jedan finger po krugu, pa se održavanje rjeđe pokreće
+        simulation.setMaintenancePeriods(1000, 1000, 2000);
+        simulation.createRing(n);
+        System.out.println("Ring created in " + (System.nanoTime() - start) / 1000000 + " ms");
+
+        start = System.nanoTime();
+        printSimulationPhase("stable", simulation, simulation.runLookups(l, 1), start);
+
+        start = System.nanoTime();
+        int churn = Math.max(1, n / 100);
+        for(int i=0; i<churn; i++) {
+            simulation.leave(simulation.randomMember());
+            simulation.join();
+            simulation.run(10);
+        }
+        printSimulationPhase("churn", simulation, simulation.runLookups(l, 1), start);
+        simulation.run(10000);
+        System.out.println("after 10 s: successors " + String.format("%.4f", simulation.getSuccessorAccuracy())
+                + ", predecessors " + String.format("%.4f", simulation.getPredecessorAccuracy()));
+
+        start = System.nanoTime();
+        simulation.partition(0.1);
+        printSimulationPhase("partition", simulation, simulation.runLookups(l, 1), start);
+        simulation.heal();
+        start = System.nanoTime();
+        printSimulationPhase("healed", simulation, simulation.runLookups(l, 1), start);
+
+        start = System.nanoTime();
+        simulation.getBus().setLossRate(0.05);
+        printSimulationPhase("5% loss", simulation, simulation.runLookups(l, 1), start);
+        simulation.getBus().setLossRate(0);
+
+        System.out.println("Virtual time " + (long) simulation.getScheduler().now() + " ms, " + simulation.getScheduler().getExecuted() + " events, "
+                + simulation.getMaintenanceRounds() + " maintenance rounds (" + simulation.getLostRounds() + " lost, "
+                + simulation.getFailedRounds() + " failed), " + simulation.getBus().getSent() + " messages");
+    }
+
+    private static void printSimulationPhase(String phase, Simulation simulation, LookupStats stats, long start) {
+        System.out.println(phase + ": " + stats + ", successors " + String.format("%.4f", simulation.getSuccessorAccuracy())
+                + ", " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Mikrobenchmark hashiranja ključeva
+     *      stari način (MessageDigest po pozivu + binarni String)
+     *      SHA1 s digestom po dretvi
+     *      FNV-1a
+     *      SHA1 kroz cache ključeva
+     * Isprintaj prosječno vrijeme po operaciji u nanosekundama
+     *
+     * @param n - broj ključeva
+     */
+    public static void testHashing(int n) {
+        String[] keys = new String[n];
+        for(int i=0; i<n; i++)
+            keys[i] = "key" + i;
+        int nodes = 1048576;
+        HashFunction original = KeyService.getHashFunction();
+        long sink = 0;
+        long start, end;
+
+        System.out.println("Hashing " + n + " keys.");
+
+        //prvi prolaz je zagrijavanje JIT-a i ne ispisuje se
+        for(int round=0; round<2; round++) {
+            boolean warmup = round == 0;
+            start = System.nanoTime();
+            for (String key : keys)
+                sink += legacyGenerateNodeIndex(key, nodes).length();
+            end = System.nanoTime();
+            print(warmup, "Legacy (String) : " + (end-start)/n + " ns/op");
+
+            KeyService.setHashFunction(new Sha1HashFunction());
+            start = System.nanoTime();
+            for (String key : keys)
+                sink += KeyService.generateNodeIndex(key, nodes);
+            end = System.nanoTime();
+            print(warmup, "SHA1            : " + (end-start)/n + " ns/op");
+
+            KeyService.setHashFunction(new Fnv1aHashFunction());
+            start = System.nanoTime();
+            for (String key : keys)
+                sink += KeyService.generateNodeIndex(key, nodes);
+            end = System.nanoTime();
+            print(warmup, "FNV-1a          : " + (end-start)/n + " ns/op");
+
+            //hot keys: 1% ključeva, svaki traži 100 puta
+            KeyService.setHashFunction(new Sha1HashFunction());
+            KeyService.enableCache(Math.max(1, n/100));
+            start = System.nanoTime();
+            for (int i=0; i<n; i++)
+                sink += KeyService.generateNodeIndex(keys[i % Math.max(1, n/100)], nodes);
+            end = System.nanoTime();
+            print(warmup, "SHA1 + cache    : " + (end-start)/n + " ns/op (hot keys)");
+            KeyService.disableCache();
+        }
+
+        KeyService.setHashFunction(original);
+        //zbroj indeksa se ispisuje da JIT ne izbaci hashiranje kao mrtvi kod
+        System.out.println("Checksum        : " + sink);
+    }
+
+    private static void print(boolean warmup, String line) {
+        if(!warmup)
+            System.out.println(line);
+    }
+
+    /**
+     * Originalni način generiranja indeksa (prije long identifikatora), samo za usporedbu
+     */
+    private static String legacyGenerateNodeIndex(String keyName, int maxNumberOfNodesInNetwork) {
+        String hashedKeyName = null;
+        try {
+            MessageDigest mDigest = MessageDigest.getInstance("SHA1");
+            byte[] result = mDigest.digest(keyName.getBytes());
+            StringBuffer sb = new StringBuffer();
+            for (int i = 0; i < result.length; i++) {
+                sb.append(Integer.toString(result[i], 2).substring(1));
+            }
+            hashedKeyName = sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            e.printStackTrace();
+        }
+        int characters = (int) (Math.log(maxNumberOfNodesInNetwork)/Math.log(2));
+        characters = Math.min(characters, hashedKeyName.length());
+        return hashedKeyName.substring(hashedKeyName.length()-characters-1);
+    }
+
+    /**
+     * Test broja skokova (hopova) pri lookupu
+     *      Stvori prsten od n čvorova (direktno povezivanje, routing tablica se gradi jednom)
+     *      Napravi l lookupova random ključeva iz random čvorova
+     * Isprintaj prosječan broj skokova po lookupu i log2(n)
+     *
+     * @param n - broj čvorova
+     * @param l - broj lookupova
+     */
+    public static void testLookupHops(int n, int l) {
+        try {
+            long start, end;
+            Random rand = new Random();
+
+            System.out.println("Creating ring of " + n + " nodes.");
+            start = System.currentTimeMillis();
+            List<Node<String>> ring = new ArrayList<>();
+            Set<Long> indexes = new HashSet<>();
+            for(int i=0; i<n; i++) {
+                Node<String> node = new Node<>("hop" + i);
+                //preskoči čvorove čiji je indeks već zauzet
+                if(indexes.add(node.getIndex()))
+                    ring.add(node);
+            }
+            Collections.sort(ring, Comparator.comparingLong(AutomatedTests::indexOf));
+            for(int i=0; i<ring.size(); i++) {
+                Node<String> node = ring.get(i);
+                node.setSuccessor(ring.get((i + 1) % ring.size()));
+                node.setPredecessor(ring.get((i - 1 + ring.size()) % ring.size()));
+            }
+            ring.get(0).updateRoutingTable();
+            end = System.currentTimeMillis();
+            System.out.println("Time: " + (int)(end-start) + " miliseconds (" + ring.size() + " unique indexes)");
+
+            long hopsBefore = 0;
+            for(Node<String> node : ring)
+                hopsBefore += node.getForwardedLookups();
+
+            start = System.currentTimeMillis();
+            for(int i=0; i<l; i++) {
+                Node<String> from = ring.get(rand.nextInt(ring.size()));
+                from.lookupNodeResponsibleFor(rand.nextInt(1048576));
+            }
+            end = System.currentTimeMillis();
+
+            long hopsAfter = 0;
+            for(Node<String> node : ring)
+                hopsAfter += node.getForwardedLookups();
+
+            System.out.println("Recursive lookup time: " + (int)(end-start) + " miliseconds");
+            System.out.println("Average hops: " + String.format("%.2f", (hopsAfter - hopsBefore) / (double) l)
+                    + " (log2(n) = " + String.format("%.2f", Math.log(ring.size()) / Math.log(2)) + ")");
+
+            long hops = 0, steps = 0, latency = 0;
+            start = System.currentTimeMillis();
+            for(int i=0; i<l; i++) {
+                Node<String> from = ring.get(rand.nextInt(ring.size()));
+                LookupResult<String> result = from.lookupIterative(rand.nextInt(1048576));
+                hops += result.getHops();
+                steps += result.getHops() + 1;
+                latency += result.getTotalLatency();
+            }
+            end = System.currentTimeMillis();
+            System.out.println("Iterative lookup time: " + (int)(end-start) + " miliseconds");
+            System.out.println("Average hops: " + String.format("%.2f", hops / (double) l)
+                    + ", average step latency: " + latency / Math.max(1, steps) + " ns");
+        } catch (RemoteException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static long indexOf(Node<String> node) {
+        try {
+            return node.getIndex();
+        } catch (RemoteException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Test istovremenog pristupa spremištu jednog čvora
+     *      Za 1, 2, 4, ..., 64 dretve: svaka dretva radi n operacija (80% get, 20% put) nad istim spremištem
+     * Isprintaj propusnost u operacijama po milisekundi
+     *
+     * @param n - broj operacija po dretvi
+     */
+    public static void testStorageContention(final int n) {
+        final int keys = 65536;
+        final Storage<String> storage = new Storage<>();
+        try {
+            for(int i=0; i<keys; i++)
+                storage.addStored(i, "v" + i);
+        } catch (RemoteException e) {
+            e.printStackTrace();
+        }
+
+        for(int threads=1; threads<=64; threads*=2) {
+            final CountDownLatch startSignal = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(threads);
+            for(int t=0; t<threads; t++) {
+                final long seed = t;
+                new Thread() {
+                    public void run() {
+                        Random rand = new Random(seed);
+                        try {
+                            startSignal.await();
+                            for(int i=0; i<n; i++) {
+                                long key = rand.nextInt(keys);
+                                if(rand.nextInt(5) == 0)
+                                    storage.addStored(key, "v");
+                                else
+                                    storage.getStored(key);
+                            }
+                        } catch (InterruptedException | RemoteException e) {
+                            e.printStackTrace();
+                        }
+                        done.countDown();
+                    }
+                }.start();
+            }
+            long start = System.nanoTime();
+            startSignal.countDown();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            long end = System.nanoTime();
+            double millis = (end - start) / 1e6;
+            System.out.println(threads + " threads: " + (long)(threads * (long) n / millis) + " ops/ms");
+        }
+    }
+
+    /**
+     * Test trajnog spremišta
+     *      Propusnost pisanja (16 dretvi) s fsync-om po operaciji i s group commitom
+     *      Vrijeme ponovnog pokretanja spremišta s n ključeva (snapshot + rep loga)
+     *
+     * @param ops - broj pisanja za test propusnosti
+     * @param n - broj ključeva za test ponovnog pokretanja
+     */
+    public static void testDurableStorage(final int ops, int n) {
+        try {
+            final int threads = 16;
+            for(SyncMode mode : SyncMode.values()) {
+                File directory = Files.createTempDirectory("dht-wal").toFile();
+                final LogStructuredStorage<String> storage = new LogStructuredStorage<>(directory, mode);
+                final CountDownLatch done = new CountDownLatch(threads);
+                long start = System.nanoTime();
+                for(int t=0; t<threads; t++) {
+                    final int thread = t;
+                    new Thread() {
+                        public void run() {
+                            try {
+                                for(int i=thread; i<ops; i+=threads)
+                                    storage.addStored(i, "value" + i);
+                            } catch (RemoteException e) {
+                                e.printStackTrace();
+                            }
+                            done.countDown();
+                        }
+                    }.start();
+                }
+                done.await();
+                long end = System.nanoTime();
+                storage.close();
+                deleteDirectory(directory);
+                System.out.println(mode + ": " + (long)(ops / ((end - start) / 1e9)) + " ops/s");
+            }
+
+            File directory = Files.createTempDirectory("dht-wal").toFile();
+            LogStructuredStorage<String> storage = new LogStructuredStorage<>(directory, SyncMode.GROUP_COMMIT);
+            System.out.println("Writing " + n + " keys.");
+            Map<Long, String> batch = new HashMap<>();
+            for(int i=0; i<n; i++) {
+                batch.put((long) i, "value" + i);
+                if(batch.size() == 10000 || i == n-1) {
+                    storage.addAll(batch);
+                    batch.clear();
+                }
+            }
+            storage.checkpoint();
+            //rep loga nakon snapshota
+            for(int i=0; i<n/100; i++)
+                batch.put((long) i, "updated" + i);
+            storage.addAll(batch);
+            storage.close();
+
+            long start = System.currentTimeMillis();
+            storage = new LogStructuredStorage<>(directory, SyncMode.GROUP_COMMIT);
+            long end = System.currentTimeMillis();
+            System.out.println("Restart time: " + (int)(end-start) + " miliseconds (" + storage.size() + " keys)");
+            storage.close();
+            deleteDirectory(directory);
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Codec testovi
+     *      Java serijalizacija vs kompaktni codec za String, Long i byte[] vrijednosti
+     *      predaja n parova novom prethodniku: mapa objekata vs mapa već kodiranih vrijednosti
+     * Isprintaj veličinu i prosječno vrijeme kodiranja/dekodiranja
+     *
+     * @param n - broj vrijednosti
+     */
+    public static void testCodec(int n) {
+        try {
+            Random random = new Random(42);
+            String[] strings = new String[n];
+            Long[] longs = new Long[n];
+            byte[][] arrays = new byte[n][];
+            for(int i=0; i<n; i++) {
+                strings[i] = "value-" + Long.toHexString(random.nextLong()) + "-" + i;
+                longs[i] = random.nextLong();
+                arrays[i] = new byte[64];
+                random.nextBytes(arrays[i]);
+            }
+            SortedMap<Long, String> handover = new TreeMap<>();
+            for(int i=0; i<n; i++)
+                handover.put((long) i, strings[i]);
+
+            System.out.println("Encoding " + n + " values.");
+
+            //prvi prolaz je zagrijavanje JIT-a i ne ispisuje se
+            for(int round=0; round<2; round++) {
+                boolean warmup = round == 0;
+                print(warmup, "String java   : " + codecRound(Codecs.java(), strings));
+                print(warmup, "String compact: " + codecRound(Codecs.STRING, strings));
+                print(warmup, "Long   java   : " + codecRound(Codecs.java(), longs));
+                print(warmup, "Long   compact: " + codecRound(Codecs.LONG, longs));
+                print(warmup, "byte[] java   : " + codecRound(Codecs.java(), arrays));
+                print(warmup, "byte[] compact: " + codecRound(Codecs.BYTES, arrays));
+
+                //RMI serijalizira cijelu mapu predaje; kodirane vrijednosti se samo kopiraju kao polja bajtova
+                ValueCodec<Object> java = Codecs.java();
+                long start = System.nanoTime();
+                byte[] objects = java.encode(handover);
+                java.decode(objects);
+                long end = System.nanoTime();
+                print(warmup, "Handover objects: " + objects.length + " bytes, " + (end-start)/1000000 + " ms");
+
+                SortedMap<Long, byte[]> preEncoded = new TreeMap<>();
+                for(Map.Entry<Long, String> entry : handover.entrySet())
+                    preEncoded.put(entry.getKey(), Codecs.STRING.encode(entry.getValue()));
+                start = System.nanoTime();
+                byte[] encoded = java.encode(new EncodedEntries(preEncoded));
+                ((EncodedEntries) java.decode(encoded)).toMap();
+                end = System.nanoTime();
+                print(warmup, "Handover encoded: " + encoded.length + " bytes, " + (end-start)/1000000 + " ms");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //kodiraj i dekodiraj sve vrijednosti, vrati prosječnu veličinu i vremena
+    private static <T> String codecRound(ValueCodec<T> codec, T[] values) throws IOException {
+        byte[][] encoded = new byte[values.length][];
+        long bytes = 0;
+        long start = System.nanoTime();
+        for(int i=0; i<values.length; i++)
+            encoded[i] = codec.encode(values[i]);
+        long middle = System.nanoTime();
+        for(byte[] value : encoded) {
+            codec.decode(value);
+            bytes += value.length;
+        }
+        long end = System.nanoTime();
+        int n = Math.max(1, values.length);
+        return bytes/n + " bytes, encode " + (middle-start)/n + " ns/op, decode " + (end-middle)/n + " ns/op";
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if(files != null)
+            for(File file : files)
+                file.delete();
+        directory.delete();
+    }
 
+}
\ No newline at end of file